@@ -0,0 +1,168 @@
+package com.finledger.backend.benchmark;
+
+import com.finledger.backend.FinLedgerApplication;
+import com.finledger.backend.service.TransactionPartitionMaintenance;
+import jakarta.servlet.Filter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.client.registration.InMemoryClientRegistrationRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Boots the application against a benchmark database and generates a synthetic ledger.
+ *
+ * The database is a throwaway PostgreSQL container (Docker required) unless
+ * {@code -Dbench.jdbcUrl=jdbc:postgresql://...} points at a locally launched instance, with
+ * {@code bench.username} / {@code bench.password} as credentials.
+ */
+final class BenchmarkEnvironment implements AutoCloseable {
+
+    static final String USER_ID = "bench-user";
+
+    private static final String GENERATE_LEDGER_SQL =
+        "INSERT INTO transactions (user_id, platform, category, type, asset_name, amount, quantity, date, " +
+        "created_at, updated_at) " +
+        "SELECT ?, (ARRAY['Groww','Kite','PhonePe','Zerodha'])[1 + g % 4], " +
+        "(ARRAY['Stocks','Mutual Funds','Gold','UPI','Crypto'])[1 + g % 5], " +
+        "(ARRAY['BUY','BUY','SELL','TRANSFER'])[1 + g % 4], 'ASSET-' || (g % 200), " +
+        "round((random() * 10000)::numeric + 1, 2), round((random() * 100)::numeric + 0.01, 8), " +
+        "CURRENT_DATE - (g % 3650), now(), now() " +
+        "FROM generate_series(1, ?) g";
+
+    private final PostgreSQLContainer<?> container;
+    private final ConfigurableApplicationContext context;
+
+    private BenchmarkEnvironment(PostgreSQLContainer<?> container, ConfigurableApplicationContext context) {
+        this.container = container;
+        this.context = context;
+    }
+
+    // Extra properties ("key=value") override the settings below
+    static BenchmarkEnvironment start(String... properties) {
+        String jdbcUrl = System.getProperty("bench.jdbcUrl");
+        String username = System.getProperty("bench.username", "postgres");
+        String password = System.getProperty("bench.password", "postgres");
+
+        PostgreSQLContainer<?> container = null;
+        if (jdbcUrl == null) {
+            container = new PostgreSQLContainer<>("postgres:16-alpine");
+            container.start();
+            jdbcUrl = container.getJdbcUrl();
+            username = container.getUsername();
+            password = container.getPassword();
+        }
+
+        // Passed as command-line arguments so they take precedence over application.yml
+        List<String> arguments = new ArrayList<>(List.of(
+                "server.port=0",
+                "spring.datasource.url=" + jdbcUrl,
+                "spring.datasource.username=" + username,
+                "spring.datasource.password=" + password,
+                "spring.autoconfigure.exclude="
+                    + "org.springframework.boot.autoconfigure.security.oauth2.client.servlet.OAuth2ClientAutoConfiguration",
+                "spring.devtools.restart.enabled=false",
+                "finledger.index-check.enabled=false",
+                "logging.level.root=WARN",
+                "logging.level.com.finledger.backend=WARN",
+                "logging.level.org.springframework.web=WARN",
+                "logging.level.org.springframework.security=WARN"));
+        arguments.addAll(List.of(properties));
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(
+                FinLedgerApplication.class, BenchmarkSecurity.class)
+            .run(arguments.stream().map(argument -> "--" + argument).toArray(String[]::new));
+        return new BenchmarkEnvironment(container, context);
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    // Base URL of the embedded server, for benchmarks that go through HTTP
+    URI baseUri() {
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        return URI.create("http://localhost:" + port);
+    }
+
+    /**
+     * Replaces the benchmark user's ledger with {@code rows} generated transactions spread over
+     * ten years, plus 10% as many rows for other users so indexes see realistic selectivity.
+     */
+    void generateLedger(int rows) {
+        JdbcTemplate jdbc = bean(JdbcTemplate.class);
+        // The journal is append-only; dropping the snapshots makes the next rebuild rescan the new ledger
+        jdbc.execute("TRUNCATE transactions, user_portfolio_summaries, user_monthly_summaries, user_analytics_rollups, "
+            + "user_ledger_snapshots, user_ledger_snapshot_rollups");
+        jdbc.update(GENERATE_LEDGER_SQL, USER_ID, rows);
+        for (int i = 0; i < 10; i++) {
+            jdbc.update(GENERATE_LEDGER_SQL, "other-user-" + i, Math.max(1, rows / 100));
+        }
+        // Moves the generated history out of the default partition into yearly partitions
+        bean(TransactionPartitionMaintenance.class).ensurePartitions();
+        jdbc.execute("ANALYZE transactions");
+    }
+
+    @Override
+    public void close() {
+        context.close();
+        if (container != null) {
+            container.stop();
+        }
+    }
+
+    // Stands in for the Replit OIDC registration, whose issuer discovery needs the network
+    @Configuration
+    static class BenchmarkSecurity {
+        @Bean
+        ClientRegistrationRepository clientRegistrationRepository() {
+            return new InMemoryClientRegistrationRepository(ClientRegistration.withRegistrationId("replit")
+                .clientId("bench")
+                .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+                .redirectUri("{baseUrl}/login/oauth2/code/{registrationId}")
+                .authorizationUri("http://localhost/oidc/auth")
+                .tokenUri("http://localhost/oidc/token")
+                .build());
+        }
+
+        /*
+         * Signs the first request of every HTTP session in as the benchmark user, so HTTP clients
+         * only need to keep the session cookie. Runs ahead of the Spring Security filter chain.
+         */
+        @Bean
+        FilterRegistrationBean<Filter> benchmarkLogin() {
+            List<SimpleGrantedAuthority> authorities = List.of(new SimpleGrantedAuthority("OAUTH2_USER"));
+            OAuth2AuthenticationToken authentication = new OAuth2AuthenticationToken(
+                new DefaultOAuth2User(authorities, Map.of("sub", USER_ID), "sub"), authorities, "replit");
+            FilterRegistrationBean<Filter> registration = new FilterRegistrationBean<>((request, response, chain) -> {
+                HttpSession session = ((HttpServletRequest) request).getSession();
+                if (session.isNew()) {
+                    session.setAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY,
+                        new SecurityContextImpl(authentication));
+                }
+                chain.doFilter(request, response);
+            });
+            registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 1);
+            return registration;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.finledger.backend.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.finledger.backend.dto.MonthlyTrend;
+import com.finledger.backend.dto.TransactionDto;
+import com.finledger.backend.dto.TransactionView;
+import com.finledger.backend.entity.Transaction;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building and serializing one page of the transaction list response, without a database.
+ * The {@code map} variants reproduce the earlier HashMap-based envelope as a baseline for the
+ * typed records. Run with -prof gc to see allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DtoBenchmark {
+
+    @Param({"10", "100"})
+    public int pageSize;
+
+    private static final DateTimeFormatter MONTH_FORMATTER = DateTimeFormatter.ofPattern("MMM yyyy");
+
+    private List<Transaction> page;
+    private List<Object[]> monthlyTotals;
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() {
+        // Same Jackson configuration Spring Boot applies to the HTTP message converters
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        page = new ArrayList<>(pageSize);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < pageSize; i++) {
+            Transaction transaction = new Transaction("bench-user", "Kite", "Stocks",
+                Transaction.TransactionType.BUY, "ASSET-" + i, new BigDecimal("1234.56"),
+                new BigDecimal("3.50000000"), LocalDate.of(2024, 1, 1).plusDays(i), "note " + i);
+            transaction.setId((long) i);
+            transaction.setCurrency("USD");
+            transaction.setCreatedAt(now);
+            transaction.setUpdatedAt(now);
+            page.add(transaction);
+        }
+
+        monthlyTotals = new ArrayList<>(12);
+        for (int i = 0; i < 12; i++) {
+            monthlyTotals.add(new Object[] {LocalDate.of(2024, 12, 1).minusMonths(i),
+                new BigDecimal("5000.00"), new BigDecimal("12000.00")});
+        }
+    }
+
+    @Benchmark
+    public Object buildMapResponse() {
+        Map<String, Object> body = new HashMap<>();
+        body.put("transactions", views());
+        Map<String, Object> pagination = new HashMap<>();
+        pagination.put("page", 1);
+        pagination.put("limit", page.size());
+        pagination.put("total", 1000L);
+        pagination.put("totalPages", 1000 / page.size());
+        body.put("pagination", pagination);
+        return body;
+    }
+
+    @Benchmark
+    public Object buildRecordResponse() {
+        return new TransactionDto.ListResponse<>(views(),
+            new TransactionDto.PagePagination(1, page.size(), 1000L, 1000 / page.size()));
+    }
+
+    @Benchmark
+    public byte[] serializeMapResponse() throws Exception {
+        return objectMapper.writeValueAsBytes(buildMapResponse());
+    }
+
+    @Benchmark
+    public byte[] serializeRecordResponse() throws Exception {
+        return objectMapper.writeValueAsBytes(buildRecordResponse());
+    }
+
+    // Twelve months of trends as built before (formatter per call, a HashMap per row) and now
+    @Benchmark
+    public Object buildMapTrends() {
+        List<Map<String, Object>> trends = new ArrayList<>();
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MMM yyyy");
+        for (Object[] result : monthlyTotals) {
+            Map<String, Object> trend = new HashMap<>();
+            trend.put("month", YearMonth.from((LocalDate) result[0]).format(formatter));
+            trend.put("spending", result[1]);
+            trend.put("investments", result[2]);
+            trends.add(Collections.unmodifiableMap(trend));
+        }
+        return Collections.unmodifiableList(trends);
+    }
+
+    @Benchmark
+    public Object buildRecordTrends() {
+        List<MonthlyTrend> trends = new ArrayList<>(monthlyTotals.size());
+        for (Object[] result : monthlyTotals) {
+            trends.add(new MonthlyTrend(MONTH_FORMATTER.format((LocalDate) result[0]),
+                (BigDecimal) result[1], (BigDecimal) result[2]));
+        }
+        return Collections.unmodifiableList(trends);
+    }
+
+    // Views are built per row, as the JDBC row mapper does
+    private List<TransactionView> views() {
+        List<TransactionView> transactions = new ArrayList<>(page.size());
+        for (Transaction t : page) {
+            transactions.add(new TransactionView(t.getId(), t.getPlatform(), t.getCategory(), t.getType(),
+                t.getAssetName(), t.getAmount(), t.getCurrency(), t.getQuantity(), t.getDate(), t.getNotes(),
+                t.getCreatedAt(), t.getUpdatedAt(), t.getVersion()));
+        }
+        return transactions;
+    }
+}
@@ -0,0 +1,119 @@
+package com.finledger.backend.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of the HTTP API under concurrent clients, comparing platform-thread and virtual-thread
+ * request execution. Each JMH thread is one client issuing requests back to back; throughput and
+ * the latency distribution (SampleTime percentiles) are reported per mode. Requests turned away by
+ * the concurrency limit are counted in the {@code rejected} secondary result rather than failing
+ * the run; only {@code ok} requests did database work.
+ *
+ * The virtual mode needs a Java 21 runtime (build with -Pjava21). Raise client concurrency with
+ * JMH's -t option, e.g. -Djmh.args="HttpLoadBenchmark -t 256 -p poolSize=10,20".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Threads(64)
+@Fork(1)
+public class HttpLoadBenchmark {
+
+    @Param({"platform", "virtual"})
+    public String threading;
+
+    @Param({"100000"})
+    public int ledgerSize;
+
+    @Param({"10"})
+    public int poolSize;
+
+    // 0 keeps the application's default, one request per pooled connection
+    @Param({"0"})
+    public int maxRequests;
+
+    private BenchmarkEnvironment environment;
+    private HttpClient client;
+    private HttpRequest listRequest;
+    private HttpRequest searchRequest;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        boolean virtual = threading.equals("virtual");
+        if (virtual && Runtime.version().feature() < 21) {
+            throw new IllegalStateException("Virtual threads need a Java 21 runtime, this is " + Runtime.version());
+        }
+        List<String> properties = new ArrayList<>(List.of(
+            "spring.threads.virtual.enabled=" + virtual,
+            "spring.datasource.hikari.maximum-pool-size=" + poolSize));
+        if (maxRequests > 0) {
+            properties.add("finledger.concurrency.max-requests=" + maxRequests);
+        }
+        environment = BenchmarkEnvironment.start(properties.toArray(String[]::new));
+        environment.generateLedger(ledgerSize);
+
+        URI base = environment.baseUri();
+        client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .cookieHandler(new CookieManager())
+            .build();
+        listRequest = HttpRequest.newBuilder(base.resolve("/api/transactions?limit=20")).build();
+        searchRequest = HttpRequest.newBuilder(base.resolve("/api/transactions/search?q=asset-12&limit=10")).build();
+
+        // Opens the session every client thread then shares through the cookie
+        HttpResponse<Void> login = client.send(listRequest, HttpResponse.BodyHandlers.discarding());
+        if (login.statusCode() != 200) {
+            throw new IllegalStateException("Benchmark login failed with status " + login.statusCode());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        environment.close();
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Outcomes {
+        public long ok;
+        public long rejected;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            ok = 0;
+            rejected = 0;
+        }
+    }
+
+    @Benchmark
+    public int listFirstPage(Outcomes outcomes) throws IOException, InterruptedException {
+        return send(listRequest, outcomes);
+    }
+
+    @Benchmark
+    public int searchTypeAhead(Outcomes outcomes) throws IOException, InterruptedException {
+        return send(searchRequest, outcomes);
+    }
+
+    private int send(HttpRequest request, Outcomes outcomes) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        switch (response.statusCode()) {
+            case 200 -> outcomes.ok++;
+            case 503 -> outcomes.rejected++;
+            default -> throw new IllegalStateException("Unexpected status " + response.statusCode());
+        }
+        return response.body().length;
+    }
+}
@@ -0,0 +1,145 @@
+package com.finledger.backend.benchmark;
+
+import com.finledger.backend.dto.CategoryAnalytics;
+import com.finledger.backend.dto.Dashboard;
+import com.finledger.backend.dto.MonthlyTrend;
+import com.finledger.backend.dto.PortfolioMetrics;
+import com.finledger.backend.dto.TransactionCursor;
+import com.finledger.backend.dto.TransactionFilter;
+import com.finledger.backend.dto.TransactionView;
+import com.finledger.backend.entity.Transaction;
+import com.finledger.backend.service.AnalyticsCache;
+import com.finledger.backend.service.DashboardService;
+import com.finledger.backend.service.HoldingsEngine;
+import com.finledger.backend.service.PortfolioSummaryService;
+import com.finledger.backend.service.TransactionService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end service hot paths against a generated ledger of {@code ledgerSize} rows.
+ * Analytics benchmarks drop the user's cache entry first so they measure the database path;
+ * the {@code Cached} variants measure repeat dashboard loads.
+ *
+ * Example: -Djmh.args="LedgerBenchmark -p ledgerSize=1000,100000,10000000"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LedgerBenchmark {
+
+    @Param({"1000", "100000"})
+    public int ledgerSize;
+
+    private BenchmarkEnvironment environment;
+    private TransactionService transactionService;
+    private AnalyticsCache analyticsCache;
+    private DashboardService dashboardService;
+    private HoldingsEngine holdingsEngine;
+
+    private Pageable firstPage;
+    private Pageable deepPage;
+    private TransactionCursor middleCursor;
+    private TransactionFilter combinedFilter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        environment = BenchmarkEnvironment.start();
+        environment.generateLedger(ledgerSize);
+        environment.bean(PortfolioSummaryService.class).rebuild(BenchmarkEnvironment.USER_ID);
+
+        transactionService = environment.bean(TransactionService.class);
+        analyticsCache = environment.bean(AnalyticsCache.class);
+        dashboardService = environment.bean(DashboardService.class);
+        holdingsEngine = environment.bean(HoldingsEngine.class);
+
+        Sort newestFirst = Sort.by(Sort.Direction.DESC, "date");
+        firstPage = PageRequest.of(0, 10, newestFirst);
+        deepPage = PageRequest.of(ledgerSize / 20, 10, newestFirst);
+        TransactionView middle = transactionService.getTransactions(BenchmarkEnvironment.USER_ID, TransactionFilter.NONE, deepPage)
+            .getContent().get(0);
+        middleCursor = TransactionCursor.of(middle);
+        combinedFilter = new TransactionFilter(null, "stocks", null, Transaction.TransactionType.BUY,
+            LocalDate.now().minusYears(2), LocalDate.now(), new BigDecimal("100"), null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        environment.close();
+    }
+
+    @Benchmark
+    public PortfolioMetrics portfolioMetrics() {
+        analyticsCache.invalidate(BenchmarkEnvironment.USER_ID);
+        return transactionService.getPortfolioMetrics(BenchmarkEnvironment.USER_ID);
+    }
+
+    @Benchmark
+    public PortfolioMetrics portfolioMetricsCached() {
+        return transactionService.getPortfolioMetrics(BenchmarkEnvironment.USER_ID);
+    }
+
+    @Benchmark
+    public List<MonthlyTrend> monthlyTrends() {
+        analyticsCache.invalidate(BenchmarkEnvironment.USER_ID);
+        return transactionService.getMonthlyTrends(BenchmarkEnvironment.USER_ID, 6);
+    }
+
+    @Benchmark
+    public List<CategoryAnalytics> categoryAnalytics() {
+        analyticsCache.invalidate(BenchmarkEnvironment.USER_ID);
+        return transactionService.getCategoryAnalytics(BenchmarkEnvironment.USER_ID);
+    }
+
+    // Cold analytics views (holdings stay cached), fetched concurrently vs. one after another
+    @Benchmark
+    public Dashboard dashboard() {
+        analyticsCache.invalidate(BenchmarkEnvironment.USER_ID);
+        return dashboardService.getDashboard(BenchmarkEnvironment.USER_ID, 6);
+    }
+
+    @Benchmark
+    public Dashboard dashboardSequential() {
+        analyticsCache.invalidate(BenchmarkEnvironment.USER_ID);
+        String userId = BenchmarkEnvironment.USER_ID;
+        return new Dashboard(transactionService.getPortfolioMetrics(userId), holdingsEngine.getHoldings(userId),
+            transactionService.getCategoryAnalytics(userId), transactionService.getMonthlyTrends(userId, 6));
+    }
+
+    @Benchmark
+    public Object searchTypeAhead() {
+        return transactionService.searchTransactionsRanked(BenchmarkEnvironment.USER_ID, "asset-12",
+            TransactionFilter.NONE, firstPage);
+    }
+
+    @Benchmark
+    public Object listFirstPage() {
+        return transactionService.getTransactions(BenchmarkEnvironment.USER_ID, TransactionFilter.NONE, firstPage);
+    }
+
+    @Benchmark
+    public Object listFilteredPage() {
+        return transactionService.getTransactions(BenchmarkEnvironment.USER_ID, combinedFilter, firstPage);
+    }
+
+    @Benchmark
+    public Object listDeepOffsetPage() {
+        return transactionService.getTransactions(BenchmarkEnvironment.USER_ID, TransactionFilter.NONE, deepPage);
+    }
+
+    @Benchmark
+    public Object listDeepKeysetPage() {
+        return transactionService.getTransactionsAfter(BenchmarkEnvironment.USER_ID, TransactionFilter.NONE, middleCursor,
+            false, 10);
+    }
+}
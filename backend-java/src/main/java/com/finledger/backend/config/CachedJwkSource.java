@@ -0,0 +1,123 @@
+package com.finledger.backend.config;
+
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.web.client.RestOperations;
+
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The identity provider's signing keys, held in memory and refreshed in the background on a fixed
+ * delay, so verifying a bearer token never waits on the network. A token signed with a key id the
+ * cached set does not contain (a rotation between refreshes) triggers one refetch on the request
+ * thread, at most once per {@code minRefetchInterval} so forged key ids cannot hammer the provider.
+ * When a refresh fails the previous keys stay in use.
+ */
+public class CachedJwkSource implements JWKSource<SecurityContext> {
+
+    private static final Logger log = LoggerFactory.getLogger(CachedJwkSource.class);
+
+    private final String jwkSetUri;
+    private final RestOperations restOperations;
+    private final long minRefetchIntervalNanos;
+    // Not synchronized: a virtual thread blocked on the fetch would pin its carrier
+    private final ReentrantLock fetchLock = new ReentrantLock();
+    private volatile JWKSet keys;
+    private volatile long fetchedAtNanos;
+
+    public CachedJwkSource(String jwkSetUri, RestOperations restOperations, Duration minRefetchInterval) {
+        this.jwkSetUri = jwkSetUri;
+        this.restOperations = restOperations;
+        this.minRefetchIntervalNanos = minRefetchInterval.toNanos();
+    }
+
+    // Also runs once at startup, so the first request finds the keys loaded
+    @Scheduled(fixedDelayString = "${finledger.auth.jwt.jwks-refresh:PT15M}")
+    public void refresh() {
+        try {
+            fetch();
+        } catch (KeySourceException e) {
+            log.warn("Could not refresh the JWK set from {}, keeping the cached keys: {}", jwkSetUri, e.getMessage());
+        }
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector selector, SecurityContext context) throws KeySourceException {
+        JWKSet current = keys;
+        if (current == null) {
+            current = loadIfMissing();
+        }
+        List<JWK> matches = selector.select(current);
+        if (matches.isEmpty() && hasUnknownKeyId(selector, current)) {
+            matches = selector.select(refetchIfDue());
+        }
+        return matches;
+    }
+
+    // Startup refresh failed or has not run yet; concurrent requests share one fetch
+    private JWKSet loadIfMissing() throws KeySourceException {
+        fetchLock.lock();
+        try {
+            return keys != null ? keys : fetch();
+        } finally {
+            fetchLock.unlock();
+        }
+    }
+
+    private JWKSet refetchIfDue() throws KeySourceException {
+        fetchLock.lock();
+        try {
+            if (System.nanoTime() - fetchedAtNanos < minRefetchIntervalNanos) {
+                return keys;
+            }
+            return fetch();
+        } finally {
+            fetchLock.unlock();
+        }
+    }
+
+    private JWKSet fetch() throws KeySourceException {
+        fetchLock.lock();
+        try {
+            return load();
+        } finally {
+            fetchLock.unlock();
+        }
+    }
+
+    private JWKSet load() throws KeySourceException {
+        String json;
+        try {
+            json = restOperations.getForObject(jwkSetUri, String.class);
+        } catch (RuntimeException e) {
+            throw new KeySourceException("Could not fetch the JWK set from " + jwkSetUri, e);
+        }
+        if (json == null) {
+            throw new KeySourceException("Empty JWK set response from " + jwkSetUri);
+        }
+        try {
+            JWKSet fetched = JWKSet.parse(json);
+            keys = fetched;
+            fetchedAtNanos = System.nanoTime();
+            return fetched;
+        } catch (ParseException e) {
+            throw new KeySourceException("Invalid JWK set from " + jwkSetUri, e);
+        }
+    }
+
+    private static boolean hasUnknownKeyId(JWKSelector selector, JWKSet keys) {
+        Set<String> keyIds = selector.getMatcher().getKeyIDs();
+        return keyIds != null && keyIds.stream().anyMatch(keyId -> keyId != null && keys.getKeyByKeyId(keyId) == null);
+    }
+}
@@ -0,0 +1,16 @@
+package com.finledger.backend.config;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Binds a controller parameter to the authenticated user's id (the {@code sub} claim), in both
+ * session and bearer-token mode. Resolved by {@link CurrentUserIdArgumentResolver}; a request without
+ * an authenticated user is answered by the security entry point before the handler runs.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CurrentUserId {
+}
@@ -0,0 +1,67 @@
+package com.finledger.backend.config;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimNames;
+import org.springframework.security.oauth2.jwt.JwtClaimValidator;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Bearer-token verification for {@code finledger.auth.mode=jwt}. Signatures are checked against
+ * the provider's JWK set ({@link CachedJwkSource}); issuer, expiry and, when configured, audience
+ * are validated on every token.
+ */
+@Configuration
+@ConditionalOnProperty(name = "finledger.auth.mode", havingValue = "jwt")
+public class JwtAuthConfig {
+
+    @Bean
+    public CachedJwkSource jwkSource(
+            RestTemplateBuilder restTemplateBuilder,
+            @Value("${finledger.auth.jwt.jwk-set-uri}") String jwkSetUri,
+            @Value("${finledger.auth.jwt.min-refetch-interval:30s}") Duration minRefetchInterval) {
+        return new CachedJwkSource(jwkSetUri, restTemplateBuilder
+            .setConnectTimeout(Duration.ofSeconds(5))
+            .setReadTimeout(Duration.ofSeconds(5))
+            .build(), minRefetchInterval);
+    }
+
+    @Bean
+    public JwtDecoder jwtDecoder(
+            CachedJwkSource jwkSource,
+            @Value("${finledger.auth.jwt.issuer}") String issuer,
+            @Value("${finledger.auth.jwt.audience:}") String audience) {
+        DefaultJWTProcessor<SecurityContext> processor = new DefaultJWTProcessor<>();
+        processor.setJWSKeySelector(new JWSVerificationKeySelector<>(
+            Set.of(JWSAlgorithm.RS256, JWSAlgorithm.ES256), jwkSource));
+        // Claims are checked by the Spring validators below
+        processor.setJWTClaimsSetVerifier((claims, context) -> {});
+
+        List<OAuth2TokenValidator<Jwt>> validators = new ArrayList<>();
+        validators.add(JwtValidators.createDefaultWithIssuer(issuer));
+        if (!audience.isBlank()) {
+            validators.add(new JwtClaimValidator<List<String>>(JwtClaimNames.AUD,
+                aud -> aud != null && aud.contains(audience)));
+        }
+        NimbusJwtDecoder decoder = new NimbusJwtDecoder(processor);
+        decoder.setJwtValidator(new DelegatingOAuth2TokenValidator<>(validators));
+        return decoder;
+    }
+}
@@ -0,0 +1,57 @@
+package com.finledger.backend.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Application metrics on top of what Spring Boot already publishes (HTTP server requests,
+ * repository invocation timers, Hikari pool and Hibernate statistics): rows returned per
+ * repository method, and SQL statements and entity loads per request.
+ */
+@Configuration
+public class MetricsConfig implements WebMvcConfigurer {
+
+    private final RequestSqlMetrics requestSqlMetrics;
+
+    public MetricsConfig(MeterRegistry meterRegistry) {
+        this.requestSqlMetrics = new RequestSqlMetrics(meterRegistry);
+    }
+
+    // Static, and resolving the registry lazily, so repositories are not created before post-processors
+    @Bean
+    public static BeanPostProcessor repositoryRowMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> repositoryFactoryBean) {
+                    repositoryFactoryBean.addRepositoryFactoryCustomizer(factory ->
+                        factory.addRepositoryProxyPostProcessor((proxyFactory, repositoryInformation) ->
+                            proxyFactory.addAdvice(new RepositoryRowMetrics(meterRegistry::getObject,
+                                repositoryInformation.getRepositoryInterface()))));
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer requestSqlMetricsCustomizer() {
+        return properties -> {
+            properties.put(AvailableSettings.STATEMENT_INSPECTOR, requestSqlMetrics);
+            properties.put(AvailableSettings.INTERCEPTOR, requestSqlMetrics);
+        };
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(requestSqlMetrics).addPathPatterns("/api/**");
+    }
+}
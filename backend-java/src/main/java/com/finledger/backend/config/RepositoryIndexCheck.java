@@ -0,0 +1,176 @@
+package com.finledger.backend.config;
+
+import com.finledger.backend.dto.TransactionCursor;
+import com.finledger.backend.dto.TransactionFilter;
+import com.finledger.backend.dto.TransactionView;
+import com.finledger.backend.entity.Transaction;
+import com.finledger.backend.repository.TransactionFilterQuery;
+import com.finledger.backend.repository.TransactionRepository;
+import com.finledger.backend.repository.TransactionWriteRepositoryImpl;
+import com.finledger.backend.service.FxRateLoader;
+import com.finledger.backend.service.HoldingsEngine;
+import com.finledger.backend.service.LedgerJournal;
+import com.finledger.backend.service.RecurringSeriesDetector;
+import com.finledger.backend.service.TaxLotReportService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Startup check that asks PostgreSQL to plan each {@code TransactionRepository} query, its conditional
+ * writes, and the ledger and journal reads of the export, holdings, tax lot, summary, recurring series
+ * and exchange rate paths, with sequential scans disabled. If the planner still falls back to a sequential scan
+ * on {@code transactions} or {@code transaction_events}, no index can serve the query and it is
+ * reported in the log.
+ */
+@Component
+@ConditionalOnProperty(name = "finledger.index-check.enabled", havingValue = "true", matchIfMissing = true)
+public class RepositoryIndexCheck {
+
+    private static final Logger log = LoggerFactory.getLogger(RepositoryIndexCheck.class);
+
+    private static final String PROBE_USER = "'__index_probe__'";
+
+    private static final String TRANSACTIONS = "transactions";
+    private static final String EVENTS = "transaction_events";
+
+    // Repository method -> statement it issues; filtered listings are built exactly as at runtime.
+    // RepositoryIndexCheckTest fails for a TransactionRepository @Query without a probe of its name
+    private static final Map<String, Probe> PROBES = new LinkedHashMap<>();
+
+    static {
+        filterProbe("findByFilter (no filters)", TransactionFilter.NONE, null);
+        filterProbe("findByFilter (type, dates, amounts)", new TransactionFilter(null, null, null,
+            Transaction.TransactionType.BUY, LocalDate.now().minusYears(1), LocalDate.now(),
+            BigDecimal.ONE, BigDecimal.TEN), null);
+        filterProbe("findByFilter (text, category, platform)",
+            new TransactionFilter("probe", "probe", "probe", null, null, null, null, null), null);
+        filterProbe("findByFilterAfter", TransactionFilter.NONE, new TransactionCursor(LocalDate.now(), 1000));
+        TransactionFilterQuery ranked = TransactionFilterQuery.of("__index_probe__", TransactionFilter.NONE).rankedBy("probe");
+        PROBES.put("searchRanked", new Probe(TRANSACTIONS, ranked.selectSql(null),
+            ranked.selectParameters(21, 0).toArray()));
+        PROBES.put("aggregateRollupsByUserId", new Probe(TRANSACTIONS,
+            "SELECT CAST(date_trunc('month', date) AS date), category, platform, type, COUNT(*), "
+                + "SUM(fx_convert(amount, currency, 'USD', date)) "
+                + "FROM transactions WHERE user_id = " + PROBE_USER + " GROUP BY 1, 2, 3, 4"));
+        // What Hibernate generates for the JPQL queries
+        PROBES.put("streamByUserId", new Probe(TRANSACTIONS,
+            "SELECT " + TransactionView.SQL_COLUMNS + " FROM transactions WHERE user_id = " + PROBE_USER + " ORDER BY date, id"));
+        PROBES.put("findViewByIdAndUserId", new Probe(TRANSACTIONS,
+            "SELECT " + TransactionView.SQL_COLUMNS + " FROM transactions WHERE id = 1 AND user_id = " + PROBE_USER));
+        PROBES.put("findDistinctUserIds", new Probe(TRANSACTIONS, "SELECT DISTINCT user_id FROM transactions"));
+        PROBES.put("findDistinctCurrenciesByUserId", new Probe(TRANSACTIONS,
+            "SELECT DISTINCT currency FROM transactions WHERE user_id = " + PROBE_USER));
+        PROBES.put("updateIfVersion", new Probe(TRANSACTIONS, TransactionWriteRepositoryImpl.UPDATE_SQL,
+            1L, "__index_probe__", "probe", "probe", "BUY", "probe", BigDecimal.ONE, "USD", BigDecimal.ONE,
+            LocalDate.now(), null, LocalDateTime.now(), 0L, 0L));
+        PROBES.put("deleteIfVersion", new Probe(TRANSACTIONS, TransactionWriteRepositoryImpl.DELETE_SQL,
+            1L, "__index_probe__", 0L, 0L));
+        PROBES.put("HoldingsEngine ledger replay", new Probe(TRANSACTIONS, HoldingsEngine.LEDGER_SQL,
+            "USD", "__index_probe__"));
+        PROBES.put("TaxLotReportService ledger replay", new Probe(TRANSACTIONS, TaxLotReportService.LEDGER_SQL,
+            "USD", "__index_probe__", LocalDate.now()));
+        PROBES.put("TaxLotReportService replay from checkpoint", new Probe(TRANSACTIONS,
+            TaxLotReportService.LEDGER_FROM_SQL, "USD", "__index_probe__", LocalDate.now().minusYears(1),
+            LocalDate.now()));
+        PROBES.put("LedgerJournal.findTail", new Probe(EVENTS, LedgerJournal.TAIL_SQL,
+            0L, "__index_probe__", 0L));
+        PROBES.put("LedgerJournal.findTailRollups", new Probe(EVENTS, LedgerJournal.TAIL_ROLLUPS_SQL,
+            "USD", "__index_probe__", 0L));
+        PROBES.put("LedgerJournal.findHistory", new Probe(EVENTS, LedgerJournal.HISTORY_SQL,
+            "__index_probe__", 1L));
+        PROBES.put("RecurringSeriesDetector candidates", new Probe(EVENTS, RecurringSeriesDetector.CANDIDATES_SQL,
+            0L, 1000L));
+        PROBES.put("RecurringSeriesDetector changed groups", new Probe(EVENTS,
+            RecurringSeriesDetector.CHANGED_GROUPS_SQL, "USD", "__index_probe__", 0L, 1000L));
+        PROBES.put("RecurringSeriesDetector full scan", new Probe(TRANSACTIONS, RecurringSeriesDetector.ROWS_SQL,
+            "__index_probe__", LocalDate.now().minusMonths(18)));
+        String[] group = {"probe"};
+        PROBES.put("RecurringSeriesDetector group scan", new Probe(TRANSACTIONS,
+            RecurringSeriesDetector.GROUP_ROWS_SQL, group, group, group, group, "__index_probe__",
+            LocalDate.now().minusMonths(18)));
+        LocalDate since = LocalDate.now().minusMonths(1);
+        PROBES.put("FxRateLoader affected users", new Probe(TRANSACTIONS, FxRateLoader.AFFECTED_USERS_SQL,
+            "EUR", since, since, "USD", new String[] {"USD", "GBP"}, since, since, "USD", "EUR"));
+    }
+
+    private static void filterProbe(String name, TransactionFilter filter, TransactionCursor cursor) {
+        TransactionFilterQuery query = TransactionFilterQuery.of("__index_probe__", filter);
+        if (cursor != null) {
+            query.after(cursor, false);
+        }
+        PROBES.put(name, new Probe(TRANSACTIONS, query.selectSql(TransactionFilterQuery.keysetOrder(false)),
+            query.selectParameters(11, 0).toArray()));
+    }
+
+    static Set<String> probedQueries() {
+        return PROBES.keySet();
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void verifyIndexUsage() {
+        List<String> unindexed = findUnindexedQueries();
+
+        if (unindexed.isEmpty()) {
+            log.info("All {} ledger queries can be served by an index", PROBES.size());
+        } else {
+            log.warn("{} of {} ledger queries fall back to a sequential scan or could not be planned: {}",
+                unindexed.size(), PROBES.size(), unindexed);
+        }
+    }
+
+    // Names of the probed queries that are planned with a sequential scan, or could not be planned at all
+    List<String> findUnindexedQueries() {
+        List<String> unindexed = new ArrayList<>();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            // SET LOCAL is scoped to this transaction, which is never committed
+            status.setRollbackOnly();
+            jdbcTemplate.execute("SET LOCAL enable_seqscan = off");
+            for (Map.Entry<String, Probe> probe : PROBES.entrySet()) {
+                try {
+                    List<String> plan = jdbcTemplate.queryForList("EXPLAIN " + probe.getValue().sql(),
+                        String.class, probe.getValue().parameters());
+                    String table = probe.getValue().table();
+                    // Partitions of transactions are scanned as transactions_<suffix>
+                    if (plan.stream().anyMatch(line -> line.matches(".*Seq Scan on " + table + "(_\\w+)? .*"))) {
+                        unindexed.add(probe.getKey());
+                        log.warn("Query {} cannot use an index on {}:\n{}",
+                            probe.getKey(), table, String.join("\n", plan));
+                    }
+                } catch (DataAccessException e) {
+                    unindexed.add(probe.getKey());
+                    log.warn("Could not explain query {}: {}", probe.getKey(), e.getMessage());
+                    // The failed statement aborts the transaction, so stop probing
+                    return;
+                }
+            }
+        });
+        return unindexed;
+    }
+
+    private record Probe(String table, String sql, Object... parameters) {
+    }
+}
@@ -0,0 +1,72 @@
+package com.finledger.backend.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.data.domain.Slice;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Records how many rows each repository query method returned, as the
+ * {@code finledger.repository.rows} summary tagged like Spring Boot's
+ * {@code spring.data.repository.invocations} timer. Streams are counted as they are consumed
+ * and recorded when closed; methods that do not return rows are not recorded.
+ */
+class RepositoryRowMetrics implements MethodInterceptor {
+
+    static final String METRIC_NAME = "finledger.repository.rows";
+
+    private final Supplier<MeterRegistry> meterRegistry;
+    private final String repository;
+    private final Map<Method, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+    RepositoryRowMetrics(Supplier<MeterRegistry> meterRegistry, Class<?> repositoryInterface) {
+        this.meterRegistry = meterRegistry;
+        this.repository = repositoryInterface.getSimpleName();
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Object result = invocation.proceed();
+        if (result instanceof Stream<?> stream) {
+            DistributionSummary summary = summary(invocation.getMethod());
+            long[] rows = new long[1];
+            return stream.peek(row -> rows[0]++).onClose(() -> summary.record(rows[0]));
+        }
+        long rows = rows(result);
+        if (rows >= 0) {
+            summary(invocation.getMethod()).record(rows);
+        }
+        return result;
+    }
+
+    private static long rows(Object result) {
+        if (result instanceof Slice<?> slice) {
+            return slice.getNumberOfElements();
+        }
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof Optional<?> optional) {
+            return optional.isPresent() ? 1 : 0;
+        }
+        return -1;
+    }
+
+    private DistributionSummary summary(Method method) {
+        return summaries.computeIfAbsent(method, m -> DistributionSummary.builder(METRIC_NAME)
+            .description("Rows returned by a repository method")
+            .baseUnit("rows")
+            .tag("repository", repository)
+            .tag("method", m.getName())
+            .register(meterRegistry.get()));
+    }
+}
@@ -0,0 +1,111 @@
+package com.finledger.backend.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the number of API requests handled at once. A request that cannot get a slot within the
+ * queue timeout is answered with 503 and {@code Retry-After} instead of waiting on the connection
+ * pool. Platform threads are bounded by Tomcat's pool anyway; with virtual threads every accepted
+ * connection gets its own thread, and this is what keeps them from piling onto the database.
+ *
+ * Runs after the HTTP observation filter, so rejections show up in {@code http.server.requests}.
+ * In-flight requests and rejections are published as {@code finledger.http.requests.active}
+ * and {@code finledger.http.requests.rejected}.
+ *
+ * The limit defaults to the connection pool size. A request that still times out waiting for a
+ * connection (a dashboard, say, computes its views on several connections) gets the same 503 rather
+ * than a 500; Hikari counts those in {@code hikaricp.connections.timeout}.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class RequestConcurrencyLimiter extends OncePerRequestFilter {
+
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final long queueTimeoutNanos;
+    private final Counter rejected;
+
+    public RequestConcurrencyLimiter(
+            @Value("${finledger.concurrency.max-requests:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConcurrent,
+            @Value("${finledger.concurrency.queue-timeout:500ms}") Duration queueTimeout,
+            MeterRegistry meterRegistry) {
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.maxConcurrent = maxConcurrent;
+        this.queueTimeoutNanos = queueTimeout.toNanos();
+        this.rejected = Counter.builder("finledger.http.requests.rejected")
+            .description("API requests rejected because the concurrency limit was reached")
+            .register(meterRegistry);
+        Gauge.builder("finledger.http.requests.active", this, RequestConcurrencyLimiter::activeRequests)
+            .description("API requests currently being handled")
+            .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(request.getContextPath() + "/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(queueTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejected.increment();
+            busy(response);
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } catch (ServletException | RuntimeException e) {
+            if (response.isCommitted() || !isConnectionTimeout(e)) {
+                throw e;
+            }
+            busy(response);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static void busy(HttpServletResponse response) throws IOException {
+        response.setHeader("Retry-After", "1");
+        response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Server is busy, retry shortly");
+    }
+
+    // Hikari's SQLTransientConnectionException, however Spring or Hibernate wrapped it
+    private static boolean isConnectionTimeout(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTransientConnectionException || cause instanceof CannotCreateTransactionException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int activeRequests() {
+        return maxConcurrent - permits.availablePermits();
+    }
+}
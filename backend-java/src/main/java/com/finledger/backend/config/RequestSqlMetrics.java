@@ -0,0 +1,85 @@
+package com.finledger.backend.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hibernate.Interceptor;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.type.Type;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Counts the SQL statements Hibernate prepares and the entities it loads while a controller
+ * handles a request, and records them per endpoint as {@code finledger.http.sql.statements}
+ * and {@code finledger.http.entities.loaded}. Statements issued through {@code JdbcTemplate}
+ * bypass Hibernate and are not counted.
+ */
+class RequestSqlMetrics implements StatementInspector, Interceptor, HandlerInterceptor {
+
+    private static final ThreadLocal<Counts> CURRENT = new ThreadLocal<>();
+
+    private final MeterRegistry meterRegistry;
+
+    RequestSqlMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        Counts counts = CURRENT.get();
+        if (counts != null) {
+            counts.statements++;
+        }
+        return sql;
+    }
+
+    @Override
+    public boolean onLoad(Object entity, Object id, Object[] state, String[] propertyNames, Type[] types) {
+        Counts counts = CURRENT.get();
+        if (counts != null) {
+            counts.entities++;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod) {
+            CURRENT.set(new Counts());
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        Counts counts = CURRENT.get();
+        if (counts == null) {
+            return;
+        }
+        CURRENT.remove();
+
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+        DistributionSummary.builder("finledger.http.sql.statements")
+            .description("SQL statements issued through Hibernate per request")
+            .tag("method", request.getMethod())
+            .tag("uri", uri)
+            .register(meterRegistry)
+            .record(counts.statements);
+        DistributionSummary.builder("finledger.http.entities.loaded")
+            .description("Entities loaded by Hibernate per request")
+            .tag("method", request.getMethod())
+            .tag("uri", uri)
+            .register(meterRegistry)
+            .record(counts.entities);
+    }
+
+    private static final class Counts {
+        private int statements;
+        private int entities;
+    }
+}
@@ -0,0 +1,26 @@
+package com.finledger.backend.config;
+
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Chooses what happens to the schema at startup (finledger.migrations.mode). In {@code validate}
+ * mode pending, failed or modified migrations stop the application instead of being applied, so
+ * several instances can start against a schema that a single release step has migrated.
+ */
+@Configuration
+public class SchemaMigrationConfig {
+
+    @Bean
+    public FlywayMigrationStrategy flywayMigrationStrategy(@Value("${finledger.migrations.mode:migrate}") String mode) {
+        return switch (mode) {
+            case "migrate" -> Flyway::migrate;
+            case "validate" -> Flyway::validate;
+            default -> throw new IllegalArgumentException(
+                "finledger.migrations.mode must be migrate or validate, not " + mode);
+        };
+    }
+}
@@ -2,14 +2,21 @@ package com.finledger.backend.config;
 
 import com.finledger.backend.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.actuate.metrics.export.prometheus.PrometheusScrapeEndpoint;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.oauth2.client.oidc.userinfo.OidcUserRequest;
 import org.springframework.security.oauth2.client.oidc.userinfo.OidcUserService;
+import org.springframework.security.oauth2.client.userinfo.OAuth2UserService;
 import org.springframework.security.oauth2.core.oidc.user.DefaultOidcUser;
 import org.springframework.security.oauth2.core.oidc.user.OidcUser;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
@@ -25,6 +32,10 @@ public class SecurityConfig {
     @Autowired
     private UserService userService;
     
+    // session: browser login with server-side sessions; jwt: stateless bearer tokens (see JwtAuthConfig)
+    @Value("${finledger.auth.mode:session}")
+    private String authMode;
+    
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
         http
@@ -32,22 +43,35 @@ public class SecurityConfig {
             .csrf(csrf -> csrf.disable())
             .authorizeHttpRequests(authz -> authz
                 .requestMatchers("/", "/login", "/error", "/static/**", "/assets/**").permitAll()
+                // Probes and the Prometheus scraper cannot log in; see MANAGEMENT_SERVER_PORT
+                .requestMatchers(EndpointRequest.to(HealthEndpoint.class, PrometheusScrapeEndpoint.class)).permitAll()
                 .anyRequest().authenticated()
-            )
-            .oauth2Login(oauth2 -> oauth2
-                .loginPage("/login")
-                .defaultSuccessUrl("/", true)
-                .userInfoEndpoint(userInfo -> userInfo
-                    .oidcUserService(this.oidcUserService())
-                )
-            )
-            .logout(logout -> logout
-                .logoutUrl("/api/logout")
-                .logoutSuccessUrl("/")
-                .invalidateHttpSession(true)
-                .clearAuthentication(true)
             );
         
+        if ("jwt".equals(authMode)) {
+            // No session is created or read, so any instance can serve any request
+            http
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .oauth2ResourceServer(oauth2 -> oauth2
+                    .jwt(jwt -> jwt.jwtAuthenticationConverter(this::jwtAuthentication))
+                );
+        } else {
+            http
+                .oauth2Login(oauth2 -> oauth2
+                    .loginPage("/login")
+                    .defaultSuccessUrl("/", true)
+                    .userInfoEndpoint(userInfo -> userInfo
+                        .oidcUserService(this.oidcUserService())
+                    )
+                )
+                .logout(logout -> logout
+                    .logoutUrl("/api/logout")
+                    .logoutSuccessUrl("/")
+                    .invalidateHttpSession(true)
+                    .clearAuthentication(true)
+                );
+        }
+        
         return http.build();
     }
     
@@ -58,13 +82,29 @@ public class SecurityConfig {
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
         configuration.setAllowCredentials(true);
+        // Clients read the version from ETag and send it back in If-Match
+        configuration.setExposedHeaders(Arrays.asList("ETag"));
         
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", configuration);
         return source;
     }
     
-    private OidcUserService oidcUserService() {
+    /*
+     * Reduces a verified token to its subject. Tokens that carry profile claims also record them like a
+     * login does; unchanged claims match the cached profile and cost no query.
+     */
+    private UserAuthentication jwtAuthentication(Jwt jwt) {
+        String userId = jwt.getSubject();
+        String email = jwt.getClaimAsString("email");
+        if (email != null) {
+            userService.upsertUser(userId, email, jwt.getClaimAsString("first_name"), jwt.getClaimAsString("last_name"),
+                jwt.getClaimAsString("profile_image_url"));
+        }
+        return new UserAuthentication(userId);
+    }
+    
+    private OAuth2UserService<OidcUserRequest, OidcUser> oidcUserService() {
         final OidcUserService delegate = new OidcUserService();
         
         return (userRequest) -> {
@@ -77,7 +117,7 @@ public class SecurityConfig {
             String lastName = (String) attributes.get("last_name");
             String profileImageUrl = (String) attributes.get("profile_image_url");
             
-            // Upsert user in database
+            // Writes only when the claims changed since the last login
             userService.upsertUser(userId, email, firstName, lastName, profileImageUrl);
             
             return new DefaultOidcUser(oidcUser.getAuthorities(), oidcUser.getIdToken(), oidcUser.getUserInfo());
@@ -0,0 +1,33 @@
+package com.finledger.backend.config;
+
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+/**
+ * Authentication of a verified bearer token. Only the token's subject is kept: the claims and the
+ * token itself are dropped once the request is authenticated, and nothing is stored in a session.
+ */
+public class UserAuthentication extends AbstractAuthenticationToken {
+
+    private final String userId;
+
+    public UserAuthentication(String userId) {
+        super(AuthorityUtils.NO_AUTHORITIES);
+        this.userId = userId;
+        setAuthenticated(true);
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    @Override
+    public Object getPrincipal() {
+        return userId;
+    }
+
+    @Override
+    public Object getCredentials() {
+        return null;
+    }
+}
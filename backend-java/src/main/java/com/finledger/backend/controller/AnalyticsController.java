@@ -1,64 +1,134 @@
 package com.finledger.backend.controller;
 
+import com.finledger.backend.config.CurrentUserId;
+import com.finledger.backend.dto.CategoryAnalytics;
+import com.finledger.backend.dto.Dashboard;
+import com.finledger.backend.dto.HoldingDto;
+import com.finledger.backend.dto.MonthlyTrend;
+import com.finledger.backend.dto.PortfolioMetrics;
+import com.finledger.backend.dto.RealizedGain;
+import com.finledger.backend.dto.RecurringSeries;
+import com.finledger.backend.service.DashboardService;
+import com.finledger.backend.service.HoldingsEngine;
+import com.finledger.backend.service.RecurringSeriesDetector;
+import com.finledger.backend.service.TaxLotReportService;
 import com.finledger.backend.service.TransactionService;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
-import java.util.Map;
 
 @RestController
 @RequestMapping("/api")
 @CrossOrigin(origins = "http://localhost:5000", allowCredentials = "true")
 public class AnalyticsController {
     
+    // Trend windows a client may request; each distinct window is a cached analytics view
+    private static final int MAX_TREND_MONTHS = 60;
+    
     @Autowired
     private TransactionService transactionService;
     
-    @GetMapping("/portfolio/metrics")
-    public ResponseEntity<Map<String, Object>> getPortfolioMetrics(Authentication authentication) {
-        String userId = getUserId(authentication);
-        if (userId == null) {
-            return ResponseEntity.status(401).build();
-        }
+    @Autowired
+    private HoldingsEngine holdingsEngine;
+    
+    @Autowired
+    private DashboardService dashboardService;
+    
+    @Autowired
+    private RecurringSeriesDetector recurringSeriesDetector;
+    
+    @Autowired
+    private TaxLotReportService taxLotReportService;
+    
+    // Metrics, holdings, categories and trends in one round trip, computed concurrently
+    @GetMapping("/dashboard")
+    public ResponseEntity<Dashboard> getDashboard(
+            @CurrentUserId String userId,
+            @RequestParam(defaultValue = "6") int months) {
         
-        Map<String, Object> metrics = transactionService.getPortfolioMetrics(userId);
+        if (months < 1 || months > MAX_TREND_MONTHS) {
+            return ResponseEntity.badRequest().build();
+        }
+        Dashboard dashboard = dashboardService.getDashboard(userId, months);
+        return ResponseEntity.ok(dashboard);
+    }
+    
+    @GetMapping("/portfolio/metrics")
+    public ResponseEntity<PortfolioMetrics> getPortfolioMetrics(@CurrentUserId String userId) {
+        PortfolioMetrics metrics = transactionService.getPortfolioMetrics(userId);
         return ResponseEntity.ok(metrics);
     }
     
+    @GetMapping("/portfolio/holdings")
+    public ResponseEntity<List<HoldingDto>> getHoldings(@CurrentUserId String userId) {
+        List<HoldingDto> holdings = holdingsEngine.getHoldings(userId);
+        return ResponseEntity.ok(holdings);
+    }
+    
     @GetMapping("/analytics/categories")
-    public ResponseEntity<List<Map<String, Object>>> getCategoryAnalytics(Authentication authentication) {
-        String userId = getUserId(authentication);
-        if (userId == null) {
-            return ResponseEntity.status(401).build();
-        }
-        
-        List<Map<String, Object>> analytics = transactionService.getCategoryAnalytics(userId);
+    public ResponseEntity<List<CategoryAnalytics>> getCategoryAnalytics(@CurrentUserId String userId) {
+        List<CategoryAnalytics> analytics = transactionService.getCategoryAnalytics(userId);
         return ResponseEntity.ok(analytics);
     }
     
     @GetMapping("/analytics/trends")
-    public ResponseEntity<List<Map<String, Object>>> getMonthlyTrends(
-            Authentication authentication,
+    public ResponseEntity<List<MonthlyTrend>> getMonthlyTrends(
+            @CurrentUserId String userId,
             @RequestParam(defaultValue = "6") int months) {
         
-        String userId = getUserId(authentication);
-        if (userId == null) {
-            return ResponseEntity.status(401).build();
+        if (months < 1 || months > MAX_TREND_MONTHS) {
+            return ResponseEntity.badRequest().build();
         }
-        
-        List<Map<String, Object>> trends = transactionService.getMonthlyTrends(userId, months);
+        List<MonthlyTrend> trends = transactionService.getMonthlyTrends(userId, months);
         return ResponseEntity.ok(trends);
     }
     
-    private String getUserId(Authentication authentication) {
-        if (authentication == null || !authentication.isAuthenticated()) {
-            return null;
+    // Series found by the background detector, so entries made since its last run are not reflected yet
+    @GetMapping("/analytics/recurring")
+    public ResponseEntity<List<RecurringSeries>> getRecurringSeries(@CurrentUserId String userId) {
+        List<RecurringSeries> series = recurringSeriesDetector.getSeries(userId);
+        return ResponseEntity.ok(series);
+    }
+    
+    // Realized gains of fiscal years year..toYear, written to the response as sales are matched to lots
+    @GetMapping("/analytics/realized-gains")
+    public void getRealizedGains(
+            @CurrentUserId String userId,
+            @RequestParam int year,
+            @RequestParam(required = false) Integer toYear,
+            @RequestParam(defaultValue = "FIFO") RealizedGain.LotMethod method,
+            @RequestParam(defaultValue = "csv") String format,
+            HttpServletResponse response) throws IOException {
+        
+        boolean ndjson = format.equalsIgnoreCase("ndjson");
+        if (!ndjson && !format.equalsIgnoreCase("csv")) {
+            response.sendError(400, "Unsupported report format: " + format);
+            return;
+        }
+        int lastYear = toYear == null ? year : toYear;
+        if (year < 1 || lastYear < year || lastYear > 9998) {
+            response.sendError(400, "Invalid fiscal year range: " + year + " to " + lastYear);
+            return;
+        }
+        
+        response.setContentType(ndjson ? "application/x-ndjson" : "text/csv");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"realized-gains-" + year
+                + (lastYear == year ? "" : "-" + lastYear) + (ndjson ? ".ndjson" : ".csv") + "\"");
+        
+        Writer out = new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8);
+        if (ndjson) {
+            taxLotReportService.writeNdjson(userId, year, lastYear, method, out);
+        } else {
+            taxLotReportService.writeCsv(userId, year, lastYear, method, out);
         }
-        OAuth2User oauth2User = (OAuth2User) authentication.getPrincipal();
-        return oauth2User.getAttribute("sub");
     }
 }
\ No newline at end of file
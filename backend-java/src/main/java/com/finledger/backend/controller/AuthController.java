@@ -1,11 +1,13 @@
 package com.finledger.backend.controller;
 
-import com.finledger.backend.entity.User;
+import com.finledger.backend.config.CurrentUserId;
+import com.finledger.backend.dto.BaseCurrencyRequest;
+import com.finledger.backend.dto.InvalidRequestException;
+import com.finledger.backend.dto.UserProfile;
 import com.finledger.backend.service.UserService;
+import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Optional;
@@ -19,15 +21,21 @@ public class AuthController {
     private UserService userService;
     
     @GetMapping("/user")
-    public ResponseEntity<?> getCurrentUser(Authentication authentication) {
-        if (authentication == null || !authentication.isAuthenticated()) {
-            return ResponseEntity.status(401).body(new ErrorResponse("Unauthorized"));
+    public ResponseEntity<?> getCurrentUser(@CurrentUserId String userId) {
+        Optional<UserProfile> user = userService.getProfile(userId);
+        if (user.isPresent()) {
+            return ResponseEntity.ok(user.get());
+        } else {
+            return ResponseEntity.status(404).body(new ErrorResponse("User not found"));
         }
-        
-        OAuth2User oauth2User = (OAuth2User) authentication.getPrincipal();
-        String userId = oauth2User.getAttribute("sub");
-        
-        Optional<User> user = userService.findById(userId);
+    }
+    
+    // Analytics and holdings are reported in the new currency from the response on
+    @PutMapping("/user/base-currency")
+    public ResponseEntity<?> setBaseCurrency(
+            @CurrentUserId String userId,
+            @Valid @RequestBody BaseCurrencyRequest request) {
+        Optional<UserProfile> user = userService.setBaseCurrency(userId, request.baseCurrency());
         if (user.isPresent()) {
             return ResponseEntity.ok(user.get());
         } else {
@@ -35,6 +43,12 @@ public class AuthController {
         }
     }
     
+    // A base currency no loaded exchange rates convert from
+    @ExceptionHandler(InvalidRequestException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidRequest(InvalidRequestException e) {
+        return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+    }
+    
     private static class ErrorResponse {
         private String message;
         
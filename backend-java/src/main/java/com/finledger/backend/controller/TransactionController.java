@@ -1,128 +1,256 @@
 package com.finledger.backend.controller;
 
+import com.finledger.backend.config.CurrentUserId;
+import com.finledger.backend.dto.InvalidRequestException;
+import com.finledger.backend.dto.LotSelectionRequest;
+import com.finledger.backend.dto.TransactionCursor;
 import com.finledger.backend.dto.TransactionDto;
+import com.finledger.backend.dto.TransactionEvent;
+import com.finledger.backend.dto.TransactionFilter;
+import com.finledger.backend.dto.TransactionView;
 import com.finledger.backend.entity.Transaction;
+import com.finledger.backend.service.TransactionExportService;
+import com.finledger.backend.service.TransactionImportService;
+import com.finledger.backend.service.TaxLotReportService;
 import com.finledger.backend.service.TransactionService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/transactions")
 @CrossOrigin(origins = "http://localhost:5000", allowCredentials = "true")
 public class TransactionController {
     
+    // Largest page a client may request; paging exists so that no request reads the whole ledger
+    private static final int MAX_LIMIT = 100;
+    
     @Autowired
     private TransactionService transactionService;
     
+    @Autowired
+    private TransactionImportService transactionImportService;
+    
+    @Autowired
+    private TransactionExportService transactionExportService;
+    
+    @Autowired
+    private TaxLotReportService taxLotReportService;
+    
     @GetMapping
-    public ResponseEntity<Map<String, Object>> getTransactions(
-            Authentication authentication,
+    public ResponseEntity<TransactionDto.ListResponse<?>> getTransactions(
+            @CurrentUserId String userId,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int limit,
             @RequestParam(required = false) String category,
             @RequestParam(required = false) String platform,
             @RequestParam(required = false) String search,
+            @RequestParam(required = false) Transaction.TransactionType type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) BigDecimal minAmount,
+            @RequestParam(required = false) BigDecimal maxAmount,
             @RequestParam(defaultValue = "date") String sortBy,
-            @RequestParam(defaultValue = "desc") String sortOrder) {
+            @RequestParam(defaultValue = "desc") String sortOrder,
+            @RequestParam(required = false) String cursor) {
+        
+        checkPaging(page, limit);
         
-        String userId = getUserId(authentication);
-        if (userId == null) {
-            return ResponseEntity.status(401).build();
+        // All filters combine into one statement
+        TransactionFilter filter = new TransactionFilter(search, category, platform, type, from, to, minAmount, maxAmount);
+        
+        if (cursor != null) {
+            // Cursors are (date, id) positions, so keyset pages can only be in date order
+            if (!sortBy.equals("date")) {
+                throw new InvalidRequestException("Cursor paging is ordered by date only, not by " + sortBy);
+            }
+            return getTransactionsByCursor(userId, filter, cursor, limit, sortOrder);
         }
         
         Sort.Direction direction = sortOrder.equalsIgnoreCase("asc") ? Sort.Direction.ASC : Sort.Direction.DESC;
         Pageable pageable = PageRequest.of(page, limit, Sort.by(direction, sortBy));
         
-        Page<Transaction> transactionPage;
+        Page<TransactionView> transactionPage = transactionService.getTransactions(userId, filter, pageable);
         
-        if (search != null && !search.trim().isEmpty()) {
-            transactionPage = transactionService.searchTransactions(userId, search, pageable);
-        } else if (category != null && !category.trim().isEmpty()) {
-            transactionPage = transactionService.getTransactionsByCategory(userId, category, pageable);
-        } else if (platform != null && !platform.trim().isEmpty()) {
-            transactionPage = transactionService.getTransactionsByPlatform(userId, platform, pageable);
-        } else {
-            transactionPage = transactionService.getTransactions(userId, pageable);
+        return ResponseEntity.ok(new TransactionDto.ListResponse<>(transactionPage.getContent(),
+                new TransactionDto.PagePagination(transactionPage.getNumber() + 1, transactionPage.getSize(),
+                        transactionPage.getTotalElements(), transactionPage.getTotalPages())));
+    }
+    
+    // Keyset mode: an empty cursor requests the first page, and each page returns the cursor for the next one
+    private ResponseEntity<TransactionDto.ListResponse<?>> getTransactionsByCursor(
+            String userId, TransactionFilter filter, String cursor, int limit, String sortOrder) {
+        
+        TransactionCursor position = cursor.isEmpty() ? null : TransactionCursor.decode(cursor);
+        
+        boolean ascending = sortOrder.equalsIgnoreCase("asc");
+        Slice<TransactionView> slice = transactionService.getTransactionsAfter(userId, filter, position, ascending, limit);
+        
+        List<TransactionView> content = slice.getContent();
+        String nextCursor = slice.hasNext() ? TransactionCursor.of(content.get(content.size() - 1)).encode() : null;
+        
+        return ResponseEntity.ok(new TransactionDto.ListResponse<>(content,
+                new TransactionDto.CursorPagination(limit, slice.hasNext(), nextCursor)));
+    }
+    
+    // Out of range, PageRequest would throw IllegalArgumentException, which is a 500
+    private static void checkPaging(int page, int limit) {
+        if (page < 0) {
+            throw new InvalidRequestException("page must not be negative");
         }
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new InvalidRequestException("limit must be between 1 and " + MAX_LIMIT);
+        }
+    }
+    
+    private static boolean hasText(String value) {
+        return value != null && !value.trim().isEmpty();
+    }
+    
+    // Ranked free-text search (type-ahead) with optional structured filters; pages are sliced, so no total count
+    @GetMapping("/search")
+    public ResponseEntity<TransactionDto.ListResponse<TransactionDto.SlicePagination>> searchTransactions(
+            @CurrentUserId String userId,
+            @RequestParam String q,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String platform,
+            @RequestParam(required = false) Transaction.TransactionType type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int limit) {
+        
+        if (!hasText(q)) {
+            throw new InvalidRequestException("Search text is required");
+        }
+        checkPaging(page, limit);
         
-        List<TransactionDto.Response> transactions = transactionPage.getContent()
-                .stream()
-                .map(TransactionDto.Response::new)
-                .collect(Collectors.toList());
+        TransactionFilter filter = new TransactionFilter(null, category, platform, type, from, to, null, null);
+        Slice<TransactionView> slice = transactionService.searchTransactionsRanked(
+                userId, q, filter, PageRequest.of(page, limit));
+        
+        return ResponseEntity.ok(new TransactionDto.ListResponse<>(slice.getContent(),
+                new TransactionDto.SlicePagination(slice.getNumber() + 1, slice.getSize(), slice.hasNext())));
+    }
+    
+    // Full-ledger export, written straight to the response as rows are read
+    @GetMapping("/export")
+    public void exportTransactions(
+            @CurrentUserId String userId,
+            @RequestParam(defaultValue = "csv") String format,
+            HttpServletResponse response) throws IOException {
         
-        Map<String, Object> response = new HashMap<>();
-        response.put("transactions", transactions);
+        boolean ndjson = format.equalsIgnoreCase("ndjson");
+        if (!ndjson && !format.equalsIgnoreCase("csv")) {
+            response.sendError(400, "Unsupported export format: " + format);
+            return;
+        }
         
-        Map<String, Object> pagination = new HashMap<>();
-        pagination.put("page", transactionPage.getNumber() + 1);
-        pagination.put("limit", transactionPage.getSize());
-        pagination.put("total", transactionPage.getTotalElements());
-        pagination.put("totalPages", transactionPage.getTotalPages());
-        response.put("pagination", pagination);
+        response.setContentType(ndjson ? "application/x-ndjson" : "text/csv");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"transactions." + (ndjson ? "ndjson" : "csv") + "\"");
         
-        return ResponseEntity.ok(response);
+        Writer out = new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8);
+        if (ndjson) {
+            transactionExportService.exportNdjson(userId, out);
+        } else {
+            transactionExportService.exportCsv(userId, out);
+        }
     }
     
     @GetMapping("/{id}")
-    public ResponseEntity<TransactionDto.Response> getTransaction(
+    public ResponseEntity<TransactionView> getTransaction(
             @PathVariable Long id, 
-            Authentication authentication) {
-        
-        String userId = getUserId(authentication);
-        if (userId == null) {
-            return ResponseEntity.status(401).build();
-        }
+            @CurrentUserId String userId) {
         
-        Optional<Transaction> transaction = transactionService.getTransaction(id, userId);
+        Optional<TransactionView> transaction = transactionService.getTransaction(id, userId);
         if (transaction.isPresent()) {
-            return ResponseEntity.ok(new TransactionDto.Response(transaction.get()));
+            return ResponseEntity.ok().eTag(String.valueOf(transaction.get().version())).body(transaction.get());
         } else {
             return ResponseEntity.notFound().build();
         }
     }
     
+    // Audit trail from the ledger journal; still available after the transaction is deleted
+    @GetMapping("/{id}/history")
+    public ResponseEntity<List<TransactionEvent>> getTransactionHistory(
+            @PathVariable Long id,
+            @CurrentUserId String userId) {
+        
+        List<TransactionEvent> history = transactionService.getTransactionHistory(id, userId);
+        if (history.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(history);
+    }
+    
+    // A retry with the same Idempotency-Key returns the transaction the first attempt created
     @PostMapping
-    public ResponseEntity<TransactionDto.Response> createTransaction(
+    public ResponseEntity<?> createTransaction(
             @Valid @RequestBody TransactionDto.CreateRequest request,
-            Authentication authentication) {
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @CurrentUserId String userId) {
         
-        String userId = getUserId(authentication);
-        if (userId == null) {
-            return ResponseEntity.status(401).build();
+        Optional<TransactionView> transaction = transactionService.createTransaction(userId, request, idempotencyKey);
+        if (transaction.isEmpty()) {
+            return ResponseEntity.status(409).body(Map.of("message",
+                "Idempotency-Key was already used for a transaction that has since been deleted"));
         }
+        return ResponseEntity.ok().eTag(String.valueOf(transaction.get().version())).body(transaction.get());
+    }
+    
+    // Bulk import: the request body is a CSV file (with header row) or NDJSON, read as a stream
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<TransactionDto.ImportResult> importTransactions(
+            HttpServletRequest request,
+            @CurrentUserId String userId) throws IOException {
         
-        Transaction transaction = transactionService.createTransaction(userId, request);
-        return ResponseEntity.ok(new TransactionDto.Response(transaction));
+        MediaType contentType = MediaType.parseMediaType(request.getContentType());
+        TransactionDto.ImportResult result = contentType.isCompatibleWith(MediaType.parseMediaType("text/csv"))
+                ? transactionImportService.importCsv(userId, request.getInputStream())
+                : transactionImportService.importNdjson(userId, request.getInputStream());
+        return ResponseEntity.ok(result);
     }
     
+    // With If-Match (the version from the ETag), an edit made elsewhere since is answered with 412;
+    // without it, a write that keeps losing to concurrent edits is answered with 409
     @PutMapping("/{id}")
-    public ResponseEntity<TransactionDto.Response> updateTransaction(
+    public ResponseEntity<TransactionView> updateTransaction(
             @PathVariable Long id,
             @Valid @RequestBody TransactionDto.CreateRequest request,
-            Authentication authentication) {
-        
-        String userId = getUserId(authentication);
-        if (userId == null) {
-            return ResponseEntity.status(401).build();
-        }
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @CurrentUserId String userId) {
         
-        Optional<Transaction> updatedTransaction = transactionService.updateTransaction(id, userId, request);
+        Optional<TransactionView> updatedTransaction =
+                transactionService.updateTransaction(id, userId, request, expectedVersion(ifMatch));
         if (updatedTransaction.isPresent()) {
-            return ResponseEntity.ok(new TransactionDto.Response(updatedTransaction.get()));
+            TransactionView updated = updatedTransaction.get();
+            return ResponseEntity.ok().eTag(String.valueOf(updated.version())).body(updated);
         } else {
             return ResponseEntity.notFound().build();
         }
@@ -131,26 +259,63 @@ public class TransactionController {
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteTransaction(
             @PathVariable Long id, 
-            Authentication authentication) {
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @CurrentUserId String userId) {
         
-        String userId = getUserId(authentication);
-        if (userId == null) {
-            return ResponseEntity.status(401).build();
+        boolean deleted = transactionService.deleteTransaction(id, userId, expectedVersion(ifMatch));
+        if (deleted) {
+            return ResponseEntity.noContent().build();
+        } else {
+            return ResponseEntity.notFound().build();
         }
+    }
+    
+    // Specific-lot identification: the BUY lots this SELL disposes of in the SPECIFIC realized gains report
+    @PutMapping("/{id}/lots")
+    public ResponseEntity<Void> setLotSelections(
+            @PathVariable Long id,
+            @Valid @RequestBody LotSelectionRequest request,
+            @CurrentUserId String userId) {
         
-        boolean deleted = transactionService.deleteTransaction(id, userId);
-        if (deleted) {
+        if (taxLotReportService.setLotSelections(userId, id, request.lots())) {
             return ResponseEntity.noContent().build();
         } else {
             return ResponseEntity.notFound().build();
         }
     }
     
-    private String getUserId(Authentication authentication) {
-        if (authentication == null || !authentication.isAuthenticated()) {
+    // Invalid cursors, unsupported sort properties and cursor sorts, out-of-range paging, empty search text, reused idempotency keys and lot selections;
+    // any other IllegalArgumentException is a server error whose message stays in the log
+    @ExceptionHandler(InvalidRequestException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidRequest(InvalidRequestException e) {
+        return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+    }
+    
+    // The transaction changed since the client read the version it sent in If-Match
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Map<String, String>> handleStaleVersion(OptimisticLockingFailureException e) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(Map.of("message", e.getMessage()));
+    }
+    
+    // A write without If-Match lost every retry to concurrent writers; the client may simply send it again
+    @ExceptionHandler(ConcurrencyFailureException.class)
+    public ResponseEntity<Map<String, String>> handleConcurrentWrites(ConcurrencyFailureException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", e.getMessage()));
+    }
+    
+    // If-Match carries an ETag ("3", or weak W/"3"); absent or * means any version
+    private static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
             return null;
         }
-        OAuth2User oauth2User = (OAuth2User) authentication.getPrincipal();
-        return oauth2User.getAttribute("sub");
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        try {
+            return Long.parseLong(tag.replace("\"", ""));
+        } catch (NumberFormatException e) {
+            throw new InvalidRequestException("Invalid If-Match header: " + ifMatch);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,11 @@
+package com.finledger.backend.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+
+// Body of PUT /api/auth/user/base-currency
+public record BaseCurrencyRequest(
+        @NotNull(message = "Base currency is required")
+        @Pattern(regexp = "[A-Z]{3}", message = "Base currency must be a three-letter ISO 4217 code")
+        String baseCurrency) {
+}
@@ -0,0 +1,7 @@
+package com.finledger.backend.dto;
+
+import java.math.BigDecimal;
+
+// One row of /api/analytics/categories, projected directly from the analytics rollups
+public record CategoryAnalytics(String category, BigDecimal total, long count) {
+}
@@ -0,0 +1,11 @@
+package com.finledger.backend.dto;
+
+import java.util.List;
+
+// Response for /api/dashboard: the metrics, holdings, categories and trends views in one payload
+public record Dashboard(
+        PortfolioMetrics metrics,
+        List<HoldingDto> holdings,
+        List<CategoryAnalytics> categories,
+        List<MonthlyTrend> trends) {
+}
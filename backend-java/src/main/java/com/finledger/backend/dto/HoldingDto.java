@@ -0,0 +1,43 @@
+package com.finledger.backend.dto;
+
+import java.math.BigDecimal;
+
+// Response DTO for one asset position computed by the holdings engine
+public class HoldingDto {
+    private String assetName;
+    private BigDecimal quantity;
+    private BigDecimal costBasis;
+    private BigDecimal averageCost;
+    private BigDecimal realizedPnl;
+    private BigDecimal totalInvested;
+    private BigDecimal totalProceeds;
+    private int openLots;
+
+    // Constructors
+    public HoldingDto() {}
+
+    // Getters and Setters
+    public String getAssetName() { return assetName; }
+    public void setAssetName(String assetName) { this.assetName = assetName; }
+
+    public BigDecimal getQuantity() { return quantity; }
+    public void setQuantity(BigDecimal quantity) { this.quantity = quantity; }
+
+    public BigDecimal getCostBasis() { return costBasis; }
+    public void setCostBasis(BigDecimal costBasis) { this.costBasis = costBasis; }
+
+    public BigDecimal getAverageCost() { return averageCost; }
+    public void setAverageCost(BigDecimal averageCost) { this.averageCost = averageCost; }
+
+    public BigDecimal getRealizedPnl() { return realizedPnl; }
+    public void setRealizedPnl(BigDecimal realizedPnl) { this.realizedPnl = realizedPnl; }
+
+    public BigDecimal getTotalInvested() { return totalInvested; }
+    public void setTotalInvested(BigDecimal totalInvested) { this.totalInvested = totalInvested; }
+
+    public BigDecimal getTotalProceeds() { return totalProceeds; }
+    public void setTotalProceeds(BigDecimal totalProceeds) { this.totalProceeds = totalProceeds; }
+
+    public int getOpenLots() { return openLots; }
+    public void setOpenLots(int openLots) { this.openLots = openLots; }
+}
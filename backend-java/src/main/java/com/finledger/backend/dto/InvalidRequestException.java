@@ -0,0 +1,14 @@
+package com.finledger.backend.dto;
+
+/**
+ * A request the client has to change before it can succeed: a malformed cursor, an unsupported sort
+ * property, a reused Idempotency-Key, an amount that cannot be converted, an invalid lot selection.
+ * Controllers answer it with 400 and its message, so the message is written for the client. Any
+ * other IllegalArgumentException is a server error and its message is not returned.
+ */
+public class InvalidRequestException extends IllegalArgumentException {
+
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,15 @@
+package com.finledger.backend.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+// Body of PUT /api/transactions/{id}/lots: the BUY lots a sale disposes of; an empty list clears the selection
+public record LotSelectionRequest(@NotNull List<@Valid Lot> lots) {
+
+    public record Lot(@NotNull Long transactionId, @NotNull @Positive BigDecimal quantity) {
+    }
+}
@@ -0,0 +1,7 @@
+package com.finledger.backend.dto;
+
+import java.math.BigDecimal;
+
+// One month of /api/analytics/trends; month is formatted like "Jan 2024"
+public record MonthlyTrend(String month, BigDecimal spending, BigDecimal investments) {
+}
@@ -0,0 +1,11 @@
+package com.finledger.backend.dto;
+
+import java.math.BigDecimal;
+
+// Response for /api/portfolio/metrics; totalPortfolio currently equals totalInvestments
+public record PortfolioMetrics(
+        BigDecimal totalPortfolio,
+        BigDecimal monthlySpending,
+        BigDecimal totalInvestments,
+        long transactionCount) {
+}
@@ -0,0 +1,31 @@
+package com.finledger.backend.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * One line of the realized gains report: the part of a sale matched to one BUY lot, with its share
+ * of the proceeds and the lot's cost, in the user's base currency. Units sold beyond the open lots
+ * have no lot (null lot fields) and zero cost.
+ */
+public record RealizedGain(
+        int fiscalYear,
+        String assetName,
+        long sellTransactionId,
+        LocalDate sellDate,
+        Long lotTransactionId,
+        LocalDate acquiredDate,
+        Long holdingDays,
+        BigDecimal quantity,
+        BigDecimal proceeds,
+        BigDecimal costBasis,
+        BigDecimal gain,
+        String currency) {
+
+    // Which open lots a sale consumes: oldest first, newest first, or the user's selection then oldest first
+    public enum LotMethod {
+        FIFO,
+        LIFO,
+        SPECIFIC
+    }
+}
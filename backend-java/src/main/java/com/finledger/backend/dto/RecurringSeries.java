@@ -0,0 +1,45 @@
+package com.finledger.backend.dto;
+
+import com.finledger.backend.entity.Transaction;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// One recurring series of /api/analytics/recurring; amounts are in the series' own currency
+public record RecurringSeries(
+        Long id,
+        String assetName,
+        String platform,
+        Transaction.TransactionType type,
+        String currency,
+        Cadence cadence,
+        BigDecimal typicalAmount,
+        BigDecimal minAmount,
+        BigDecimal maxAmount,
+        int occurrences,
+        LocalDate firstDate,
+        LocalDate lastDate,
+        LocalDate nextExpectedDate) {
+
+    public enum Cadence {
+        WEEKLY(6, 8),
+        // Calendar months are 28 to 31 days, and entries booked on the next working day stretch a gap further
+        MONTHLY(26, 34);
+
+        private final int minDays;
+        private final int maxDays;
+
+        Cadence(int minDays, int maxDays) {
+            this.minDays = minDays;
+            this.maxDays = maxDays;
+        }
+
+        public boolean fits(long days) {
+            return days >= minDays && days <= maxDays;
+        }
+
+        public LocalDate after(LocalDate date) {
+            return this == WEEKLY ? date.plusWeeks(1) : date.plusMonths(1);
+        }
+    }
+}
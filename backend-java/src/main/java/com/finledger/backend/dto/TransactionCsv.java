@@ -0,0 +1,256 @@
+package com.finledger.backend.dto;
+
+import com.finledger.backend.entity.Transaction;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * CSV representation of ledger rows, shared by bulk import and export so that an exported file
+ * can be imported unchanged. Records follow RFC 4180: comma separated, optionally double-quoted,
+ * with doubled quotes inside quoted fields.
+ */
+public final class TransactionCsv {
+
+    public static final List<String> COLUMNS = List.of(
+        "date", "type", "platform", "category", "assetName", "amount", "currency", "quantity", "notes");
+
+    // Export also writes the id; import ignores it like any other unknown column
+    private static final List<String> EXPORT_COLUMNS = List.of(
+        "id", "date", "type", "platform", "category", "assetName", "amount", "currency", "quantity", "notes");
+
+    private static final Set<String> REQUIRED = Set.of("date", "type", "platform", "category", "assetName", "amount");
+
+    private TransactionCsv() {}
+
+    /**
+     * Maps column names to positions, ignoring case and unknown columns.
+     * Throws IllegalArgumentException if a required column is missing.
+     */
+    public static Map<String, Integer> parseHeader(List<String> header) {
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            String name = header.get(i).trim();
+            for (String column : COLUMNS) {
+                if (column.equalsIgnoreCase(name)) {
+                    positions.put(column, i);
+                }
+            }
+        }
+        for (String column : REQUIRED) {
+            if (!positions.containsKey(column)) {
+                throw new IllegalArgumentException("Missing required column: " + column);
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Converts one record to a create request. Throws IllegalArgumentException for values that
+     * cannot be parsed; bean validation of the request is left to the caller.
+     */
+    public static TransactionDto.CreateRequest toCreateRequest(Map<String, Integer> header, List<String> record) {
+        TransactionDto.CreateRequest request = new TransactionDto.CreateRequest();
+        request.setPlatform(field(header, record, "platform"));
+        request.setCategory(field(header, record, "category"));
+        request.setAssetName(field(header, record, "assetName"));
+        request.setNotes(field(header, record, "notes"));
+
+        String type = field(header, record, "type");
+        if (type != null) {
+            try {
+                request.setType(Transaction.TransactionType.valueOf(type.toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid type: " + type);
+            }
+        }
+
+        String date = field(header, record, "date");
+        if (date != null) {
+            try {
+                request.setDate(LocalDate.parse(date));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid date: " + date);
+            }
+        }
+
+        request.setAmount(decimal(header, record, "amount"));
+        String currency = field(header, record, "currency");
+        if (currency != null) {
+            request.setCurrency(currency.toUpperCase(Locale.ROOT));
+        }
+        request.setQuantity(decimal(header, record, "quantity"));
+        return request;
+    }
+
+    public static void writeHeader(Writer out) throws IOException {
+        out.write(String.join(",", EXPORT_COLUMNS));
+        out.write("\r\n");
+    }
+
+    public static void writeRecord(Writer out, TransactionView transaction) throws IOException {
+        out.write(String.valueOf(transaction.id()));
+        out.write(',');
+        out.write(transaction.date().toString());
+        out.write(',');
+        out.write(transaction.type().name());
+        out.write(',');
+        writeField(out, transaction.platform());
+        out.write(',');
+        writeField(out, transaction.category());
+        out.write(',');
+        writeField(out, transaction.assetName());
+        out.write(',');
+        out.write(transaction.amount().toPlainString());
+        out.write(',');
+        out.write(transaction.currency());
+        out.write(',');
+        if (transaction.quantity() != null) {
+            out.write(transaction.quantity().toPlainString());
+        }
+        out.write(',');
+        writeField(out, transaction.notes());
+        out.write("\r\n");
+    }
+
+    public static void writeField(Writer out, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean needsQuotes = false;
+        for (int i = 0; i < value.length() && !needsQuotes; i++) {
+            char c = value.charAt(i);
+            needsQuotes = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!needsQuotes) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+
+    private static String field(Map<String, Integer> header, List<String> record, String column) {
+        Integer position = header.get(column);
+        if (position == null || position >= record.size()) {
+            return null;
+        }
+        String value = record.get(position).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static BigDecimal decimal(Map<String, Integer> header, List<String> record, String column) {
+        String value = field(header, record, column);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return new BigDecimal(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + column + ": " + value);
+        }
+    }
+
+    /**
+     * Streaming record reader. Buffers one record at a time, so memory use does not depend on
+     * the size of the input.
+     */
+    public static class RecordReader {
+        private final Reader in;
+        private int line = 1;
+        private int recordLine;
+        private int pending = -2;
+
+        public RecordReader(Reader in) {
+            this.in = in instanceof BufferedReader ? in : new BufferedReader(in);
+        }
+
+        // Line on which the most recently returned record started
+        public int getRecordLine() {
+            return recordLine;
+        }
+
+        /**
+         * Returns the next record, or null at end of input. Blank lines are skipped. Throws
+         * IllegalArgumentException if the input ends inside a quoted field.
+         */
+        public List<String> next() throws IOException {
+            List<String> record = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            int quoteLine = 0;
+            boolean sawAnything = false;
+            recordLine = line;
+
+            while (true) {
+                int c = read();
+                if (c == -1) {
+                    if (quoted) {
+                        throw new IllegalArgumentException("Unterminated quoted field starting on line " + quoteLine);
+                    }
+                    if (!sawAnything) {
+                        return null;
+                    }
+                    record.add(field.toString());
+                    return record;
+                }
+                if (quoted) {
+                    if (c == '"') {
+                        int following = read();
+                        if (following == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            unread(following);
+                        }
+                    } else {
+                        if (c == '\n') line++;
+                        field.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                    quoteLine = line;
+                    sawAnything = true;
+                } else if (c == ',') {
+                    record.add(field.toString());
+                    field.setLength(0);
+                    sawAnything = true;
+                } else if (c == '\r' || c == '\n') {
+                    if (c == '\r') {
+                        int following = read();
+                        if (following != '\n') unread(following);
+                    }
+                    line++;
+                    if (sawAnything) {
+                        record.add(field.toString());
+                        return record;
+                    }
+                    recordLine = line;
+                } else {
+                    field.append((char) c);
+                    sawAnything = true;
+                }
+            }
+        }
+
+        private int read() throws IOException {
+            if (pending != -2) {
+                int c = pending;
+                pending = -2;
+                return c;
+            }
+            return in.read();
+        }
+
+        private void unread(int c) {
+            pending = c;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.finledger.backend.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque keyset position in a user's ledger: the (date, id) of the last row on a page.
+ * Clients receive it base64url-encoded and pass it back unchanged to fetch the next page.
+ */
+public record TransactionCursor(LocalDate date, long id) {
+
+    private static final char SEPARATOR = ':';
+
+    public static TransactionCursor of(TransactionView transaction) {
+        return new TransactionCursor(transaction.date(), transaction.id());
+    }
+
+    public String encode() {
+        String raw = date.toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static TransactionCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int split = raw.indexOf(SEPARATOR);
+            if (split < 0) {
+                throw new InvalidRequestException("Invalid cursor");
+            }
+            return new TransactionCursor(LocalDate.parse(raw.substring(0, split)),
+                Long.parseLong(raw.substring(split + 1)));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            // Also malformed Base64 and ids (NumberFormatException)
+            throw new InvalidRequestException("Invalid cursor");
+        }
+    }
+}
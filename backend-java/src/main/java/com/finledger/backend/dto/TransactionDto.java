@@ -5,34 +5,43 @@ import jakarta.validation.constraints.*;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 public class TransactionDto {
     
     // Request DTO for creating/updating transactions
     public static class CreateRequest {
         @NotBlank(message = "Platform is required")
+        @Size(max = 255, message = "Platform must be at most 255 characters")
         private String platform;
         
         @NotBlank(message = "Category is required")
+        @Size(max = 255, message = "Category must be at most 255 characters")
         private String category;
         
         @NotNull(message = "Transaction type is required")
         private Transaction.TransactionType type;
         
         @NotBlank(message = "Asset name is required")
+        @Size(max = 255, message = "Asset name must be at most 255 characters")
         private String assetName;
         
         @NotNull(message = "Amount is required")
         @DecimalMin(value = "0.0", inclusive = false, message = "Amount must be greater than 0")
         private BigDecimal amount;
         
+        // Defaults to the user's base currency on create; an update without one keeps the row's currency
+        @Pattern(regexp = "[A-Z]{3}", message = "Currency must be a three-letter ISO 4217 code")
+        private String currency;
+        
         @DecimalMin(value = "0.0", inclusive = false, message = "Quantity must be greater than 0")
         private BigDecimal quantity;
         
         @NotNull(message = "Date is required")
         private LocalDate date;
         
+        @Size(max = 255, message = "Notes must be at most 255 characters")
         private String notes;
         
         // Constructors
@@ -54,6 +63,9 @@ public class TransactionDto {
         public BigDecimal getAmount() { return amount; }
         public void setAmount(BigDecimal amount) { this.amount = amount; }
         
+        public String getCurrency() { return currency; }
+        public void setCurrency(String currency) { this.currency = currency; }
+        
         public BigDecimal getQuantity() { return quantity; }
         public void setQuantity(BigDecimal quantity) { this.quantity = quantity; }
         
@@ -64,69 +76,59 @@ public class TransactionDto {
         public void setNotes(String notes) { this.notes = notes; }
     }
     
-    // Response DTO for returning transaction data
-    public static class Response {
-        private Long id;
-        private String platform;
-        private String category;
-        private Transaction.TransactionType type;
-        private String assetName;
-        private BigDecimal amount;
-        private BigDecimal quantity;
-        private LocalDate date;
-        private String notes;
-        private LocalDateTime createdAt;
-        private LocalDateTime updatedAt;
+    // Response DTO for bulk imports: rows are accepted or rejected individually
+    public static class ImportResult {
+        private int imported;
+        private int failed;
+        private List<ImportError> errors = new ArrayList<>();
+        private boolean errorsTruncated;
         
         // Constructors
-        public Response() {}
-        
-        public Response(Transaction transaction) {
-            this.id = transaction.getId();
-            this.platform = transaction.getPlatform();
-            this.category = transaction.getCategory();
-            this.type = transaction.getType();
-            this.assetName = transaction.getAssetName();
-            this.amount = transaction.getAmount();
-            this.quantity = transaction.getQuantity();
-            this.date = transaction.getDate();
-            this.notes = transaction.getNotes();
-            this.createdAt = transaction.getCreatedAt();
-            this.updatedAt = transaction.getUpdatedAt();
-        }
+        public ImportResult() {}
         
         // Getters and Setters
-        public Long getId() { return id; }
-        public void setId(Long id) { this.id = id; }
+        public int getImported() { return imported; }
+        public void setImported(int imported) { this.imported = imported; }
         
-        public String getPlatform() { return platform; }
-        public void setPlatform(String platform) { this.platform = platform; }
-        
-        public String getCategory() { return category; }
-        public void setCategory(String category) { this.category = category; }
+        public int getFailed() { return failed; }
+        public void setFailed(int failed) { this.failed = failed; }
         
-        public Transaction.TransactionType getType() { return type; }
-        public void setType(Transaction.TransactionType type) { this.type = type; }
+        public List<ImportError> getErrors() { return errors; }
+        public void setErrors(List<ImportError> errors) { this.errors = errors; }
         
-        public String getAssetName() { return assetName; }
-        public void setAssetName(String assetName) { this.assetName = assetName; }
-        
-        public BigDecimal getAmount() { return amount; }
-        public void setAmount(BigDecimal amount) { this.amount = amount; }
-        
-        public BigDecimal getQuantity() { return quantity; }
-        public void setQuantity(BigDecimal quantity) { this.quantity = quantity; }
+        public boolean isErrorsTruncated() { return errorsTruncated; }
+        public void setErrorsTruncated(boolean errorsTruncated) { this.errorsTruncated = errorsTruncated; }
+    }
+    
+    public static class ImportError {
+        private int line;
+        private String message;
         
-        public LocalDate getDate() { return date; }
-        public void setDate(LocalDate date) { this.date = date; }
+        // Constructors
+        public ImportError() {}
         
-        public String getNotes() { return notes; }
-        public void setNotes(String notes) { this.notes = notes; }
+        public ImportError(int line, String message) {
+            this.line = line;
+            this.message = message;
+        }
         
-        public LocalDateTime getCreatedAt() { return createdAt; }
-        public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+        // Getters and Setters
+        public int getLine() { return line; }
+        public void setLine(int line) { this.line = line; }
         
-        public LocalDateTime getUpdatedAt() { return updatedAt; }
-        public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+        public String getMessage() { return message; }
+        public void setMessage(String message) { this.message = message; }
     }
-}
\ No newline at end of file
+    
+    // List responses: one page of transactions plus the pagination block of the paging mode used
+    public record ListResponse<P>(List<TransactionView> transactions, P pagination) {}
+    
+    // Offset paging with totals; page is 1-based
+    public record PagePagination(int page, int limit, long total, int totalPages) {}
+    
+    // Keyset paging; nextCursor is null on the last page
+    public record CursorPagination(int limit, boolean hasNext, String nextCursor) {}
+    
+    // Offset paging without a total count; page is 1-based
+    public record SlicePagination(int page, int limit, boolean hasNext) {}
+}
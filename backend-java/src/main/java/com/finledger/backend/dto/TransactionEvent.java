@@ -0,0 +1,17 @@
+package com.finledger.backend.dto;
+
+import com.finledger.backend.event.TransactionSnapshot;
+
+import java.time.OffsetDateTime;
+
+/**
+ * One entry of a transaction's audit trail, read from the ledger journal. {@code before} is null
+ * for CREATED and {@code after} is null for DELETED.
+ */
+public record TransactionEvent(
+        long seq,
+        String type,
+        OffsetDateTime occurredAt,
+        TransactionSnapshot before,
+        TransactionSnapshot after) {
+}
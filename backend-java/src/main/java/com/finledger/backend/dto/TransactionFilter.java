@@ -0,0 +1,34 @@
+package com.finledger.backend.dto;
+
+import com.finledger.backend.entity.Transaction;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Criteria for listing a user's transactions; any combination may be set and null means "any".
+ * Text, category and platform are case-insensitive substring matches (text covers asset name,
+ * category, platform and notes); dates and amounts are inclusive bounds. Blank strings count as unset.
+ */
+public record TransactionFilter(
+        String text,
+        String category,
+        String platform,
+        Transaction.TransactionType type,
+        LocalDate from,
+        LocalDate to,
+        BigDecimal minAmount,
+        BigDecimal maxAmount) {
+
+    public static final TransactionFilter NONE = new TransactionFilter(null, null, null, null, null, null, null, null);
+
+    public TransactionFilter {
+        text = normalize(text);
+        category = normalize(category);
+        platform = normalize(platform);
+    }
+
+    private static String normalize(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+}
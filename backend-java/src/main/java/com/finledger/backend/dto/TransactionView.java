@@ -0,0 +1,35 @@
+package com.finledger.backend.dto;
+
+import com.finledger.backend.entity.Transaction;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Read-only transaction row returned by list, search, lookup and export queries, and by writes. It
+ * is projected straight from SQL or JPQL, so reads never create managed {@link Transaction} entities.
+ */
+public record TransactionView(
+        Long id,
+        String platform,
+        String category,
+        Transaction.TransactionType type,
+        String assetName,
+        BigDecimal amount,
+        String currency,
+        BigDecimal quantity,
+        LocalDate date,
+        String notes,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt,
+        Long version) {
+
+    // JPQL constructor expression selecting every component from alias t, in order
+    public static final String JPQL_SELECT = "new com.finledger.backend.dto.TransactionView(t.id, t.platform, "
+        + "t.category, t.type, t.assetName, t.amount, t.currency, t.quantity, t.date, t.notes, t.createdAt, t.updatedAt, t.version)";
+
+    // The matching columns for native SQL; see TransactionViewRows for the row mapper
+    public static final String SQL_COLUMNS =
+        "id, platform, category, type, asset_name, amount, currency, quantity, date, notes, created_at, updated_at, version";
+}
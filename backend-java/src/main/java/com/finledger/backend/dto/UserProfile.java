@@ -0,0 +1,15 @@
+package com.finledger.backend.dto;
+
+import java.time.LocalDateTime;
+
+// Immutable copy of a users row, safe to share from the user cache; serializes like the User entity
+public record UserProfile(
+        String id,
+        String email,
+        String firstName,
+        String lastName,
+        String profileImageUrl,
+        String baseCurrency,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt) {
+}
@@ -0,0 +1,90 @@
+package com.finledger.backend.entity;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Objects;
+
+// Per-user monthly totals broken down by category, platform and type; backs the analytics endpoints
+@Entity
+@Table(name = "user_analytics_rollups")
+@IdClass(AnalyticsRollup.Key.class)
+public class AnalyticsRollup {
+    
+    @Id
+    @Column(name = "user_id")
+    private String userId;
+    
+    // First day of the month
+    @Id
+    @Column(name = "period_month")
+    private LocalDate periodMonth;
+    
+    @Id
+    private String category;
+    
+    @Id
+    private String platform;
+    
+    @Id
+    @Enumerated(EnumType.STRING)
+    private Transaction.TransactionType type;
+    
+    @Column(name = "transaction_count", nullable = false)
+    private long transactionCount;
+    
+    @Column(name = "total_amount", nullable = false, precision = 19, scale = 2)
+    private BigDecimal totalAmount;
+    
+    // Constructors
+    public AnalyticsRollup() {}
+    
+    // Getters and Setters
+    public String getUserId() { return userId; }
+    public void setUserId(String userId) { this.userId = userId; }
+    
+    public LocalDate getPeriodMonth() { return periodMonth; }
+    public void setPeriodMonth(LocalDate periodMonth) { this.periodMonth = periodMonth; }
+    
+    public String getCategory() { return category; }
+    public void setCategory(String category) { this.category = category; }
+    
+    public String getPlatform() { return platform; }
+    public void setPlatform(String platform) { this.platform = platform; }
+    
+    public Transaction.TransactionType getType() { return type; }
+    public void setType(Transaction.TransactionType type) { this.type = type; }
+    
+    public long getTransactionCount() { return transactionCount; }
+    public void setTransactionCount(long transactionCount) { this.transactionCount = transactionCount; }
+    
+    public BigDecimal getTotalAmount() { return totalAmount; }
+    public void setTotalAmount(BigDecimal totalAmount) { this.totalAmount = totalAmount; }
+    
+    public static class Key implements Serializable {
+        private String userId;
+        private LocalDate periodMonth;
+        private String category;
+        private String platform;
+        private Transaction.TransactionType type;
+        
+        public Key() {}
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return Objects.equals(userId, key.userId) && Objects.equals(periodMonth, key.periodMonth)
+                && Objects.equals(category, key.category) && Objects.equals(platform, key.platform)
+                && type == key.type;
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, periodMonth, category, platform, type);
+        }
+    }
+}
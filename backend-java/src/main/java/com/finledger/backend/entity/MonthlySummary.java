@@ -0,0 +1,71 @@
+package com.finledger.backend.entity;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Objects;
+
+// Per-user, per-calendar-month totals, maintained incrementally by PortfolioSummaryService
+@Entity
+@Table(name = "user_monthly_summaries")
+@IdClass(MonthlySummary.Key.class)
+public class MonthlySummary {
+    
+    @Id
+    @Column(name = "user_id")
+    private String userId;
+    
+    // First day of the month
+    @Id
+    @Column(name = "period_month")
+    private LocalDate periodMonth;
+    
+    @Column(name = "transaction_count", nullable = false)
+    private long transactionCount;
+    
+    @Column(name = "total_amount", nullable = false, precision = 19, scale = 2)
+    private BigDecimal totalAmount;
+    
+    // Constructors
+    public MonthlySummary() {}
+    
+    // Getters and Setters
+    public String getUserId() { return userId; }
+    public void setUserId(String userId) { this.userId = userId; }
+    
+    public LocalDate getPeriodMonth() { return periodMonth; }
+    public void setPeriodMonth(LocalDate periodMonth) { this.periodMonth = periodMonth; }
+    
+    public long getTransactionCount() { return transactionCount; }
+    public void setTransactionCount(long transactionCount) { this.transactionCount = transactionCount; }
+    
+    public BigDecimal getTotalAmount() { return totalAmount; }
+    public void setTotalAmount(BigDecimal totalAmount) { this.totalAmount = totalAmount; }
+    
+    public static class Key implements Serializable {
+        private String userId;
+        private LocalDate periodMonth;
+        
+        public Key() {}
+        
+        public Key(String userId, LocalDate periodMonth) {
+            this.userId = userId;
+            this.periodMonth = periodMonth;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return Objects.equals(userId, key.userId) && Objects.equals(periodMonth, key.periodMonth);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, periodMonth);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.finledger.backend.entity;
+
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Per-user totals over the whole ledger, maintained incrementally by PortfolioSummaryService
+@Entity
+@Table(name = "user_portfolio_summaries")
+public class PortfolioSummary {
+    
+    @Id
+    @Column(name = "user_id")
+    private String userId;
+    
+    @Column(name = "transaction_count", nullable = false)
+    private long transactionCount;
+    
+    @Column(name = "total_investments", nullable = false, precision = 19, scale = 2)
+    private BigDecimal totalInvestments;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    // Constructors
+    public PortfolioSummary() {}
+    
+    // Getters and Setters
+    public String getUserId() { return userId; }
+    public void setUserId(String userId) { this.userId = userId; }
+    
+    public long getTransactionCount() { return transactionCount; }
+    public void setTransactionCount(long transactionCount) { this.transactionCount = transactionCount; }
+    
+    public BigDecimal getTotalInvestments() { return totalInvestments; }
+    public void setTotalInvestments(BigDecimal totalInvestments) { this.totalInvestments = totalInvestments; }
+    
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -9,6 +9,7 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
+// Range-partitioned by date with primary key (id, date); the schema and its indexes are owned by db/migration only
 @Entity
 @Table(name = "transactions")
 @EntityListeners(AuditingEntityListener.class)
@@ -37,6 +38,10 @@ public class Transaction {
     @Column(nullable = false, precision = 15, scale = 2)
     private BigDecimal amount;
     
+    // ISO 4217 code of amount; aggregates are converted to the user's base currency (see FxRates)
+    @Column(nullable = false, length = 3)
+    private String currency;
+    
     @Column(precision = 15, scale = 8)
     private BigDecimal quantity;
     
@@ -53,6 +58,11 @@ public class Transaction {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
     
+    // Bumped by every update; API updates and deletes are conditional on it (see TransactionWriteRepository)
+    @Version
+    @Column(nullable = false)
+    private Long version;
+    
     // Enum for transaction type
     public enum TransactionType {
         BUY, SELL, TRANSFER
@@ -96,6 +106,9 @@ public class Transaction {
     public BigDecimal getAmount() { return amount; }
     public void setAmount(BigDecimal amount) { this.amount = amount; }
     
+    public String getCurrency() { return currency; }
+    public void setCurrency(String currency) { this.currency = currency; }
+    
     public BigDecimal getQuantity() { return quantity; }
     public void setQuantity(BigDecimal quantity) { this.quantity = quantity; }
     
@@ -110,4 +123,6 @@ public class Transaction {
     
     public LocalDateTime getUpdatedAt() { return updatedAt; }
     public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+    
+    public Long getVersion() { return version; }
 }
\ No newline at end of file
@@ -27,6 +27,10 @@ public class User {
     @Column(name = "profile_image_url")
     private String profileImageUrl;
     
+    // Currency analytics are reported in; changed only through UserService.setBaseCurrency
+    @Column(name = "base_currency", length = 3, insertable = false, updatable = false)
+    private String baseCurrency;
+    
     @CreatedDate
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -62,6 +66,8 @@ public class User {
     public String getProfileImageUrl() { return profileImageUrl; }
     public void setProfileImageUrl(String profileImageUrl) { this.profileImageUrl = profileImageUrl; }
     
+    public String getBaseCurrency() { return baseCurrency; }
+    
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
     
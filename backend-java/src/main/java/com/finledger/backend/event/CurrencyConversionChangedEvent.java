@@ -0,0 +1,10 @@
+package com.finledger.backend.event;
+
+/**
+ * Published inside a database transaction when a user's amounts convert to different base-currency
+ * values than before: the user chose another base currency, or exchange rates their ledger depends
+ * on were loaded or corrected. The ledger itself is unchanged, so no {@link LedgerChangedEvent} is
+ * published; listeners recompute or drop whatever they derived in the old conversion.
+ */
+public record CurrencyConversionChangedEvent(String userId) {
+}
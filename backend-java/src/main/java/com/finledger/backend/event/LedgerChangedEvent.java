@@ -0,0 +1,15 @@
+package com.finledger.backend.event;
+
+import java.util.List;
+
+/**
+ * Published by {@code TransactionService} inside the writing database transaction whenever a
+ * user's ledger changes. Synchronous listeners keep derived state (summaries, rollups) in the
+ * same transaction; after-commit listeners can invalidate caches.
+ */
+public record LedgerChangedEvent(String userId, List<TransactionChange> changes) {
+
+    public static LedgerChangedEvent of(String userId, TransactionChange change) {
+        return new LedgerChangedEvent(userId, List.of(change));
+    }
+}
@@ -0,0 +1,20 @@
+package com.finledger.backend.event;
+
+/**
+ * One row-level change to the ledger. {@code before} is null for a create and {@code after}
+ * is null for a delete; an update carries both.
+ */
+public record TransactionChange(TransactionSnapshot before, TransactionSnapshot after) {
+
+    public static TransactionChange created(TransactionSnapshot after) {
+        return new TransactionChange(null, after);
+    }
+
+    public static TransactionChange updated(TransactionSnapshot before, TransactionSnapshot after) {
+        return new TransactionChange(before, after);
+    }
+
+    public static TransactionChange deleted(TransactionSnapshot before) {
+        return new TransactionChange(before, null);
+    }
+}
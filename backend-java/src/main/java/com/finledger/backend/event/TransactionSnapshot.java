@@ -0,0 +1,58 @@
+package com.finledger.backend.event;
+
+import com.finledger.backend.dto.TransactionView;
+import com.finledger.backend.entity.Transaction;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Immutable copy of the ledger fields of a {@link Transaction}, taken before or after a write.
+ * Entities are mutated in place, so listeners need a stable view of both sides of a change.
+ * Snapshots are also what the ledger journal stores, as JSON, for every event.
+ */
+public record TransactionSnapshot(
+        Long id,
+        String userId,
+        String platform,
+        String category,
+        Transaction.TransactionType type,
+        String assetName,
+        BigDecimal amount,
+        String currency,
+        BigDecimal quantity,
+        LocalDate date,
+        String notes) {
+
+    public static TransactionSnapshot of(Transaction transaction) {
+        return new TransactionSnapshot(
+            transaction.getId(),
+            transaction.getUserId(),
+            transaction.getPlatform(),
+            transaction.getCategory(),
+            transaction.getType(),
+            transaction.getAssetName(),
+            transaction.getAmount(),
+            transaction.getCurrency(),
+            transaction.getQuantity(),
+            transaction.getDate(),
+            transaction.getNotes()
+        );
+    }
+
+    public static TransactionSnapshot of(String userId, TransactionView view) {
+        return new TransactionSnapshot(
+            view.id(),
+            userId,
+            view.platform(),
+            view.category(),
+            view.type(),
+            view.assetName(),
+            view.amount(),
+            view.currency(),
+            view.quantity(),
+            view.date(),
+            view.notes()
+        );
+    }
+}
@@ -0,0 +1,93 @@
+package com.finledger.backend.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds an index on a partitioned table without blocking writes. PostgreSQL cannot run
+ * {@code CREATE INDEX CONCURRENTLY} on a partitioned table, so the index is first created on the
+ * parent only (invalid, and empty), then built concurrently on each partition and attached; the
+ * parent index turns valid once every partition has one. Partitions created later get the index
+ * automatically when they are attached.
+ *
+ * Runs outside a transaction and can be re-run after an interruption: partitions that already
+ * have an attached index are skipped, and invalid leftovers of a cancelled concurrent build are
+ * dropped and rebuilt.
+ */
+abstract class OnlinePartitionedIndexMigration extends BaseJavaMigration {
+
+    private final String table;
+    private final String indexName;
+    private final String definition;
+
+    // definition is everything after "ON <table>", e.g. "USING btree (user_id, date)"
+    protected OnlinePartitionedIndexMigration(String table, String indexName, String definition) {
+        this.table = table;
+        this.indexName = indexName;
+        this.definition = definition;
+    }
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        return false;
+    }
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            beforeIndex(statement);
+            statement.execute("CREATE INDEX IF NOT EXISTS " + indexName + " ON ONLY " + table + " " + definition);
+            for (String partition : partitionsWithoutIndex(connection)) {
+                String partitionIndex = indexName + "_" + partition.substring(partition.lastIndexOf('_') + 1);
+                dropIfInvalid(connection, statement, partitionIndex);
+                statement.execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + partitionIndex + " ON "
+                    + partition + " " + definition);
+                statement.execute("ALTER INDEX " + indexName + " ATTACH PARTITION " + partitionIndex);
+            }
+        }
+    }
+
+    // Statements the index depends on, such as CREATE EXTENSION; runs in autocommit mode
+    protected void beforeIndex(Statement statement) throws SQLException {
+    }
+
+    private List<String> partitionsWithoutIndex(Connection connection) throws SQLException {
+        List<String> partitions = new ArrayList<>();
+        try (PreparedStatement query = connection.prepareStatement(
+                "SELECT p.inhrelid::regclass::text FROM pg_inherits p " +
+                "WHERE p.inhparent = to_regclass(?) AND NOT EXISTS (" +
+                "  SELECT 1 FROM pg_inherits i JOIN pg_index x ON x.indexrelid = i.inhrelid " +
+                "  WHERE i.inhparent = to_regclass(?) AND x.indrelid = p.inhrelid) " +
+                "ORDER BY 1")) {
+            query.setString(1, table);
+            query.setString(2, indexName);
+            try (ResultSet rows = query.executeQuery()) {
+                while (rows.next()) {
+                    partitions.add(rows.getString(1));
+                }
+            }
+        }
+        return partitions;
+    }
+
+    private static void dropIfInvalid(Connection connection, Statement statement, String index) throws SQLException {
+        try (PreparedStatement query = connection.prepareStatement(
+                "SELECT NOT indisvalid FROM pg_index WHERE indexrelid = to_regclass(?)")) {
+            query.setString(1, index);
+            try (ResultSet rows = query.executeQuery()) {
+                if (rows.next() && rows.getBoolean(1)) {
+                    statement.execute("DROP INDEX CONCURRENTLY " + index);
+                }
+            }
+        }
+    }
+}
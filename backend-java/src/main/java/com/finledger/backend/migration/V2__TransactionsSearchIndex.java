@@ -0,0 +1,24 @@
+package com.finledger.backend.migration;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Trigram search over transactions (pg_trgm, with btree_gin so user_id can share the GIN index and
+ * a search only visits the searching user's entries), built online. The indexed expression must
+ * stay identical to TransactionRepository.SEARCH_DOCUMENT or the index is not used. Databases that
+ * already have the index from the earlier startup script skip the build.
+ */
+public class V2__TransactionsSearchIndex extends OnlinePartitionedIndexMigration {
+
+    public V2__TransactionsSearchIndex() {
+        super("transactions", "idx_transactions_search", "USING gin (user_id, "
+            + "(lower(asset_name || ' ' || category || ' ' || platform || ' ' || coalesce(notes, ''))) gin_trgm_ops)");
+    }
+
+    @Override
+    protected void beforeIndex(Statement statement) throws SQLException {
+        statement.execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+        statement.execute("CREATE EXTENSION IF NOT EXISTS btree_gin");
+    }
+}
@@ -0,0 +1,13 @@
+package com.finledger.backend.migration;
+
+/**
+ * Rows of one currency from a date on, across all users, built online. FxRateLoader looks up the
+ * users whose conversions a rate change touches with range scans on it, instead of scanning every
+ * partition of transactions.
+ */
+public class V8__TransactionsCurrencyIndex extends OnlinePartitionedIndexMigration {
+
+    public V8__TransactionsCurrencyIndex() {
+        super("transactions", "idx_transactions_currency_date_user", "USING btree (currency, date, user_id)");
+    }
+}
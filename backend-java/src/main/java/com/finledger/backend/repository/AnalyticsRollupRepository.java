@@ -0,0 +1,47 @@
+package com.finledger.backend.repository;
+
+import com.finledger.backend.dto.CategoryAnalytics;
+import com.finledger.backend.entity.AnalyticsRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface AnalyticsRollupRepository extends JpaRepository<AnalyticsRollup, AnalyticsRollup.Key> {
+    
+    List<AnalyticsRollup> findByUserId(String userId);
+    
+    @Query("SELECT new com.finledger.backend.dto.CategoryAnalytics(r.category, SUM(r.totalAmount), " +
+           "SUM(r.transactionCount)) FROM AnalyticsRollup r " +
+           "WHERE r.userId = :userId GROUP BY r.category HAVING SUM(r.transactionCount) > 0")
+    List<CategoryAnalytics> findCategoryTotals(@Param("userId") String userId);
+    
+    @Query("SELECT r.periodMonth, " +
+           "SUM(CASE WHEN r.type = 'SELL' OR r.type = 'TRANSFER' THEN r.totalAmount ELSE 0 END), " +
+           "SUM(CASE WHEN r.type = 'BUY' THEN r.totalAmount ELSE 0 END) " +
+           "FROM AnalyticsRollup r WHERE r.userId = :userId AND r.periodMonth >= :fromMonth " +
+           "GROUP BY r.periodMonth HAVING SUM(r.transactionCount) > 0 ORDER BY r.periodMonth DESC")
+    List<Object[]> findMonthlyTotals(@Param("userId") String userId, @Param("fromMonth") LocalDate fromMonth);
+    
+    @Modifying
+    @Query(value = "INSERT INTO user_analytics_rollups " +
+                   "(user_id, period_month, category, platform, type, transaction_count, total_amount) " +
+                   "VALUES (:userId, :month, :category, :platform, :type, :count, :amount) " +
+                   "ON CONFLICT (user_id, period_month, category, platform, type) DO UPDATE SET " +
+                   "transaction_count = user_analytics_rollups.transaction_count + EXCLUDED.transaction_count, " +
+                   "total_amount = user_analytics_rollups.total_amount + EXCLUDED.total_amount",
+           nativeQuery = true)
+    void applyDelta(@Param("userId") String userId, @Param("month") LocalDate month,
+                    @Param("category") String category, @Param("platform") String platform,
+                    @Param("type") String type, @Param("count") long count, @Param("amount") BigDecimal amount);
+    
+    @Modifying
+    @Query("DELETE FROM AnalyticsRollup r WHERE r.userId = :userId")
+    void deleteByUserId(@Param("userId") String userId);
+}
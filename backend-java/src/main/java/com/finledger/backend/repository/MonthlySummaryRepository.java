@@ -0,0 +1,36 @@
+package com.finledger.backend.repository;
+
+import com.finledger.backend.entity.MonthlySummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface MonthlySummaryRepository extends JpaRepository<MonthlySummary, MonthlySummary.Key> {
+    
+    List<MonthlySummary> findByUserId(String userId);
+    
+    @Query("SELECT COALESCE(SUM(m.totalAmount), 0) FROM MonthlySummary m " +
+           "WHERE m.userId = :userId AND m.periodMonth >= :fromMonth")
+    BigDecimal sumAmountFrom(@Param("userId") String userId, @Param("fromMonth") LocalDate fromMonth);
+    
+    @Modifying
+    @Query(value = "INSERT INTO user_monthly_summaries (user_id, period_month, transaction_count, total_amount) " +
+                   "VALUES (:userId, :month, :count, :amount) " +
+                   "ON CONFLICT (user_id, period_month) DO UPDATE SET " +
+                   "transaction_count = user_monthly_summaries.transaction_count + EXCLUDED.transaction_count, " +
+                   "total_amount = user_monthly_summaries.total_amount + EXCLUDED.total_amount",
+           nativeQuery = true)
+    void applyDelta(@Param("userId") String userId, @Param("month") LocalDate month,
+                    @Param("count") long count, @Param("amount") BigDecimal amount);
+    
+    @Modifying
+    @Query("DELETE FROM MonthlySummary m WHERE m.userId = :userId")
+    void deleteByUserId(@Param("userId") String userId);
+}
@@ -0,0 +1,36 @@
+package com.finledger.backend.repository;
+
+import com.finledger.backend.entity.PortfolioSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+
+@Repository
+public interface PortfolioSummaryRepository extends JpaRepository<PortfolioSummary, String> {
+    
+    @Modifying
+    @Query(value = "INSERT INTO user_portfolio_summaries (user_id, transaction_count, total_investments, updated_at) " +
+                   "VALUES (:userId, :count, :investments, now()) " +
+                   "ON CONFLICT (user_id) DO UPDATE SET " +
+                   "transaction_count = user_portfolio_summaries.transaction_count + EXCLUDED.transaction_count, " +
+                   "total_investments = user_portfolio_summaries.total_investments + EXCLUDED.total_investments, " +
+                   "updated_at = now()",
+           nativeQuery = true)
+    void applyDelta(@Param("userId") String userId, @Param("count") long count,
+                    @Param("investments") BigDecimal investments);
+    
+    @Modifying
+    @Query(value = "INSERT INTO user_portfolio_summaries (user_id, transaction_count, total_investments, updated_at) " +
+                   "VALUES (:userId, :count, :investments, now()) " +
+                   "ON CONFLICT (user_id) DO UPDATE SET " +
+                   "transaction_count = EXCLUDED.transaction_count, " +
+                   "total_investments = EXCLUDED.total_investments, " +
+                   "updated_at = now()",
+           nativeQuery = true)
+    void replace(@Param("userId") String userId, @Param("count") long count,
+                 @Param("investments") BigDecimal investments);
+}
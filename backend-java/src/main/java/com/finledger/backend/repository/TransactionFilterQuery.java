@@ -0,0 +1,163 @@
+package com.finledger.backend.repository;
+
+import com.finledger.backend.dto.InvalidRequestException;
+import com.finledger.backend.dto.TransactionCursor;
+import com.finledger.backend.dto.TransactionFilter;
+import com.finledger.backend.dto.TransactionView;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Builds the single SQL statement for a {@link TransactionFilter}. Predicates are always emitted in
+ * the same order with every value bound as a parameter, including LIMIT and OFFSET, so each
+ * combination of set filters maps to exactly one statement text and the driver's prepared-statement
+ * cache and the server's plans are reused across users and pages.
+ *
+ * Every statement leads with {@code user_id = ?}. Date bounds and keyset positions are served by
+ * idx_transactions_user_date_id, and compare the bare date column with a parameter so the planner
+ * can prune the yearly partitions outside the range; text, category and platform go through the
+ * trigram document ({@link TransactionRepository#SEARCH_DOCUMENT}) and are rechecked against
+ * their own column.
+ */
+public final class TransactionFilterQuery {
+
+    // Sortable request properties -> columns; id is appended as a tie-breaker
+    private static final Map<String, String> SORT_COLUMNS = Map.of(
+        "date", "date",
+        "amount", "amount",
+        "quantity", "quantity",
+        "assetName", "asset_name",
+        "category", "category",
+        "platform", "platform",
+        "type", "type",
+        "createdAt", "created_at");
+
+    private final StringBuilder where = new StringBuilder("user_id = ?");
+    private final List<Object> parameters = new ArrayList<>();
+    private String rankTerm;
+
+    private TransactionFilterQuery(String userId) {
+        parameters.add(userId);
+    }
+
+    public static TransactionFilterQuery of(String userId, TransactionFilter filter) {
+        TransactionFilterQuery query = new TransactionFilterQuery(userId);
+        if (filter.from() != null) {
+            query.and("date >= ?", filter.from());
+        }
+        if (filter.to() != null) {
+            query.and("date <= ?", filter.to());
+        }
+        if (filter.type() != null) {
+            query.and("type = ?", filter.type().name());
+        }
+        if (filter.minAmount() != null) {
+            query.and("amount >= ?", filter.minAmount());
+        }
+        if (filter.maxAmount() != null) {
+            query.and("amount <= ?", filter.maxAmount());
+        }
+        if (filter.text() != null) {
+            query.and(TransactionRepository.SEARCH_DOCUMENT + " LIKE ?", containsPattern(filter.text()));
+        }
+        if (filter.category() != null) {
+            String pattern = containsPattern(filter.category());
+            query.and(TransactionRepository.SEARCH_DOCUMENT + " LIKE ?", pattern);
+            query.and("lower(category) LIKE ?", pattern);
+        }
+        if (filter.platform() != null) {
+            String pattern = containsPattern(filter.platform());
+            query.and(TransactionRepository.SEARCH_DOCUMENT + " LIKE ?", pattern);
+            query.and("lower(platform) LIKE ?", pattern);
+        }
+        return query;
+    }
+
+    // Restricts to rows past the cursor in (date, id) order
+    public TransactionFilterQuery after(TransactionCursor cursor, boolean ascending) {
+        if (ascending) {
+            and("date >= ?", cursor.date());
+            and("(date > ? OR id > ?)", cursor.date(), cursor.id());
+        } else {
+            and("date <= ?", cursor.date());
+            and("(date < ? OR id < ?)", cursor.date(), cursor.id());
+        }
+        return this;
+    }
+
+    /*
+     * Ranked search: restricts to substring matches plus fuzzy word matches (pg_trgm's <% operator)
+     * of the term, and orders by word similarity instead of the given order.
+     */
+    public TransactionFilterQuery rankedBy(String term) {
+        rankTerm = term.trim().toLowerCase(Locale.ROOT);
+        and("(" + TransactionRepository.SEARCH_DOCUMENT + " LIKE ? OR ? <% " + TransactionRepository.SEARCH_DOCUMENT + ")",
+            containsPattern(rankTerm), rankTerm);
+        return this;
+    }
+
+    // Selects the TransactionView columns; ranked queries ignore orderBy
+    public String selectSql(String orderBy) {
+        if (rankTerm != null) {
+            orderBy = "word_similarity(?, " + TransactionRepository.SEARCH_DOCUMENT + ") DESC, date DESC, id DESC";
+        }
+        return "SELECT " + TransactionView.SQL_COLUMNS + " FROM transactions WHERE " + where
+            + " ORDER BY " + orderBy + " LIMIT ? OFFSET ?";
+    }
+
+    public List<Object> selectParameters(int limit, long offset) {
+        List<Object> values = new ArrayList<>(parameters);
+        if (rankTerm != null) {
+            values.add(rankTerm);
+        }
+        values.add(limit);
+        values.add(offset);
+        return values;
+    }
+
+    public String countSql() {
+        return "SELECT COUNT(*) FROM transactions WHERE " + where;
+    }
+
+    public List<Object> countParameters() {
+        return parameters;
+    }
+
+    public static String keysetOrder(boolean ascending) {
+        return ascending ? "date ASC, id ASC" : "date DESC, id DESC";
+    }
+
+    // Uses the first sort property only; an unsorted request lists newest first
+    public static String orderBy(Sort sort) {
+        Sort.Order order = sort.stream().findFirst().orElse(Sort.Order.desc("date"));
+        String column = SORT_COLUMNS.get(order.getProperty());
+        if (column == null) {
+            throw new InvalidRequestException("Unsupported sort property: " + order.getProperty());
+        }
+        String direction = order.isAscending() ? " ASC" : " DESC";
+        return column + direction + ", id" + direction;
+    }
+
+    // Lowercase LIKE pattern matching the text anywhere, with %, _ and \ escaped
+    public static String containsPattern(String text) {
+        String term = text.trim().toLowerCase(Locale.ROOT);
+        StringBuilder pattern = new StringBuilder(term.length() + 2).append('%');
+        for (int i = 0; i < term.length(); i++) {
+            char c = term.charAt(i);
+            if (c == '%' || c == '_' || c == '\\') {
+                pattern.append('\\');
+            }
+            pattern.append(c);
+        }
+        return pattern.append('%').toString();
+    }
+
+    private void and(String predicate, Object... values) {
+        where.append(" AND ").append(predicate);
+        parameters.addAll(List.of(values));
+    }
+}
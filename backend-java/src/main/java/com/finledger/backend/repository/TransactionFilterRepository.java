@@ -0,0 +1,25 @@
+package com.finledger.backend.repository;
+
+import com.finledger.backend.dto.TransactionCursor;
+import com.finledger.backend.dto.TransactionFilter;
+import com.finledger.backend.dto.TransactionView;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+/**
+ * Filtered listing and search, mixed into TransactionRepository. Statements are built by
+ * TransactionFilterQuery and rows are read straight into {@link TransactionView}s, without
+ * going through the persistence context.
+ */
+public interface TransactionFilterRepository {
+
+    Page<TransactionView> findByFilter(String userId, TransactionFilter filter, Pageable pageable);
+
+    // Keyset page in (date, id) order; a null cursor starts from the newest (or oldest) row
+    Slice<TransactionView> findByFilterAfter(String userId, TransactionFilter filter, TransactionCursor cursor,
+                                             boolean ascending, int limit);
+
+    // Best matches for the search term first, narrowed by the filter
+    Slice<TransactionView> searchRanked(String userId, String term, TransactionFilter filter, Pageable pageable);
+}
@@ -0,0 +1,59 @@
+package com.finledger.backend.repository;
+
+import com.finledger.backend.dto.TransactionCursor;
+import com.finledger.backend.dto.TransactionFilter;
+import com.finledger.backend.dto.TransactionView;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+class TransactionFilterRepositoryImpl implements TransactionFilterRepository {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public Page<TransactionView> findByFilter(String userId, TransactionFilter filter, Pageable pageable) {
+        TransactionFilterQuery query = TransactionFilterQuery.of(userId, filter);
+        List<TransactionView> content = select(query.selectSql(TransactionFilterQuery.orderBy(pageable.getSort())),
+            query.selectParameters(pageable.getPageSize(), pageable.getOffset()));
+        // The count only runs when the page does not already reveal the total
+        return PageableExecutionUtils.getPage(content, pageable,
+            () -> jdbcTemplate.queryForObject(query.countSql(), Long.class, query.countParameters().toArray()));
+    }
+
+    @Override
+    public Slice<TransactionView> findByFilterAfter(String userId, TransactionFilter filter, TransactionCursor cursor,
+                                                    boolean ascending, int limit) {
+        TransactionFilterQuery query = TransactionFilterQuery.of(userId, filter);
+        if (cursor != null) {
+            query.after(cursor, ascending);
+        }
+        return slice(query.selectSql(TransactionFilterQuery.keysetOrder(ascending)), query, PageRequest.ofSize(limit));
+    }
+
+    @Override
+    public Slice<TransactionView> searchRanked(String userId, String term, TransactionFilter filter, Pageable pageable) {
+        TransactionFilterQuery query = TransactionFilterQuery.of(userId, filter).rankedBy(term);
+        return slice(query.selectSql(null), query, pageable);
+    }
+
+    // Reads one extra row to tell whether another page exists
+    private Slice<TransactionView> slice(String sql, TransactionFilterQuery query, Pageable pageable) {
+        int limit = pageable.getPageSize();
+        List<TransactionView> rows = select(sql, query.selectParameters(limit + 1, pageable.getOffset()));
+        boolean hasNext = rows.size() > limit;
+        return new SliceImpl<>(hasNext ? rows.subList(0, limit) : rows, pageable, hasNext);
+    }
+
+    private List<TransactionView> select(String sql, List<Object> parameters) {
+        return jdbcTemplate.query(sql, TransactionViewRows.MAPPER, parameters.toArray());
+    }
+}
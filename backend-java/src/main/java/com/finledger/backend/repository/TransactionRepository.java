@@ -1,51 +1,57 @@
 package com.finledger.backend.repository;
 
+import com.finledger.backend.dto.TransactionView;
 import com.finledger.backend.entity.Transaction;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.math.BigDecimal;
-import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface TransactionRepository extends JpaRepository<Transaction, Long> {
-    
-    Page<Transaction> findByUserIdOrderByDateDesc(String userId, Pageable pageable);
-    
-    Page<Transaction> findByUserIdAndCategoryContainingIgnoreCaseOrderByDateDesc(
-        String userId, String category, Pageable pageable);
-    
-    Page<Transaction> findByUserIdAndPlatformContainingIgnoreCaseOrderByDateDesc(
-        String userId, String platform, Pageable pageable);
-    
-    Page<Transaction> findByUserIdAndAssetNameContainingIgnoreCaseOrderByDateDesc(
-        String userId, String assetName, Pageable pageable);
-    
-    Optional<Transaction> findByIdAndUserId(Long id, String userId);
-    
-    @Query("SELECT COUNT(t) FROM Transaction t WHERE t.userId = :userId")
-    long countByUserId(@Param("userId") String userId);
-    
-    @Query("SELECT SUM(t.amount) FROM Transaction t WHERE t.userId = :userId AND t.type = 'BUY'")
-    BigDecimal sumInvestmentsByUserId(@Param("userId") String userId);
-    
-    @Query("SELECT SUM(t.amount) FROM Transaction t WHERE t.userId = :userId AND t.date >= :startDate")
-    BigDecimal sumMonthlySpendingByUserId(@Param("userId") String userId, @Param("startDate") LocalDate startDate);
-    
-    @Query("SELECT t.category, SUM(t.amount), COUNT(t) FROM Transaction t WHERE t.userId = :userId GROUP BY t.category")
-    List<Object[]> findCategoryAnalyticsByUserId(@Param("userId") String userId);
-    
-    @Query("SELECT EXTRACT(MONTH FROM t.date) as month, EXTRACT(YEAR FROM t.date) as year, " +
-           "SUM(CASE WHEN t.type = 'SELL' OR t.type = 'TRANSFER' THEN t.amount ELSE 0 END) as spending, " +
-           "SUM(CASE WHEN t.type = 'BUY' THEN t.amount ELSE 0 END) as investments " +
-           "FROM Transaction t WHERE t.userId = :userId AND t.date >= :startDate " +
-           "GROUP BY EXTRACT(YEAR FROM t.date), EXTRACT(MONTH FROM t.date) " +
-           "ORDER BY year DESC, month DESC")
-    List<Object[]> findMonthlyTrendsByUserId(@Param("userId") String userId, @Param("startDate") LocalDate startDate);
+public interface TransactionRepository extends JpaRepository<Transaction, Long>, TransactionFilterRepository,
+        TransactionWriteRepository {
+    
+    /*
+     * Text searched by TransactionFilterQuery. It must match the expression of the
+     * idx_transactions_search trigram index (V2__TransactionsSearchIndex) exactly, or the index is not used.
+     * Patterns are lowercase LIKE patterns with %, _ and \ escaped.
+     */
+    String SEARCH_DOCUMENT = "lower(asset_name || ' ' || category || ' ' || platform || ' ' || coalesce(notes, ''))";
+    
+    // Read-only lookup: a projection, so no managed entity is created
+    @Query("SELECT " + TransactionView.JPQL_SELECT + " FROM Transaction t WHERE t.id = :id AND t.userId = :userId")
+    Optional<TransactionView> findViewByIdAndUserId(@Param("id") Long id, @Param("userId") String userId);
+    
+    // Forward-only cursor over a user's whole ledger as projections; must be consumed inside a transaction
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT " + TransactionView.JPQL_SELECT + " FROM Transaction t WHERE t.userId = :userId " +
+           "ORDER BY t.date ASC, t.id ASC")
+    Stream<TransactionView> streamByUserId(@Param("userId") String userId);
+    
+    /*
+     * One pass over a user's ledger producing every derived aggregate; used to rebuild summaries and rollups.
+     * Each row is converted to the base currency at the rate of its date inside the same scan (fx_convert,
+     * V5__currencies_and_fx_rates), so nothing is converted row by row in Java.
+     */
+    @Query(value = "SELECT CAST(date_trunc('month', date) AS date) AS period_month, category, platform, type, " +
+                   "COUNT(*), SUM(fx_convert(amount, currency, :baseCurrency, date)) " +
+                   "FROM transactions WHERE user_id = :userId GROUP BY 1, 2, 3, 4",
+           nativeQuery = true)
+    List<Object[]> aggregateRollupsByUserId(@Param("userId") String userId, @Param("baseCurrency") String baseCurrency);
+    
+    @Query("SELECT DISTINCT t.userId FROM Transaction t")
+    List<String> findDistinctUserIds();
+    
+    @Query("SELECT DISTINCT t.currency FROM Transaction t WHERE t.userId = :userId")
+    List<String> findDistinctCurrenciesByUserId(@Param("userId") String userId);
 }
\ No newline at end of file
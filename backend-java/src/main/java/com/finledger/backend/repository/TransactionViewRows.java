@@ -0,0 +1,51 @@
+package com.finledger.backend.repository;
+
+import com.finledger.backend.dto.TransactionView;
+import com.finledger.backend.entity.Transaction;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+// Reads TransactionView.SQL_COLUMNS from JDBC rows, for the native-SQL repository fragments
+final class TransactionViewRows {
+
+    static final int COLUMN_COUNT = TransactionView.SQL_COLUMNS.split(", ").length;
+
+    static final RowMapper<TransactionView> MAPPER = (rs, rowNum) -> read(rs, 1);
+
+    private TransactionViewRows() {}
+
+    // SQL_COLUMNS qualified with a table alias, for statements that join or return two rows side by side
+    static String columns(String alias) {
+        return Arrays.stream(TransactionView.SQL_COLUMNS.split(", "))
+            .map(column -> alias + "." + column)
+            .collect(Collectors.joining(", "));
+    }
+
+    // Reads the view starting at column first; null if that side of an outer join was absent
+    static TransactionView read(ResultSet rs, int first) throws SQLException {
+        long id = rs.getLong(first);
+        if (rs.wasNull()) {
+            return null;
+        }
+        return new TransactionView(
+            id,
+            rs.getString(first + 1),
+            rs.getString(first + 2),
+            Transaction.TransactionType.valueOf(rs.getString(first + 3)),
+            rs.getString(first + 4),
+            rs.getBigDecimal(first + 5),
+            rs.getString(first + 6),
+            rs.getBigDecimal(first + 7),
+            rs.getObject(first + 8, LocalDate.class),
+            rs.getString(first + 9),
+            rs.getObject(first + 10, LocalDateTime.class),
+            rs.getObject(first + 11, LocalDateTime.class),
+            rs.getLong(first + 12));
+    }
+}
@@ -0,0 +1,45 @@
+package com.finledger.backend.repository;
+
+import com.finledger.backend.dto.TransactionDto;
+import com.finledger.backend.dto.TransactionView;
+
+import java.time.OffsetDateTime;
+import java.util.Optional;
+
+/**
+ * Single-statement ledger writes, mixed into TransactionRepository. Each write is one round trip:
+ * no entity is loaded first, and updates and deletes read the prior row in the same statement,
+ * which is what the ledger change events need.
+ *
+ * Updates and deletes apply only if the row still has the version read by that same statement,
+ * so the reported prior row is exactly the row replaced. With an expected version they also
+ * require that version, the optimistic-concurrency check for clients.
+ */
+public interface TransactionWriteRepository {
+
+    // Outcome of a conditional update or delete: the row as it was, and whether the write applied
+    record ConditionalWrite(TransactionView before, TransactionView after, boolean applied) {}
+
+    // A stored Idempotency-Key; transaction is null if the transaction it created was deleted since
+    record IdempotencyRecord(String requestHash, long transactionId, TransactionView transaction) {}
+
+    // The request's currency must be set; TransactionService fills in the user's base currency
+    TransactionView insert(String userId, TransactionDto.CreateRequest request);
+
+    /*
+     * Claims the key and inserts the transaction in one statement. Empty if the key was already used;
+     * a concurrent request with the same key waits for this one's transaction to finish first.
+     */
+    Optional<TransactionView> insertWithIdempotencyKey(String userId, String idempotencyKey, String requestHash,
+                                                       TransactionDto.CreateRequest request);
+
+    Optional<IdempotencyRecord> findIdempotencyKey(String userId, String idempotencyKey);
+
+    int deleteIdempotencyKeysBefore(OffsetDateTime cutoff);
+
+    // Empty if the user has no such transaction; expectedVersion null skips the client's version check
+    Optional<ConditionalWrite> updateIfVersion(Long id, String userId, TransactionDto.CreateRequest request,
+                                               Long expectedVersion);
+
+    Optional<ConditionalWrite> deleteIfVersion(Long id, String userId, Long expectedVersion);
+}
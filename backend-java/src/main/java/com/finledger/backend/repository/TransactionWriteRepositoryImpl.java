@@ -0,0 +1,118 @@
+package com.finledger.backend.repository;
+
+import com.finledger.backend.dto.TransactionDto;
+import com.finledger.backend.dto.TransactionView;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public class TransactionWriteRepositoryImpl implements TransactionWriteRepository {
+
+    private static final String INSERT_COLUMNS =
+        "user_id, platform, category, type, asset_name, amount, currency, quantity, date, notes, created_at, updated_at, version";
+
+    private static final String INSERT_SQL = "INSERT INTO transactions (" + INSERT_COLUMNS + ") "
+        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0) RETURNING " + TransactionView.SQL_COLUMNS;
+
+    // The id is drawn up front so the key row can record it; a conflicting key inserts nothing.
+    // Parameters in a SELECT list are not typed by the target columns, hence the casts
+    private static final String INSERT_WITH_KEY_SQL = "WITH claimed AS ("
+        + "INSERT INTO idempotency_keys (user_id, idempotency_key, request_hash, transaction_id) "
+        + "VALUES (?, ?, ?, nextval(pg_get_serial_sequence('transactions', 'id'))) "
+        + "ON CONFLICT DO NOTHING RETURNING transaction_id) "
+        + "INSERT INTO transactions (id, " + INSERT_COLUMNS + ") "
+        + "SELECT transaction_id, CAST(? AS varchar), CAST(? AS varchar), CAST(? AS varchar), CAST(? AS varchar), "
+        + "CAST(? AS varchar), CAST(? AS numeric), CAST(? AS char(3)), CAST(? AS numeric), CAST(? AS date), "
+        + "CAST(? AS varchar), CAST(? AS timestamp), CAST(? AS timestamp), 0 FROM claimed "
+        + "RETURNING " + TransactionView.SQL_COLUMNS;
+
+    private static final String FIND_KEY_SQL = "SELECT k.request_hash, k.transaction_id, " + TransactionViewRows.columns("t")
+        + " FROM idempotency_keys k LEFT JOIN transactions t ON t.id = k.transaction_id AND t.user_id = k.user_id"
+        + " WHERE k.user_id = ? AND k.idempotency_key = ?";
+
+    // The prior row and the write in one statement; b is the row as this statement's snapshot saw it.
+    // A request without a currency keeps the row's
+    public static final String UPDATE_SQL = "WITH b AS ("
+        + "SELECT " + TransactionView.SQL_COLUMNS + " FROM transactions WHERE id = ? AND user_id = ?), "
+        + "u AS (UPDATE transactions t SET platform = ?, category = ?, type = ?, asset_name = ?, amount = ?, "
+        + "currency = COALESCE(CAST(? AS char(3)), b.currency), quantity = ?, date = ?, notes = ?, updated_at = ?, "
+        + "version = t.version + 1 FROM b "
+        + "WHERE t.id = b.id AND t.date = b.date AND t.version = b.version "
+        + "AND (CAST(? AS bigint) IS NULL OR b.version = ?) "
+        + "RETURNING " + TransactionViewRows.columns("t") + ") "
+        + "SELECT " + TransactionViewRows.columns("b") + ", " + TransactionViewRows.columns("u")
+        + " FROM b LEFT JOIN u ON true";
+
+    public static final String DELETE_SQL = "WITH b AS ("
+        + "SELECT " + TransactionView.SQL_COLUMNS + " FROM transactions WHERE id = ? AND user_id = ?), "
+        + "d AS (DELETE FROM transactions t USING b "
+        + "WHERE t.id = b.id AND t.date = b.date AND t.version = b.version "
+        + "AND (CAST(? AS bigint) IS NULL OR b.version = ?) RETURNING t.id) "
+        + "SELECT " + TransactionViewRows.columns("b") + ", d.id IS NOT NULL FROM b LEFT JOIN d ON true";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public TransactionView insert(String userId, TransactionDto.CreateRequest request) {
+        return jdbcTemplate.queryForObject(INSERT_SQL, TransactionViewRows.MAPPER, rowValues(userId, request));
+    }
+
+    @Override
+    public Optional<TransactionView> insertWithIdempotencyKey(String userId, String idempotencyKey, String requestHash,
+                                                              TransactionDto.CreateRequest request) {
+        Object[] row = rowValues(userId, request);
+        Object[] parameters = new Object[3 + row.length];
+        parameters[0] = userId;
+        parameters[1] = idempotencyKey;
+        parameters[2] = requestHash;
+        System.arraycopy(row, 0, parameters, 3, row.length);
+        List<TransactionView> inserted = jdbcTemplate.query(INSERT_WITH_KEY_SQL, TransactionViewRows.MAPPER, parameters);
+        return inserted.stream().findFirst();
+    }
+
+    @Override
+    public Optional<IdempotencyRecord> findIdempotencyKey(String userId, String idempotencyKey) {
+        return jdbcTemplate.query(FIND_KEY_SQL,
+            (rs, rowNum) -> new IdempotencyRecord(rs.getString(1), rs.getLong(2), TransactionViewRows.read(rs, 3)),
+            userId, idempotencyKey).stream().findFirst();
+    }
+
+    @Override
+    public int deleteIdempotencyKeysBefore(OffsetDateTime cutoff) {
+        return jdbcTemplate.update("DELETE FROM idempotency_keys WHERE created_at < ?", cutoff);
+    }
+
+    @Override
+    public Optional<ConditionalWrite> updateIfVersion(Long id, String userId, TransactionDto.CreateRequest request,
+                                                      Long expectedVersion) {
+        return jdbcTemplate.query(UPDATE_SQL,
+            (rs, rowNum) -> {
+                TransactionView after = TransactionViewRows.read(rs, TransactionViewRows.COLUMN_COUNT + 1);
+                return new ConditionalWrite(TransactionViewRows.read(rs, 1), after, after != null);
+            },
+            id, userId,
+            request.getPlatform(), request.getCategory(), request.getType().name(), request.getAssetName(),
+            request.getAmount(), request.getCurrency(), request.getQuantity(), request.getDate(), request.getNotes(),
+            LocalDateTime.now(), expectedVersion, expectedVersion).stream().findFirst();
+    }
+
+    @Override
+    public Optional<ConditionalWrite> deleteIfVersion(Long id, String userId, Long expectedVersion) {
+        return jdbcTemplate.query(DELETE_SQL,
+            (rs, rowNum) -> new ConditionalWrite(TransactionViewRows.read(rs, 1), null,
+                rs.getBoolean(TransactionViewRows.COLUMN_COUNT + 1)),
+            id, userId, expectedVersion, expectedVersion).stream().findFirst();
+    }
+
+    private static Object[] rowValues(String userId, TransactionDto.CreateRequest request) {
+        LocalDateTime now = LocalDateTime.now();
+        return new Object[] {userId, request.getPlatform(), request.getCategory(), request.getType().name(),
+            request.getAssetName(), request.getAmount(), request.getCurrency(), request.getQuantity(), request.getDate(),
+            request.getNotes(), now, now};
+    }
+}
@@ -1,7 +1,11 @@
 package com.finledger.backend.repository;
 
+import com.finledger.backend.dto.UserProfile;
 import com.finledger.backend.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -9,4 +13,31 @@ import java.util.Optional;
 @Repository
 public interface UserRepository extends JpaRepository<User, String> {
     Optional<User> findByEmail(String email);
-}
\ No newline at end of file
+    
+    @Query("SELECT new com.finledger.backend.dto.UserProfile(u.id, u.email, u.firstName, u.lastName, " +
+           "u.profileImageUrl, u.baseCurrency, u.createdAt, u.updatedAt) FROM User u WHERE u.id = :id")
+    Optional<UserProfile> findProfileById(@Param("id") String id);
+    
+    // Inserts or updates the profile; an existing row whose claims are unchanged is left alone (returns 0)
+    @Modifying
+    @Query(value = "INSERT INTO users (id, email, first_name, last_name, profile_image_url, created_at, updated_at) " +
+                   "VALUES (:id, :email, :firstName, :lastName, :profileImageUrl, now(), now()) " +
+                   "ON CONFLICT (id) DO UPDATE SET " +
+                   "email = EXCLUDED.email, first_name = EXCLUDED.first_name, last_name = EXCLUDED.last_name, " +
+                   "profile_image_url = EXCLUDED.profile_image_url, updated_at = now() " +
+                   "WHERE (users.email, users.first_name, users.last_name, users.profile_image_url) IS DISTINCT FROM " +
+                   "(EXCLUDED.email, EXCLUDED.first_name, EXCLUDED.last_name, EXCLUDED.profile_image_url)",
+           nativeQuery = true)
+    int upsertIfChanged(@Param("id") String id, @Param("email") String email, @Param("firstName") String firstName,
+                        @Param("lastName") String lastName, @Param("profileImageUrl") String profileImageUrl);
+    
+    // Read from the table rather than the profile cache by code that must see a change committed a moment ago
+    @Query(value = "SELECT CAST(base_currency AS varchar) FROM users WHERE id = :id", nativeQuery = true)
+    Optional<String> findBaseCurrencyById(@Param("id") String id);
+    
+    @Modifying
+    @Query(value = "UPDATE users SET base_currency = :baseCurrency, updated_at = now() " +
+                   "WHERE id = :id AND base_currency <> :baseCurrency",
+           nativeQuery = true)
+    int updateBaseCurrency(@Param("id") String id, @Param("baseCurrency") String baseCurrency);
+}
@@ -0,0 +1,159 @@
+package com.finledger.backend.service;
+
+import com.finledger.backend.event.CurrencyConversionChangedEvent;
+import com.finledger.backend.event.LedgerChangedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, per-user read-through cache for the analytics views. Each user has one entry holding
+ * every view computed since the entry was created; a committed ledger write or change of
+ * currency conversion for that user drops the whole entry. Hit, miss and eviction counts are published as {@code cache.*} metrics
+ * tagged {@code cache=analytics}; hits and misses count view lookups, evictions count user entries.
+ */
+@Component
+public class AnalyticsCache {
+
+    private final Cache<String, UserAnalytics> cache;
+    private final ViewStatsCounter stats = new ViewStatsCounter();
+
+    public AnalyticsCache(
+            @Value("${finledger.cache.analytics.max-users:10000}") long maxUsers,
+            @Value("${finledger.cache.analytics.ttl:10m}") Duration ttl,
+            MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maxUsers)
+            .expireAfterWrite(ttl)
+            .recordStats(() -> stats)
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "analytics");
+    }
+
+    /*
+     * The first reader of a view computes it; concurrent readers of the same view wait for that
+     * result. The loader runs outside the map's locks, so it never holds up other views of the user.
+     * A failed computation is not cached: its waiters see the failure and the next read retries.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String userId, String view, Supplier<T> loader) {
+        Map<String, CompletableFuture<Object>> views = cache.get(userId, id -> new UserAnalytics()).views;
+        CompletableFuture<Object> computed = new CompletableFuture<>();
+        CompletableFuture<Object> existing = views.putIfAbsent(view, computed);
+        if (existing != null) {
+            stats.recordViewHit();
+            try {
+                return (T) existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        stats.recordViewMiss();
+        long start = System.nanoTime();
+        try {
+            T value = loader.get();
+            stats.recordViewLoad(System.nanoTime() - start, true);
+            computed.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            stats.recordViewLoad(System.nanoTime() - start, false);
+            views.remove(view, computed);
+            computed.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public void invalidate(String userId) {
+        cache.invalidate(userId);
+    }
+
+    // Runs after commit so a concurrent reader cannot repopulate the entry from pre-commit data
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onLedgerChanged(LedgerChangedEvent event) {
+        invalidate(event.userId());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onConversionChanged(CurrencyConversionChangedEvent event) {
+        invalidate(event.userId());
+    }
+
+    /*
+     * Views are computed lazily into the entry that was current when the read started. An entry
+     * invalidated mid-computation is already detached from the cache, so a value computed from
+     * stale data is never served to later readers.
+     */
+    private static class UserAnalytics {
+        final Map<String, CompletableFuture<Object>> views = new ConcurrentHashMap<>();
+    }
+
+    /*
+     * Caffeine only sees the per-user entry, which exists after any view of the user was read, so its
+     * own hit, miss and load counts would call a user's first read of every further view a hit. Those
+     * are ignored and the lookups of the views map are recorded instead; evictions come from Caffeine.
+     */
+    private static class ViewStatsCounter implements StatsCounter {
+        private final ConcurrentStatsCounter counts = new ConcurrentStatsCounter();
+
+        void recordViewHit() {
+            counts.recordHits(1);
+        }
+
+        void recordViewMiss() {
+            counts.recordMisses(1);
+        }
+
+        void recordViewLoad(long loadTimeNanos, boolean succeeded) {
+            if (succeeded) {
+                counts.recordLoadSuccess(loadTimeNanos);
+            } else {
+                counts.recordLoadFailure(loadTimeNanos);
+            }
+        }
+
+        @Override
+        public void recordHits(int count) {
+        }
+
+        @Override
+        public void recordMisses(int count) {
+        }
+
+        @Override
+        public void recordLoadSuccess(long loadTime) {
+        }
+
+        @Override
+        public void recordLoadFailure(long loadTime) {
+        }
+
+        @Override
+        public void recordEviction(int weight, RemovalCause cause) {
+            counts.recordEviction(weight, cause);
+        }
+
+        @Override
+        public CacheStats snapshot() {
+            return counts.snapshot();
+        }
+    }
+}
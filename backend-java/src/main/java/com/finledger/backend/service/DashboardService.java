@@ -0,0 +1,80 @@
+package com.finledger.backend.service;
+
+import com.finledger.backend.dto.CategoryAnalytics;
+import com.finledger.backend.dto.Dashboard;
+import com.finledger.backend.dto.HoldingDto;
+import com.finledger.backend.dto.MonthlyTrend;
+import com.finledger.backend.dto.PortfolioMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Builds the dashboard's independent views concurrently, so a cold dashboard costs about as much
+ * as its slowest view (usually the holdings replay) rather than the sum of all of them.
+ *
+ * Views run on a small dedicated pool, which also bounds how many pooled connections dashboards
+ * can hold at once. When the pool and its queue are full, the request thread computes the view
+ * itself, so overload degrades to sequential loading instead of failing. The pool is published
+ * as {@code executor.*} metrics tagged {@code name=dashboard}.
+ */
+@Service
+public class DashboardService {
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private HoldingsEngine holdingsEngine;
+
+    private final ExecutorService executor;
+
+    public DashboardService(
+            @Value("${finledger.dashboard.threads:8}") int threads,
+            @Value("${finledger.dashboard.queue-capacity:64}") int queueCapacity,
+            MeterRegistry meterRegistry) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("dashboard-"),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = ExecutorServiceMetrics.monitor(meterRegistry, pool, "dashboard");
+    }
+
+    public Dashboard getDashboard(String userId, int months) {
+        CompletableFuture<PortfolioMetrics> metrics = submit(() -> transactionService.getPortfolioMetrics(userId));
+        CompletableFuture<List<HoldingDto>> holdings = submit(() -> holdingsEngine.getHoldings(userId));
+        CompletableFuture<List<CategoryAnalytics>> categories = submit(() -> transactionService.getCategoryAnalytics(userId));
+        CompletableFuture<List<MonthlyTrend>> trends = submit(() -> transactionService.getMonthlyTrends(userId, months));
+        try {
+            return new Dashboard(metrics.join(), holdings.join(), categories.join(), trends.join());
+        } catch (CompletionException e) {
+            // Surface the view's own exception, as the separate endpoints would
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> view) {
+        return CompletableFuture.supplyAsync(view, executor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
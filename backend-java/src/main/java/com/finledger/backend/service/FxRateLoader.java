@@ -0,0 +1,263 @@
+package com.finledger.backend.service;
+
+import com.finledger.backend.dto.TransactionCsv;
+import com.finledger.backend.event.CurrencyConversionChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Loads daily exchange rates into fx_rates from CSV files in {@code finledger.fx.rates-dir}, so
+ * conversion needs no live feed: a new or corrected file dropped into the directory is picked up by
+ * the next check. Files have a {@code date,currency,rate} header and one rate per line, in units of
+ * the currency per one unit of the reference currency (as central banks publish them). The directory
+ * is read in file name order, so a later file wins for a day both contain; when any file changed,
+ * all of them are read again and only rates that differ from the table are written.
+ *
+ * Rates that appear or change for a date some user's converted amounts depend on publish a
+ * {@link CurrencyConversionChangedEvent} for each such user, which rebuilds their summaries.
+ */
+@Service
+public class FxRateLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(FxRateLoader.class);
+
+    private static final int CHUNK_SIZE = 10000;
+
+    // Writes one chunk of rates and returns, per currency, the earliest date it changed and the earliest
+    // date the table held before this statement (other parts of a statement do not see its own writes)
+    private static final String UPSERT_SQL = "WITH changed AS ("
+        + "INSERT INTO fx_rates (currency, rate_date, rate) "
+        + "SELECT r.currency, CAST(r.rate_date AS date), CAST(r.rate AS numeric) "
+        + "FROM unnest(CAST(? AS text[]), CAST(? AS text[]), CAST(? AS text[])) AS r(currency, rate_date, rate) "
+        + "ON CONFLICT (currency, rate_date) DO UPDATE SET rate = EXCLUDED.rate WHERE fx_rates.rate <> EXCLUDED.rate "
+        + "RETURNING currency, rate_date) "
+        + "SELECT c.currency, MIN(c.rate_date), (SELECT MIN(f.rate_date) FROM fx_rates f WHERE f.currency = c.currency) "
+        + "FROM changed c GROUP BY c.currency";
+
+    /*
+     * Users with rows converted to or from a currency on or after a date (any date if null): rows in the
+     * currency of users with another base, and rows in other currencies of users with it as their base.
+     * Rows in a currency without rates never convert, so only currencies with rates are looked up. Both
+     * are range scans on idx_transactions_currency_date_user (V8__TransactionsCurrencyIndex).
+     */
+    public static final String AFFECTED_USERS_SQL = "SELECT t.user_id FROM transactions t "
+        + "LEFT JOIN users u ON u.id = t.user_id "
+        + "WHERE t.currency = ? AND (CAST(? AS date) IS NULL OR t.date >= CAST(? AS date)) "
+        + "AND COALESCE(u.base_currency, ?) <> t.currency "
+        + "UNION "
+        + "SELECT t.user_id FROM transactions t "
+        + "LEFT JOIN users u ON u.id = t.user_id "
+        + "WHERE t.currency = ANY(CAST(? AS text[])) AND (CAST(? AS date) IS NULL OR t.date >= CAST(? AS date)) "
+        + "AND COALESCE(u.base_currency, ?) = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private FxRates fxRates;
+
+    @Value("${finledger.fx.rates-dir:}")
+    private String ratesDir;
+
+    @Value("${finledger.fx.reference-currency:EUR}")
+    private String referenceCurrency;
+
+    // The files as last loaded; only touched by the scheduler thread
+    private Map<Path, FileState> loadedFiles = Map.of();
+
+    private record FileState(long size, FileTime modified) {}
+
+    private record RateKey(String currency, LocalDate date) {}
+
+    // Also runs once at startup
+    @Scheduled(fixedDelayString = "${finledger.fx.reload:PT1H}")
+    public void reload() {
+        if (ratesDir.isBlank()) {
+            return;
+        }
+        Map<Path, FileState> files = new TreeMap<>();
+        try (Stream<Path> listing = Files.list(Path.of(ratesDir))) {
+            for (Path file : (Iterable<Path>) listing::iterator) {
+                if (file.getFileName().toString().endsWith(".csv") && Files.isRegularFile(file)) {
+                    files.put(file, new FileState(Files.size(file), Files.getLastModifiedTime(file)));
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not list exchange rate files in {}: {}", ratesDir, e.getMessage());
+            return;
+        }
+        if (files.equals(loadedFiles)) {
+            return;
+        }
+
+        Map<RateKey, BigDecimal> rates = new LinkedHashMap<>();
+        for (Path file : files.keySet()) {
+            try {
+                read(file, rates);
+            } catch (IOException e) {
+                log.warn("Could not read exchange rate file {}, will retry: {}", file, e.getMessage());
+                return;
+            }
+        }
+
+        Map<String, LocalDate> changedSince = transactionTemplate.execute(status -> write(rates));
+        loadedFiles = files;
+        if (changedSince.isEmpty()) {
+            return;
+        }
+        fxRates.invalidate();
+
+        Set<String> userIds = new TreeSet<>();
+        Set<String> currencies = fxRates.knownCurrencies();
+        changedSince.forEach((currency, since) -> userIds.addAll(affectedUsers(currency, since, currencies)));
+        for (String userId : userIds) {
+            // One short transaction per user, as in the nightly summary verification
+            transactionTemplate.executeWithoutResult(status ->
+                eventPublisher.publishEvent(new CurrencyConversionChangedEvent(userId)));
+        }
+        log.info("Loaded changed exchange rates for {} from {} files; reconverted {} users",
+            changedSince.keySet(), files.size(), userIds.size());
+    }
+
+    private void read(Path file, Map<RateKey, BigDecimal> rates) throws IOException {
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            TransactionCsv.RecordReader reader = new TransactionCsv.RecordReader(in);
+            List<String> header = reader.next();
+            if (header == null) {
+                return;
+            }
+            int dateColumn = column(header, "date");
+            int currencyColumn = column(header, "currency");
+            int rateColumn = column(header, "rate");
+            if (dateColumn < 0 || currencyColumn < 0 || rateColumn < 0) {
+                log.warn("Skipping exchange rate file {}: header must have date, currency and rate columns", file);
+                return;
+            }
+
+            int skipped = 0;
+            List<String> record;
+            while ((record = reader.next()) != null) {
+                try {
+                    LocalDate date = LocalDate.parse(record.get(dateColumn).trim());
+                    String currency = record.get(currencyColumn).trim().toUpperCase(Locale.ROOT);
+                    BigDecimal rate = new BigDecimal(record.get(rateColumn).trim());
+                    if (!currency.matches("[A-Z]{3}") || rate.signum() <= 0) {
+                        skipped++;
+                        continue;
+                    }
+                    // The reference currency is 1 by definition, on every day any rate is quoted
+                    rates.put(new RateKey(referenceCurrency, date), BigDecimal.ONE);
+                    if (!currency.equals(referenceCurrency)) {
+                        rates.put(new RateKey(currency, date), rate);
+                    }
+                } catch (IndexOutOfBoundsException | DateTimeParseException | NumberFormatException e) {
+                    skipped++;
+                }
+            }
+            if (skipped > 0) {
+                log.warn("Skipped {} malformed lines in exchange rate file {}", skipped, file);
+            }
+        }
+    }
+
+    private static int column(List<String> header, String name) {
+        for (int i = 0; i < header.size(); i++) {
+            if (header.get(i).trim().equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * Upserts the rates and returns, for each currency whose rates changed, the first date whose
+     * conversions changed: the earliest changed date, or null (every date) if that is on or before the
+     * currency's first previously loaded rate, since earlier dates convert at the first rate.
+     */
+    private Map<String, LocalDate> write(Map<RateKey, BigDecimal> rates) {
+        Map<String, LocalDate> changedSince = new HashMap<>();
+        List<Map.Entry<RateKey, BigDecimal>> entries = new ArrayList<>(rates.entrySet());
+        for (int from = 0; from < entries.size(); from += CHUNK_SIZE) {
+            List<Map.Entry<RateKey, BigDecimal>> chunk = entries.subList(from, Math.min(from + CHUNK_SIZE, entries.size()));
+            String[] currencies = new String[chunk.size()];
+            String[] dates = new String[chunk.size()];
+            String[] values = new String[chunk.size()];
+            for (int i = 0; i < chunk.size(); i++) {
+                currencies[i] = chunk.get(i).getKey().currency();
+                dates[i] = chunk.get(i).getKey().date().toString();
+                values[i] = chunk.get(i).getValue().toPlainString();
+            }
+            jdbcTemplate.query(
+                connection -> {
+                    PreparedStatement statement = connection.prepareStatement(UPSERT_SQL);
+                    statement.setArray(1, connection.createArrayOf("text", currencies));
+                    statement.setArray(2, connection.createArrayOf("text", dates));
+                    statement.setArray(3, connection.createArrayOf("text", values));
+                    return statement;
+                },
+                rs -> {
+                    String currency = rs.getString(1);
+                    if (currency.equals(referenceCurrency)) {
+                        return;
+                    }
+                    LocalDate changed = rs.getObject(2, LocalDate.class);
+                    LocalDate previousFirst = rs.getObject(3, LocalDate.class);
+                    LocalDate since = previousFirst != null && changed.isAfter(previousFirst) ? changed : null;
+                    changedSince.put(currency, changedSince.containsKey(currency)
+                        ? earlier(changedSince.get(currency), since) : since);
+                });
+        }
+        return changedSince;
+    }
+
+    private List<String> affectedUsers(String currency, LocalDate since, Set<String> currencies) {
+        String[] others = currencies.stream().filter(other -> !other.equals(currency)).toArray(String[]::new);
+        String defaultCurrency = fxRates.getDefaultCurrency();
+        return jdbcTemplate.query(
+            connection -> {
+                PreparedStatement statement = connection.prepareStatement(AFFECTED_USERS_SQL);
+                statement.setString(1, currency);
+                statement.setObject(2, since);
+                statement.setObject(3, since);
+                statement.setString(4, defaultCurrency);
+                statement.setArray(5, connection.createArrayOf("text", others));
+                statement.setObject(6, since);
+                statement.setObject(7, since);
+                statement.setString(8, defaultCurrency);
+                statement.setString(9, currency);
+                return statement;
+            },
+            (rs, rowNum) -> rs.getString(1));
+    }
+
+    // Earlier of two bounds, where null means unbounded
+    private static LocalDate earlier(LocalDate a, LocalDate b) {
+        return a == null || b == null ? null : a.isBefore(b) ? a : b;
+    }
+}
@@ -0,0 +1,105 @@
+package com.finledger.backend.service;
+
+import com.finledger.backend.dto.InvalidRequestException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Set;
+
+/**
+ * Exchange rates for the rows converted one at a time in Java: the summary deltas of a ledger write
+ * and holdings appends. Aggregates over the ledger never come through here; they convert in the
+ * same SQL pass with {@code fx_convert} (db/migration/V5__currencies_and_fx_rates.sql). Rates are
+ * looked up with the same {@code fx_rate} function and rounded the same way, so a delta applied
+ * here and a rebuild in SQL agree to the cent.
+ *
+ * Rates are cached per (currency, date), published as {@code cache.*} metrics tagged
+ * {@code cache=fx_rates}, and dropped whenever {@link FxRateLoader} changes the table.
+ */
+@Service
+public class FxRates {
+
+    private static final int RATE_SCALE = 10;
+
+    private final Cache<RateKey, BigDecimal> rates;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${finledger.fx.default-currency:USD}")
+    private String defaultCurrency;
+
+    // Currencies with at least one loaded rate; null until first needed after a change
+    private volatile Set<String> currencies;
+
+    public FxRates(@Value("${finledger.fx.cache-size:100000}") long cacheSize, MeterRegistry meterRegistry) {
+        this.rates = Caffeine.newBuilder()
+            .maximumSize(cacheSize)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, rates, "fx_rates");
+    }
+
+    // Base currency of users without a stored one, and of rows that predate currencies
+    public String getDefaultCurrency() {
+        return defaultCurrency;
+    }
+
+    public boolean canConvert(String from, String to) {
+        if (from.equals(to)) {
+            return true;
+        }
+        Set<String> known = knownCurrencies();
+        return known.contains(from) && known.contains(to);
+    }
+
+    public void requireConvertible(String from, String to) {
+        if (!canConvert(from, to)) {
+            throw new InvalidRequestException("No exchange rates loaded to convert " + from + " to " + to);
+        }
+    }
+
+    // Same arithmetic as fx_convert: cross rate rounded to 10 places, result rounded to cents
+    public BigDecimal convert(BigDecimal amount, String from, String to, LocalDate date) {
+        if (from.equals(to)) {
+            return amount;
+        }
+        BigDecimal factor = rate(to, date).divide(rate(from, date), RATE_SCALE, RoundingMode.HALF_UP);
+        return amount.multiply(factor).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    public void invalidate() {
+        currencies = null;
+        rates.invalidateAll();
+    }
+
+    private BigDecimal rate(String currency, LocalDate date) {
+        BigDecimal rate = rates.get(new RateKey(currency, date),
+            key -> jdbcTemplate.queryForObject("SELECT fx_rate(?, ?)", BigDecimal.class, key.currency(), key.date()));
+        if (rate == null) {
+            throw new IllegalStateException("No exchange rate loaded for " + currency);
+        }
+        return rate;
+    }
+
+    // Currencies with at least one loaded rate
+    public Set<String> knownCurrencies() {
+        Set<String> known = currencies;
+        if (known == null) {
+            known = Set.copyOf(jdbcTemplate.queryForList("SELECT DISTINCT currency FROM fx_rates", String.class));
+            currencies = known;
+        }
+        return known;
+    }
+
+    private record RateKey(String currency, LocalDate date) {}
+}
@@ -0,0 +1,308 @@
+package com.finledger.backend.service;
+
+import com.finledger.backend.dto.HoldingDto;
+import com.finledger.backend.entity.Transaction;
+import com.finledger.backend.event.CurrencyConversionChangedEvent;
+import com.finledger.backend.event.LedgerChangedEvent;
+import com.finledger.backend.event.TransactionChange;
+import com.finledger.backend.event.TransactionSnapshot;
+import com.finledger.backend.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Per-asset positions (quantity, FIFO cost basis, realized P&L) for each user, computed by
+ * replaying the ledger once in date order and then kept up to date in memory.
+ *
+ * Amounts are held as long cents in the user's base currency, each row converted at the rate of its
+ * date (by the replay query itself, or {@link FxRates} for appended rows), and quantities as long
+ * units of 10^-8, matching the column scales; open lots live in parallel primitive arrays. Rows without a quantity count
+ * towards invested/proceeds totals but cannot open or close lots; TRANSFER rows move an asset
+ * between platforms and do not change the position. Selling more than is held realizes the
+ * excess at zero cost.
+ *
+ * A committed create that lands after an asset's last replayed row is applied in place; any
+ * other change (update, delete, back-dated insert) drops the user's positions so the next
+ * read replays the ledger.
+ */
+@Component
+public class HoldingsEngine {
+
+    public static final String LEDGER_SQL =
+        "SELECT id, asset_name, type, CAST(fx_convert(amount, currency, ?, date) * 100 AS bigint), " +
+        "CAST(round(quantity * 100000000) AS bigint), date " +
+        "FROM transactions WHERE user_id = ? ORDER BY date, id";
+
+    private final Cache<String, UserHoldings> cache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private FxRates fxRates;
+
+    private final TransactionTemplate readOnlyTransaction;
+
+    @Value("${finledger.holdings.fetch-size:5000}")
+    private int fetchSize;
+
+    public HoldingsEngine(
+            @Value("${finledger.holdings.max-users:10000}") long maxUsers,
+            @Value("${finledger.holdings.ttl:30m}") Duration ttl,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maxUsers)
+            .expireAfterAccess(ttl)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "holdings");
+
+        // PostgreSQL only streams with a fetch size inside a transaction
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public List<HoldingDto> getHoldings(String userId) {
+        return cache.get(userId, this::replay).toDtos();
+    }
+
+    // Appends are applied while holding the entry's lock, so they cannot race a concurrent replay
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onLedgerChanged(LedgerChangedEvent event) {
+        cache.asMap().computeIfPresent(event.userId(),
+            (userId, holdings) -> holdings.tryAppend(event.changes(), fxRates) ? holdings : null);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onConversionChanged(CurrencyConversionChangedEvent event) {
+        cache.invalidate(event.userId());
+    }
+
+    private UserHoldings replay(String userId) {
+        return readOnlyTransaction.execute(status -> {
+            String baseCurrency = userRepository.findBaseCurrencyById(userId).orElseGet(fxRates::getDefaultCurrency);
+            UserHoldings holdings = new UserHoldings(baseCurrency);
+            jdbcTemplate.query(
+                connection -> {
+                    PreparedStatement statement = connection.prepareStatement(LEDGER_SQL);
+                    statement.setFetchSize(fetchSize);
+                    statement.setString(1, baseCurrency);
+                    statement.setString(2, userId);
+                    return statement;
+                },
+                rs -> {
+                    long amount = rs.getLong(4);
+                    if (rs.wasNull()) {
+                        throw new IllegalStateException("No exchange rate to convert transaction " + rs.getLong(1)
+                            + " to " + baseCurrency);
+                    }
+                    long quantity = rs.getLong(5);
+                    if (rs.wasNull()) {
+                        quantity = -1;
+                    }
+                    holdings.apply(
+                        rs.getLong(1),
+                        rs.getString(2),
+                        Transaction.TransactionType.valueOf(rs.getString(3)),
+                        amount,
+                        quantity,
+                        rs.getObject(6, LocalDate.class).toEpochDay());
+                });
+            return holdings;
+        });
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount.movePointRight(2).setScale(0, RoundingMode.HALF_EVEN).longValueExact();
+    }
+
+    private static long toUnits(BigDecimal quantity) {
+        return quantity == null ? -1 : quantity.movePointRight(8).setScale(0, RoundingMode.HALF_EVEN).longValueExact();
+    }
+
+    // value * numerator / denominator without overflowing on large lots
+    static long prorate(long value, long numerator, long denominator) {
+        long high = Math.multiplyHigh(value, numerator);
+        long low = value * numerator;
+        if ((high == 0 && low >= 0) || (high == -1 && low < 0)) {
+            return low / denominator;
+        }
+        return BigInteger.valueOf(value).multiply(BigInteger.valueOf(numerator))
+            .divide(BigInteger.valueOf(denominator)).longValueExact();
+    }
+
+    static final class UserHoldings {
+        private final Map<String, Position> positions = new HashMap<>();
+        // Currency the positions were replayed in; appended rows are converted to it
+        private final String baseCurrency;
+
+        UserHoldings(String baseCurrency) {
+            this.baseCurrency = baseCurrency;
+        }
+
+        synchronized void apply(long id, String assetName, Transaction.TransactionType type,
+                                long amountCents, long quantityUnits, long epochDay) {
+            positions.computeIfAbsent(assetName, Position::new).apply(id, type, amountCents, quantityUnits, epochDay);
+        }
+
+        synchronized boolean tryAppend(List<TransactionChange> changes, FxRates fxRates) {
+            List<TransactionSnapshot> created = new ArrayList<>(changes.size());
+            for (TransactionChange change : changes) {
+                if (change.before() != null) {
+                    return false;
+                }
+                created.add(change.after());
+            }
+            created.sort(Comparator.comparing(TransactionSnapshot::date).thenComparing(TransactionSnapshot::id));
+            for (TransactionSnapshot row : created) {
+                long epochDay = row.date().toEpochDay();
+                Position position = positions.get(row.assetName());
+                if (position != null && !position.isBefore(epochDay, row.id())) {
+                    // Already replayed, or back-dated: only a full replay keeps FIFO order right
+                    if (position.lastEpochDay == epochDay && position.lastId == row.id()) {
+                        continue;
+                    }
+                    return false;
+                }
+                BigDecimal amount = fxRates.convert(row.amount(), row.currency(), baseCurrency, row.date());
+                apply(row.id(), row.assetName(), row.type(), toCents(amount), toUnits(row.quantity()), epochDay);
+            }
+            return true;
+        }
+
+        synchronized List<HoldingDto> toDtos() {
+            List<HoldingDto> holdings = new ArrayList<>(positions.size());
+            for (Position position : positions.values()) {
+                holdings.add(position.toDto());
+            }
+            holdings.sort(Comparator.comparing(HoldingDto::getAssetName));
+            return holdings;
+        }
+    }
+
+    private static final class Position {
+        private final String assetName;
+        private long quantity;
+        private long costBasis;
+        private long realizedPnl;
+        private long invested;
+        private long proceeds;
+        private long lastEpochDay = Long.MIN_VALUE;
+        private long lastId = Long.MIN_VALUE;
+
+        // Open lots, oldest at head, stored as a ring buffer
+        private long[] lotQuantity = new long[4];
+        private long[] lotCost = new long[4];
+        private int head;
+        private int lots;
+
+        Position(String assetName) {
+            this.assetName = assetName;
+        }
+
+        boolean isBefore(long epochDay, long id) {
+            return lastEpochDay < epochDay || (lastEpochDay == epochDay && lastId < id);
+        }
+
+        void apply(long id, Transaction.TransactionType type, long amountCents, long quantityUnits, long epochDay) {
+            lastEpochDay = epochDay;
+            lastId = id;
+            switch (type) {
+                case BUY -> {
+                    invested += amountCents;
+                    if (quantityUnits > 0) {
+                        pushLot(quantityUnits, amountCents);
+                    }
+                }
+                case SELL -> {
+                    proceeds += amountCents;
+                    if (quantityUnits > 0) {
+                        realizedPnl += amountCents - consumeLots(quantityUnits);
+                    }
+                }
+                case TRANSFER -> { }
+            }
+        }
+
+        private void pushLot(long units, long cost) {
+            if (lots == lotQuantity.length) {
+                long[] quantities = new long[lots * 2];
+                long[] costs = new long[lots * 2];
+                for (int i = 0; i < lots; i++) {
+                    quantities[i] = lotQuantity[(head + i) % lotQuantity.length];
+                    costs[i] = lotCost[(head + i) % lotCost.length];
+                }
+                lotQuantity = quantities;
+                lotCost = costs;
+                head = 0;
+            }
+            int tail = (head + lots) % lotQuantity.length;
+            lotQuantity[tail] = units;
+            lotCost[tail] = cost;
+            lots++;
+            quantity += units;
+            costBasis += cost;
+        }
+
+        // Removes units from the oldest lots first and returns the cost basis released
+        private long consumeLots(long units) {
+            long released = 0;
+            while (units > 0 && lots > 0) {
+                long available = lotQuantity[head];
+                if (units >= available) {
+                    released += lotCost[head];
+                    units -= available;
+                    quantity -= available;
+                    costBasis -= lotCost[head];
+                    head = (head + 1) % lotQuantity.length;
+                    lots--;
+                } else {
+                    long cost = prorate(lotCost[head], units, available);
+                    lotQuantity[head] -= units;
+                    lotCost[head] -= cost;
+                    quantity -= units;
+                    costBasis -= cost;
+                    released += cost;
+                    units = 0;
+                }
+            }
+            return released;
+        }
+
+        HoldingDto toDto() {
+            HoldingDto dto = new HoldingDto();
+            dto.setAssetName(assetName);
+            dto.setQuantity(BigDecimal.valueOf(quantity, 8));
+            dto.setCostBasis(BigDecimal.valueOf(costBasis, 2));
+            dto.setAverageCost(quantity == 0 ? null
+                : BigDecimal.valueOf(costBasis, 2).divide(BigDecimal.valueOf(quantity, 8), 2, RoundingMode.HALF_EVEN));
+            dto.setRealizedPnl(BigDecimal.valueOf(realizedPnl, 2));
+            dto.setTotalInvested(BigDecimal.valueOf(invested, 2));
+            dto.setTotalProceeds(BigDecimal.valueOf(proceeds, 2));
+            dto.setOpenLots(lots);
+            return dto;
+        }
+    }
+}
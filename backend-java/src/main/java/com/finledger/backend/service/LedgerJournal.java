@@ -0,0 +1,180 @@
+package com.finledger.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.finledger.backend.dto.TransactionEvent;
+import com.finledger.backend.entity.Transaction;
+import com.finledger.backend.event.LedgerChangedEvent;
+import com.finledger.backend.event.TransactionChange;
+import com.finledger.backend.event.TransactionSnapshot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+
+/**
+ * Append-only journal of ledger writes (db/migration/V3__ledger_journal.sql). Every create,
+ * update and delete is recorded with a monotonically increasing sequence number and the row as
+ * it was before and after, so the journal is both the audit trail of a transaction and the change
+ * log derived state is replayed from.
+ *
+ * Alongside the journal it keeps the latest snapshot of each user's rollups and the sequence number
+ * it covers. A user's derived aggregates are the snapshot plus the net effect of the events after
+ * it (the tail). Appends, snapshots and tail reads must all run under the user's advisory lock
+ * (see {@link PortfolioSummaryService}), which is what makes per-user sequence order commit order.
+ */
+@Service
+public class LedgerJournal {
+
+    private static final String APPEND_SQL = "INSERT INTO transaction_events "
+        + "(user_id, transaction_id, event_type, before_row, after_row) VALUES (?, ?, ?, CAST(? AS jsonb), CAST(? AS jsonb))";
+
+    // Net count and amount per rollup group of the events after a sequence number: -1 for each
+    // row as it was before an event, +1 for each row as it was after. Amounts are converted to the
+    // base currency row by row, as in TransactionRepository.aggregateRollupsByUserId
+    public static final String TAIL_ROLLUPS_SQL = "SELECT CAST(date_trunc('month', CAST(c.r->>'date' AS date)) AS date), "
+        + "c.r->>'category', c.r->>'platform', c.r->>'type', SUM(c.sign), "
+        + "SUM(c.sign * fx_convert(CAST(c.r->>'amount' AS numeric), c.r->>'currency', ?, CAST(c.r->>'date' AS date))) "
+        + "FROM transaction_events e "
+        + "CROSS JOIN LATERAL (VALUES (e.before_row, -1), (e.after_row, 1)) AS c(r, sign) "
+        + "WHERE e.user_id = ? AND e.seq > ? AND c.r IS NOT NULL "
+        + "GROUP BY 1, 2, 3, 4";
+
+    // Size and last sequence number of the tail after a snapshot
+    public static final String TAIL_SQL =
+        "SELECT COUNT(*), COALESCE(MAX(seq), ?) FROM transaction_events WHERE user_id = ? AND seq > ?";
+
+    // One transaction's events, oldest first
+    public static final String HISTORY_SQL = "SELECT seq, event_type, occurred_at, before_row, after_row "
+        + "FROM transaction_events WHERE user_id = ? AND transaction_id = ? ORDER BY seq";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // One rollup group: the same grain as user_analytics_rollups
+    public record RollupCount(LocalDate month, String category, String platform, Transaction.TransactionType type,
+                              long count, BigDecimal amount) {}
+
+    // Events after a snapshot, and the sequence number of the last one (the snapshot's own if none)
+    public record Tail(long events, long lastSeq) {}
+
+    // Called in the writing transaction with the user's lock held
+    public void append(LedgerChangedEvent event) {
+        List<Object[]> rows = new ArrayList<>(event.changes().size());
+        for (TransactionChange change : event.changes()) {
+            TransactionSnapshot row = change.after() != null ? change.after() : change.before();
+            String type = change.before() == null ? "CREATED" : change.after() == null ? "DELETED" : "UPDATED";
+            rows.add(new Object[] {event.userId(), row.id(), type, toJson(change.before()), toJson(change.after())});
+        }
+        jdbcTemplate.batchUpdate(APPEND_SQL, rows);
+    }
+
+    public OptionalLong findSnapshotSeq(String userId) {
+        List<Long> seq = jdbcTemplate.queryForList(
+            "SELECT last_seq FROM user_ledger_snapshots WHERE user_id = ?", Long.class, userId);
+        return seq.isEmpty() ? OptionalLong.empty() : OptionalLong.of(seq.get(0));
+    }
+
+    public List<RollupCount> findSnapshotRollups(String userId) {
+        return jdbcTemplate.query("SELECT period_month, category, platform, type, transaction_count, total_amount "
+                + "FROM user_ledger_snapshot_rollups WHERE user_id = ?",
+            (rs, rowNum) -> toRollup(rs.getObject(1, LocalDate.class), rs.getString(2), rs.getString(3),
+                rs.getString(4), rs.getLong(5), rs.getBigDecimal(6)),
+            userId);
+    }
+
+    public Tail findTail(String userId, long afterSeq) {
+        return jdbcTemplate.queryForObject(TAIL_SQL,
+            (rs, rowNum) -> new Tail(rs.getLong(1), rs.getLong(2)),
+            afterSeq, userId, afterSeq);
+    }
+
+    public List<RollupCount> findTailRollups(String userId, long afterSeq, String baseCurrency) {
+        return jdbcTemplate.query(TAIL_ROLLUPS_SQL,
+            (rs, rowNum) -> toRollup(rs.getObject(1, LocalDate.class), rs.getString(2), rs.getString(3),
+                rs.getString(4), rs.getLong(5), rs.getBigDecimal(6)),
+            baseCurrency, userId, afterSeq);
+    }
+
+    // Sequence number of the user's last event, or 0 for a user with no journaled writes
+    public long findLastSeq(String userId) {
+        Long seq = jdbcTemplate.queryForObject(
+            "SELECT MAX(seq) FROM transaction_events WHERE user_id = ?", Long.class, userId);
+        return seq == null ? 0 : seq;
+    }
+
+    // Replaces the user's snapshot; groups whose count and amount netted out to zero are left out
+    public void saveSnapshot(String userId, long lastSeq, List<RollupCount> rollups) {
+        jdbcTemplate.update("DELETE FROM user_ledger_snapshot_rollups WHERE user_id = ?", userId);
+        List<Object[]> rows = new ArrayList<>(rollups.size());
+        for (RollupCount rollup : rollups) {
+            if (rollup.count() != 0 || rollup.amount().signum() != 0) {
+                rows.add(new Object[] {userId, rollup.month(), rollup.category(), rollup.platform(),
+                    rollup.type().name(), rollup.count(), rollup.amount()});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO user_ledger_snapshot_rollups "
+            + "(user_id, period_month, category, platform, type, transaction_count, total_amount) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?)", rows);
+        jdbcTemplate.update("INSERT INTO user_ledger_snapshots (user_id, last_seq, taken_at) VALUES (?, ?, now()) "
+            + "ON CONFLICT (user_id) DO UPDATE SET last_seq = EXCLUDED.last_seq, taken_at = EXCLUDED.taken_at",
+            userId, lastSeq);
+    }
+
+    // Snapshot amounts are converted to the base currency; a new conversion starts over from a full scan
+    public void deleteSnapshot(String userId) {
+        jdbcTemplate.update("DELETE FROM user_ledger_snapshot_rollups WHERE user_id = ?", userId);
+        jdbcTemplate.update("DELETE FROM user_ledger_snapshots WHERE user_id = ?", userId);
+    }
+
+    // Audit trail of one transaction, oldest event first; empty if it was never journaled
+    @Transactional(readOnly = true)
+    public List<TransactionEvent> findHistory(String userId, Long transactionId) {
+        return jdbcTemplate.query(HISTORY_SQL,
+            (rs, rowNum) -> new TransactionEvent(
+                rs.getLong(1),
+                rs.getString(2),
+                rs.getObject(3, OffsetDateTime.class),
+                fromJson(rs.getString(4)),
+                fromJson(rs.getString(5))),
+            userId, transactionId);
+    }
+
+    private static RollupCount toRollup(LocalDate month, String category, String platform, String type,
+                                        long count, BigDecimal amount) {
+        return new RollupCount(month, category, platform, Transaction.TransactionType.valueOf(type), count, amount);
+    }
+
+    private String toJson(TransactionSnapshot row) {
+        if (row == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(row);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private TransactionSnapshot fromJson(String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, TransactionSnapshot.class);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
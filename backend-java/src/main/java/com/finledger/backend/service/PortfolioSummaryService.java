@@ -0,0 +1,401 @@
+package com.finledger.backend.service;
+
+import com.finledger.backend.dto.CategoryAnalytics;
+import com.finledger.backend.entity.AnalyticsRollup;
+import com.finledger.backend.entity.MonthlySummary;
+import com.finledger.backend.entity.PortfolioSummary;
+import com.finledger.backend.entity.Transaction;
+import com.finledger.backend.event.CurrencyConversionChangedEvent;
+import com.finledger.backend.event.LedgerChangedEvent;
+import com.finledger.backend.event.TransactionChange;
+import com.finledger.backend.event.TransactionSnapshot;
+import com.finledger.backend.repository.AnalyticsRollupRepository;
+import com.finledger.backend.repository.MonthlySummaryRepository;
+import com.finledger.backend.repository.PortfolioSummaryRepository;
+import com.finledger.backend.repository.TransactionRepository;
+import com.finledger.backend.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+
+/**
+ * Maintains the derived tables that back the portfolio and analytics endpoints: the per-user
+ * summary, the per-user-per-month summary and the monthly category/platform/type rollups.
+ * Every ledger write is appended to the {@link LedgerJournal} and applies its delta in the writing
+ * transaction. Rebuilds start from the user's latest journal snapshot and replay only the events
+ * after it, and take a new snapshot once the tail has grown long enough; a user without a snapshot,
+ * such as a ledger that predates the journal, is rebuilt from a full scan of the ledger.
+ *
+ * A scheduled job verifies every user against a full scan of {@code transactions}, not the journal:
+ * changes that never reached the journal (a missed listener, a manual SQL fix, rows moved between
+ * partitions) show up as drift there only. It reports, and by default repairs, any drift and
+ * re-snapshots the user from the scan, so later rebuilds replay from the corrected state.
+ *
+ * All amounts are in the user's base currency, each row converted at the rate of its date: in SQL
+ * for scans and journal tails, through {@link FxRates} for the rows of a single write. A new base
+ * currency or revised rates ({@link CurrencyConversionChangedEvent}) discard the user's snapshot and
+ * rebuild from a full scan.
+ */
+@Service
+public class PortfolioSummaryService {
+
+    private static final Logger log = LoggerFactory.getLogger(PortfolioSummaryService.class);
+
+    @Autowired
+    private PortfolioSummaryRepository summaryRepository;
+
+    @Autowired
+    private MonthlySummaryRepository monthlySummaryRepository;
+
+    @Autowired
+    private AnalyticsRollupRepository rollupRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AnalyticsCache analyticsCache;
+
+    @Autowired
+    private FxRates fxRates;
+
+    @Autowired
+    private LedgerJournal journal;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${finledger.summaries.repair:true}")
+    private boolean repairDrift;
+
+    @Value("${finledger.journal.snapshot-every:1000}")
+    private long snapshotEvery;
+
+    @Transactional
+    public PortfolioSummary getSummary(String userId) {
+        Optional<PortfolioSummary> summary = summaryRepository.findById(userId);
+        if (summary.isPresent()) {
+            return summary.get();
+        }
+        // First read for a ledger that predates the summary tables
+        rebuild(userId);
+        return summaryRepository.findById(userId).orElseThrow();
+    }
+
+    // Summaries and rollups are month-grained, so windows start at a month, never mid-month
+    public BigDecimal sumAmountSince(String userId, YearMonth fromMonth) {
+        return monthlySummaryRepository.sumAmountFrom(userId, fromMonth.atDay(1));
+    }
+
+    @Transactional
+    public List<CategoryAnalytics> getCategoryTotals(String userId) {
+        getSummary(userId);
+        return rollupRepository.findCategoryTotals(userId);
+    }
+
+    @Transactional
+    public List<Object[]> getMonthlyTotals(String userId, YearMonth fromMonth) {
+        getSummary(userId);
+        return rollupRepository.findMonthlyTotals(userId, fromMonth.atDay(1));
+    }
+
+    @EventListener
+    public void onLedgerChanged(LedgerChangedEvent event) {
+        String userId = event.userId();
+        lockUser(userId);
+        journal.append(event);
+
+        if (!summaryRepository.existsById(userId)) {
+            rebuild(userId);
+            return;
+        }
+
+        String baseCurrency = baseCurrency(userId);
+        Aggregates delta = new Aggregates();
+        for (TransactionChange change : event.changes()) {
+            if (change.before() != null) {
+                delta.add(change.before(), convert(change.before(), baseCurrency), -1);
+            }
+            if (change.after() != null) {
+                delta.add(change.after(), convert(change.after(), baseCurrency), 1);
+            }
+        }
+
+        if (!delta.total.isZero()) {
+            summaryRepository.applyDelta(userId, delta.total.count, delta.total.investments);
+        }
+        delta.months.forEach((month, d) -> {
+            if (!d.isZero()) {
+                monthlySummaryRepository.applyDelta(userId, month, d.count, d.amount);
+            }
+        });
+        delta.rollups.forEach((key, d) -> {
+            if (!d.isZero()) {
+                rollupRepository.applyDelta(userId, key.month(), key.category(), key.platform(),
+                    key.type().name(), d.count, d.amount);
+            }
+        });
+    }
+
+    /**
+     * Recomputes a user's derived tables from the latest journal snapshot plus the events after it,
+     * replacing the stored rows. Without a snapshot the ledger is aggregated in one pass instead and
+     * a snapshot is taken from the result. Returns true if existing rows disagreed.
+     */
+    @Transactional
+    public boolean rebuild(String userId) {
+        return recompute(userId, false);
+    }
+
+    /**
+     * Checks a user's derived tables against a full scan of the ledger, repairing them if they
+     * drifted (unless repair is off), and replaces the journal snapshot with the scan. Returns true
+     * if the stored rows disagreed with the ledger.
+     */
+    @Transactional
+    public boolean verify(String userId) {
+        return recompute(userId, true);
+    }
+
+    private boolean recompute(String userId, boolean scanLedger) {
+        lockUser(userId);
+
+        String baseCurrency = baseCurrency(userId);
+        Aggregates expected;
+        OptionalLong snapshotSeq = scanLedger ? OptionalLong.empty() : journal.findSnapshotSeq(userId);
+        long lastSeq;
+        boolean takeSnapshot;
+        if (snapshotSeq.isPresent()) {
+            expected = new Aggregates();
+            journal.findSnapshotRollups(userId).forEach(expected::add);
+            LedgerJournal.Tail tail = journal.findTail(userId, snapshotSeq.getAsLong());
+            if (tail.events() > 0) {
+                journal.findTailRollups(userId, snapshotSeq.getAsLong(), baseCurrency).forEach(expected::add);
+            }
+            lastSeq = tail.lastSeq();
+            takeSnapshot = tail.events() >= snapshotEvery;
+        } else {
+            // Events appended after this scan wait on the lock, so they all come after lastSeq
+            expected = scanLedger(userId, baseCurrency);
+            lastSeq = journal.findLastSeq(userId);
+            takeSnapshot = true;
+        }
+        expected.removeEmptyGroups();
+
+        Optional<PortfolioSummary> stored = summaryRepository.findById(userId);
+        boolean drifted = false;
+        if (stored.isPresent()) {
+            PortfolioSummary summary = stored.get();
+            if (summary.getTransactionCount() != expected.total.count
+                    || summary.getTotalInvestments().compareTo(expected.total.investments) != 0) {
+                log.warn("Portfolio summary drift for user {}: stored count={} investments={}, ledger count={} investments={}",
+                    userId, summary.getTransactionCount(), summary.getTotalInvestments(),
+                    expected.total.count, expected.total.investments);
+                drifted = true;
+            }
+            if (differs(storedMonths(userId), expected.months)) {
+                log.warn("Monthly summary drift for user {}", userId);
+                drifted = true;
+            }
+            if (differs(storedRollups(userId), expected.rollups)) {
+                log.warn("Analytics rollup drift for user {}", userId);
+                drifted = true;
+            }
+        }
+
+        if (stored.isEmpty() || (drifted && repairDrift)) {
+            replaceStored(userId, expected);
+        }
+        if (takeSnapshot) {
+            journal.saveSnapshot(userId, lastSeq, expected.toRollupCounts());
+        }
+        return drifted;
+    }
+
+    // Every stored amount changes, so this is a full rescan and replacement rather than a drift check
+    @EventListener
+    public void onConversionChanged(CurrencyConversionChangedEvent event) {
+        String userId = event.userId();
+        lockUser(userId);
+        journal.deleteSnapshot(userId);
+        Aggregates expected = scanLedger(userId, baseCurrency(userId));
+        replaceStored(userId, expected);
+        journal.saveSnapshot(userId, journal.findLastSeq(userId), expected.toRollupCounts());
+    }
+
+    @Scheduled(cron = "${finledger.summaries.verify-cron:0 30 3 * * *}")
+    public void verifyAll() {
+        Set<String> userIds = new TreeSet<>(transactionRepository.findDistinctUserIds());
+        summaryRepository.findAll().forEach(summary -> userIds.add(summary.getUserId()));
+
+        int drifted = 0;
+        for (String userId : userIds) {
+            // Each user is verified in its own short transaction
+            if (Boolean.TRUE.equals(transactionTemplate.execute(status -> verify(userId)))) {
+                drifted++;
+                analyticsCache.invalidate(userId);
+            }
+        }
+        log.info("Verified portfolio summaries for {} users: {} drifted{}",
+            userIds.size(), drifted, drifted > 0 && repairDrift ? " and were repaired" : "");
+    }
+
+    private Aggregates scanLedger(String userId, String baseCurrency) {
+        Aggregates aggregates = new Aggregates();
+        for (Object[] row : transactionRepository.aggregateRollupsByUserId(userId, baseCurrency)) {
+            RollupKey key = new RollupKey(toLocalDate(row[0]), (String) row[1], (String) row[2],
+                Transaction.TransactionType.valueOf((String) row[3]));
+            aggregates.add(key, ((Number) row[4]).longValue(), (BigDecimal) row[5]);
+        }
+        return aggregates;
+    }
+
+    private void replaceStored(String userId, Aggregates expected) {
+        summaryRepository.replace(userId, expected.total.count, expected.total.investments);
+        monthlySummaryRepository.deleteByUserId(userId);
+        expected.months.forEach((month, d) ->
+            monthlySummaryRepository.applyDelta(userId, month, d.count, d.amount));
+        rollupRepository.deleteByUserId(userId);
+        expected.rollups.forEach((key, d) ->
+            rollupRepository.applyDelta(userId, key.month(), key.category(), key.platform(),
+                key.type().name(), d.count, d.amount));
+    }
+
+    // Read under the user's lock, so a base currency change that just committed is always seen
+    private String baseCurrency(String userId) {
+        return userRepository.findBaseCurrencyById(userId).orElseGet(fxRates::getDefaultCurrency);
+    }
+
+    private BigDecimal convert(TransactionSnapshot row, String baseCurrency) {
+        return fxRates.convert(row.amount(), row.currency(), baseCurrency, row.date());
+    }
+
+    // Serializes journal appends and summary maintenance per user so deltas and rebuilds cannot interleave
+    private void lockUser(String userId) {
+        jdbcTemplate.query("SELECT pg_advisory_xact_lock(hashtext(?))", rs -> null, userId);
+    }
+
+    private Map<LocalDate, Delta> storedMonths(String userId) {
+        Map<LocalDate, Delta> months = new HashMap<>();
+        for (MonthlySummary month : monthlySummaryRepository.findByUserId(userId)) {
+            months.put(month.getPeriodMonth(), new Delta(month.getTransactionCount(), month.getTotalAmount()));
+        }
+        return months;
+    }
+
+    private Map<RollupKey, Delta> storedRollups(String userId) {
+        Map<RollupKey, Delta> rollups = new HashMap<>();
+        for (AnalyticsRollup rollup : rollupRepository.findByUserId(userId)) {
+            RollupKey key = new RollupKey(rollup.getPeriodMonth(), rollup.getCategory(), rollup.getPlatform(),
+                rollup.getType());
+            rollups.put(key, new Delta(rollup.getTransactionCount(), rollup.getTotalAmount()));
+        }
+        return rollups;
+    }
+
+    private static <K> boolean differs(Map<K, Delta> stored, Map<K, Delta> expected) {
+        // Groups whose rows were all deleted keep a zero row until the next rebuild
+        stored.values().removeIf(Delta::isZero);
+        if (stored.size() != expected.size()) {
+            return true;
+        }
+        for (Map.Entry<K, Delta> entry : expected.entrySet()) {
+            Delta actual = stored.get(entry.getKey());
+            if (actual == null || actual.count != entry.getValue().count
+                    || actual.amount.compareTo(entry.getValue().amount) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static LocalDate toLocalDate(Object value) {
+        return value instanceof Date ? ((Date) value).toLocalDate() : (LocalDate) value;
+    }
+
+    private record RollupKey(LocalDate month, String category, String platform, Transaction.TransactionType type) {}
+
+    private static class Delta {
+        long count;
+        BigDecimal amount = BigDecimal.ZERO;
+        BigDecimal investments = BigDecimal.ZERO;
+
+        Delta() {}
+
+        Delta(long count, BigDecimal amount) {
+            this.count = count;
+            this.amount = amount;
+        }
+
+        boolean isZero() {
+            return count == 0 && amount.signum() == 0 && investments.signum() == 0;
+        }
+    }
+
+    // Accumulates the summary, monthly and rollup levels together from rollup-grained inputs
+    private static class Aggregates {
+        final Delta total = new Delta();
+        final Map<LocalDate, Delta> months = new HashMap<>();
+        final Map<RollupKey, Delta> rollups = new HashMap<>();
+
+        // amount is the row's amount already converted to the base currency
+        void add(TransactionSnapshot row, BigDecimal amount, int sign) {
+            RollupKey key = new RollupKey(row.date().withDayOfMonth(1), row.category(), row.platform(), row.type());
+            add(key, sign, sign > 0 ? amount : amount.negate());
+        }
+
+        void add(LedgerJournal.RollupCount rollup) {
+            add(new RollupKey(rollup.month(), rollup.category(), rollup.platform(), rollup.type()),
+                rollup.count(), rollup.amount());
+        }
+
+        void add(RollupKey key, long count, BigDecimal amount) {
+            if (amount == null) {
+                // fx_convert found no rate for a currency in the group
+                throw new IllegalStateException("No exchange rates loaded for a currency in " + key);
+            }
+            total.count += count;
+            if (key.type() == Transaction.TransactionType.BUY) {
+                total.investments = total.investments.add(amount);
+            }
+            Delta month = months.computeIfAbsent(key.month(), m -> new Delta());
+            month.count += count;
+            month.amount = month.amount.add(amount);
+            Delta rollup = rollups.computeIfAbsent(key, k -> new Delta());
+            rollup.count += count;
+            rollup.amount = rollup.amount.add(amount);
+        }
+
+        // A replayed tail leaves zero groups behind for everything deleted or moved since the snapshot
+        void removeEmptyGroups() {
+            months.values().removeIf(Delta::isZero);
+            rollups.values().removeIf(Delta::isZero);
+        }
+
+        List<LedgerJournal.RollupCount> toRollupCounts() {
+            List<LedgerJournal.RollupCount> counts = new ArrayList<>(rollups.size());
+            rollups.forEach((key, d) -> counts.add(new LedgerJournal.RollupCount(key.month(), key.category(),
+                key.platform(), key.type(), d.count, d.amount)));
+            return counts;
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package com.finledger.backend.service;
+
+import com.finledger.backend.dto.RecurringSeries;
+import com.finledger.backend.entity.Transaction;
+import com.finledger.backend.repository.TransactionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds recurring entries (salaries, SIPs, subscriptions) in each user's ledger in the background
+ * and keeps them in recurring_series for /api/analytics/recurring.
+ *
+ * Each run only looks at users with ledger journal events after their watermark, and for those only
+ * recomputes the groups (asset, platform, type, currency) that the new events touched; users never
+ * scanned before get a full recompute. Within a group, amounts are split into bands no wider than
+ * {@code finledger.recurring.amount-tolerance}, and a band is a series when enough of the gaps between
+ * its dates are a week or a month apart. Only rows within {@code lookback-months} are considered, and
+ * each run drops series whose last entry has aged out of that window, which a recompute would find
+ * nothing left of.
+ *
+ * Users are scanned in parallel on a small dedicated pool, each in its own short transaction, so the
+ * job holds at most {@code threads} + 1 pooled connections and request threads keep the rest. When the
+ * pool's queue is full the scheduler thread scans users itself, which slows the run rather than
+ * growing it. The pool is published as {@code executor.*} metrics tagged {@code name=recurring}.
+ */
+@Service
+public class RecurringSeriesDetector {
+
+    private static final Logger log = LoggerFactory.getLogger(RecurringSeriesDetector.class);
+
+    // Advisory locks taken with two keys never collide with the single-key ledger locks on hashtext(user_id)
+    private static final int LOCK_CLASS = 1;
+
+    // Share of a band's gaps that must match the cadence, so one skipped or late entry does not end a series
+    private static final double MIN_REGULAR_SHARE = 0.75;
+
+    // Users with journal events in a seq range and none or an older watermark
+    public static final String CANDIDATES_SQL = "SELECT e.user_id FROM transaction_events e "
+        + "LEFT JOIN recurring_watermarks w ON w.user_id = e.user_id "
+        + "WHERE e.seq > ? AND e.seq <= ? "
+        + "GROUP BY e.user_id, w.last_seq HAVING w.last_seq IS NULL OR MAX(e.seq) > w.last_seq";
+
+    // Groups of both sides of a user's events in a seq range, with the seq of each
+    public static final String CHANGED_GROUPS_SQL = "SELECT c.r->>'assetName', c.r->>'platform', c.r->>'type', "
+        + "COALESCE(c.r->>'currency', ?), e.seq FROM transaction_events e "
+        + "CROSS JOIN LATERAL (VALUES (e.before_row), (e.after_row)) AS c(r) "
+        + "WHERE e.user_id = ? AND e.seq > ? AND e.seq <= ? AND c.r IS NOT NULL";
+
+    public static final String ROWS_SQL = "SELECT t.asset_name, t.platform, t.type, t.currency, t.date, t.amount "
+        + "FROM transactions t WHERE t.user_id = ? AND t.date >= ?";
+
+    public static final String GROUP_ROWS_SQL = "SELECT t.asset_name, t.platform, t.type, t.currency, t.date, t.amount "
+        + "FROM transactions t JOIN unnest(CAST(? AS text[]), CAST(? AS text[]), CAST(? AS text[]), CAST(? AS text[])) "
+        + "AS g(asset_name, platform, type, currency) ON t.asset_name = g.asset_name AND t.platform = g.platform "
+        + "AND t.type = g.type AND t.currency = g.currency "
+        + "WHERE t.user_id = ? AND t.date >= ?";
+
+    private static final String DELETE_GROUPS_SQL = "DELETE FROM recurring_series s "
+        + "USING unnest(CAST(? AS text[]), CAST(? AS text[]), CAST(? AS text[]), CAST(? AS text[])) "
+        + "AS g(asset_name, platform, type, currency) WHERE s.user_id = ? AND s.asset_name = g.asset_name "
+        + "AND s.platform = g.platform AND s.type = g.type AND s.currency = g.currency";
+
+    private static final String INSERT_SQL = "INSERT INTO recurring_series (user_id, asset_name, platform, type, "
+        + "currency, cadence, typical_amount, min_amount, max_amount, occurrences, first_date, last_date, "
+        + "next_expected_date) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String EXPIRE_SQL = "DELETE FROM recurring_series WHERE last_date < ?";
+
+    private static final String SELECT_SQL = "SELECT id, asset_name, platform, type, currency, cadence, "
+        + "typical_amount, min_amount, max_amount, occurrences, first_date, last_date, next_expected_date "
+        + "FROM recurring_series WHERE user_id = ? ORDER BY next_expected_date, asset_name, id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Value("${finledger.fx.default-currency:USD}")
+    private String defaultCurrency;
+
+    @Value("${finledger.recurring.lookback-months:18}")
+    private int lookbackMonths;
+
+    @Value("${finledger.recurring.min-occurrences:3}")
+    private int minOccurrences;
+
+    @Value("${finledger.recurring.amount-tolerance:0.10}")
+    private BigDecimal amountTolerance;
+
+    private final ExecutorService executor;
+
+    record GroupKey(String assetName, String platform, String type, String currency) {}
+
+    record Occurrence(LocalDate date, BigDecimal amount) {}
+
+    public RecurringSeriesDetector(
+            @Value("${finledger.recurring.threads:2}") int threads,
+            @Value("${finledger.recurring.queue-capacity:16}") int queueCapacity,
+            MeterRegistry meterRegistry) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("recurring-"),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = ExecutorServiceMetrics.monitor(meterRegistry, pool, "recurring");
+    }
+
+    public List<RecurringSeries> getSeries(String userId) {
+        return jdbcTemplate.query(SELECT_SQL, (rs, rowNum) -> new RecurringSeries(
+            rs.getLong(1),
+            rs.getString(2),
+            rs.getString(3),
+            Transaction.TransactionType.valueOf(rs.getString(4)),
+            rs.getString(5),
+            RecurringSeries.Cadence.valueOf(rs.getString(6)),
+            rs.getBigDecimal(7),
+            rs.getBigDecimal(8),
+            rs.getBigDecimal(9),
+            rs.getInt(10),
+            rs.getObject(11, LocalDate.class),
+            rs.getObject(12, LocalDate.class),
+            rs.getObject(13, LocalDate.class)), userId);
+    }
+
+    @Scheduled(fixedDelayString = "${finledger.recurring.interval:PT15M}",
+        initialDelayString = "${finledger.recurring.initial-delay:PT2M}")
+    public void scan() {
+        // Series of ledgers without new events are otherwise never looked at again
+        int expired = jdbcTemplate.update(EXPIRE_SQL, LocalDate.now().minusMonths(lookbackMonths));
+
+        List<Long> previous = jdbcTemplate.queryForList("SELECT previous_seq FROM recurring_scan_state", Long.class);
+        long fromSeq = previous.isEmpty() ? 0 : previous.get(0);
+        long toSeq = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(seq), 0) FROM transaction_events", Long.class);
+
+        Set<String> userIds = new TreeSet<>(jdbcTemplate.queryForList(CANDIDATES_SQL, String.class, fromSeq, toSeq));
+        if (previous.isEmpty()) {
+            // First run: also users whose rows all predate the journal
+            userIds.addAll(transactionRepository.findDistinctUserIds());
+        }
+        if (userIds.isEmpty()) {
+            advance(toSeq);
+            return;
+        }
+
+        List<CompletableFuture<Boolean>> scans = new ArrayList<>();
+        for (String userId : userIds) {
+            scans.add(CompletableFuture.supplyAsync(() -> scanUser(userId, toSeq), executor)
+                .exceptionally(e -> {
+                    log.warn("Recurring series detection failed for user {}", userId, e);
+                    return false;
+                }));
+        }
+        long incomplete = scans.stream().filter(scan -> !scan.join()).count();
+
+        // Users left out are found again by the next run as long as the journal position stays put
+        if (incomplete == 0) {
+            advance(toSeq);
+        }
+        log.info("Scanned {} users for recurring series up to journal event {}; {} incomplete, {} series expired",
+            userIds.size(), toSeq, incomplete, expired);
+    }
+
+    private void advance(long toSeq) {
+        jdbcTemplate.update("INSERT INTO recurring_scan_state (id, previous_seq, last_seq) VALUES (true, 0, ?) "
+            + "ON CONFLICT (id) DO UPDATE SET previous_seq = recurring_scan_state.last_seq, "
+            + "last_seq = EXCLUDED.last_seq, scanned_at = now()", toSeq);
+    }
+
+    /*
+     * Brings one user's series up to journal event toSeq. Returns false without changes when another
+     * instance is scanning the same user.
+     */
+    private boolean scanUser(String userId, long toSeq) {
+        return transactionTemplate.execute(status -> {
+            Boolean locked = jdbcTemplate.queryForObject(
+                "SELECT pg_try_advisory_xact_lock(?, hashtext(?))", Boolean.class, LOCK_CLASS, userId);
+            if (!Boolean.TRUE.equals(locked)) {
+                return false;
+            }
+            LocalDate since = LocalDate.now().minusMonths(lookbackMonths);
+            List<Long> watermark = jdbcTemplate.queryForList(
+                "SELECT last_seq FROM recurring_watermarks WHERE user_id = ?", Long.class, userId);
+
+            long lastSeq;
+            Map<GroupKey, List<Occurrence>> groups = new HashMap<>();
+            if (watermark.isEmpty()) {
+                lastSeq = jdbcTemplate.queryForObject(
+                    "SELECT COALESCE(MAX(seq), 0) FROM transaction_events WHERE user_id = ? AND seq <= ?",
+                    Long.class, userId, toSeq);
+                jdbcTemplate.query(ROWS_SQL, rs -> {
+                    addOccurrence(groups, rs);
+                }, userId, since);
+                jdbcTemplate.update("DELETE FROM recurring_series WHERE user_id = ?", userId);
+            } else {
+                long[] maxSeq = {watermark.get(0)};
+                jdbcTemplate.query(CHANGED_GROUPS_SQL, rs -> {
+                    // Groups whose rows all went away still need their old series deleted
+                    groups.putIfAbsent(new GroupKey(rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4)),
+                        new ArrayList<>());
+                    maxSeq[0] = Math.max(maxSeq[0], rs.getLong(5));
+                }, defaultCurrency, userId, watermark.get(0), toSeq);
+                if (groups.isEmpty()) {
+                    // Nothing to recompute, but the events are seen and must not make the user a candidate again
+                    saveWatermark(userId, maxSeq[0]);
+                    return true;
+                }
+                lastSeq = maxSeq[0];
+                List<GroupKey> keys = List.copyOf(groups.keySet());
+                jdbcTemplate.query(connection -> groupStatement(connection.prepareStatement(GROUP_ROWS_SQL), keys,
+                    userId, since), rs -> {
+                    addOccurrence(groups, rs);
+                });
+                jdbcTemplate.update(connection -> groupStatement(connection.prepareStatement(DELETE_GROUPS_SQL), keys,
+                    userId, null));
+            }
+
+            List<Object[]> rows = new ArrayList<>();
+            groups.forEach((key, occurrences) -> {
+                for (RecurringSeries series : detect(key, occurrences)) {
+                    rows.add(new Object[] {userId, series.assetName(), series.platform(), series.type().name(),
+                        series.currency(), series.cadence().name(), series.typicalAmount(), series.minAmount(),
+                        series.maxAmount(), series.occurrences(), series.firstDate(), series.lastDate(),
+                        series.nextExpectedDate()});
+                }
+            });
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+            }
+            saveWatermark(userId, lastSeq);
+            return true;
+        });
+    }
+
+    private void saveWatermark(String userId, long lastSeq) {
+        jdbcTemplate.update("INSERT INTO recurring_watermarks (user_id, last_seq) VALUES (?, ?) "
+            + "ON CONFLICT (user_id) DO UPDATE SET last_seq = EXCLUDED.last_seq, scanned_at = now()",
+            userId, lastSeq);
+    }
+
+    private static void addOccurrence(Map<GroupKey, List<Occurrence>> groups, ResultSet rs)
+            throws SQLException {
+        GroupKey key = new GroupKey(rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4));
+        groups.computeIfAbsent(key, k -> new ArrayList<>())
+            .add(new Occurrence(rs.getObject(5, LocalDate.class), rs.getBigDecimal(6)));
+    }
+
+    // Binds the group key arrays, then the user id and, for row queries, the lookback start
+    private static PreparedStatement groupStatement(PreparedStatement statement, List<GroupKey> keys,
+            String userId, LocalDate since) throws SQLException {
+        String[][] columns = new String[4][keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            GroupKey key = keys.get(i);
+            columns[0][i] = key.assetName();
+            columns[1][i] = key.platform();
+            columns[2][i] = key.type();
+            columns[3][i] = key.currency();
+        }
+        for (int column = 0; column < columns.length; column++) {
+            statement.setArray(column + 1, statement.getConnection().createArrayOf("text", columns[column]));
+        }
+        statement.setString(5, userId);
+        if (since != null) {
+            statement.setObject(6, since);
+        }
+        return statement;
+    }
+
+    /*
+     * Splits a group's entries into amount bands and returns the bands with a weekly or monthly
+     * cadence. Entries are sorted by size and a band ends at the first amount more than the tolerance
+     * above its smallest, so a subscription whose price rose stays one band while a salary and a bonus
+     * of the same employer do not.
+     */
+    List<RecurringSeries> detect(GroupKey key, List<Occurrence> occurrences) {
+        List<RecurringSeries> found = new ArrayList<>();
+        if (occurrences.size() < minOccurrences) {
+            return found;
+        }
+        List<Occurrence> bySize = new ArrayList<>(occurrences);
+        bySize.sort(Comparator.comparing(occurrence -> occurrence.amount().abs()));
+        BigDecimal widening = BigDecimal.ONE.add(amountTolerance);
+        int start = 0;
+        for (int i = 1; i <= bySize.size(); i++) {
+            if (i == bySize.size()
+                    || bySize.get(i).amount().abs().compareTo(bySize.get(start).amount().abs().multiply(widening)) > 0) {
+                List<Occurrence> band = bySize.subList(start, i);
+                if (band.size() >= minOccurrences) {
+                    RecurringSeries series = series(key, band);
+                    if (series != null) {
+                        found.add(series);
+                    }
+                }
+                start = i;
+            }
+        }
+        return found;
+    }
+
+    // The band as a series, or null if its dates follow neither cadence
+    RecurringSeries series(GroupKey key, List<Occurrence> band) {
+        // Several entries on one day count once towards the cadence
+        List<LocalDate> dates = band.stream().map(Occurrence::date).distinct().sorted().toList();
+        if (dates.size() < minOccurrences) {
+            return null;
+        }
+        for (RecurringSeries.Cadence cadence : RecurringSeries.Cadence.values()) {
+            int regular = 0;
+            for (int i = 1; i < dates.size(); i++) {
+                if (cadence.fits(ChronoUnit.DAYS.between(dates.get(i - 1), dates.get(i)))) {
+                    regular++;
+                }
+            }
+            if (regular >= minOccurrences - 1 && regular >= MIN_REGULAR_SHARE * (dates.size() - 1)) {
+                // The band is sorted by amount, so its middle entry is the median
+                LocalDate last = dates.get(dates.size() - 1);
+                return new RecurringSeries(null, key.assetName(), key.platform(),
+                    Transaction.TransactionType.valueOf(key.type()), key.currency(), cadence,
+                    band.get(band.size() / 2).amount(), band.get(0).amount(), band.get(band.size() - 1).amount(),
+                    band.size(), dates.get(0), last, cadence.after(last));
+            }
+        }
+        return null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,542 @@
+package com.finledger.backend.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.finledger.backend.dto.InvalidRequestException;
+import com.finledger.backend.dto.LotSelectionRequest;
+import com.finledger.backend.dto.RealizedGain;
+import com.finledger.backend.dto.TransactionCsv;
+import com.finledger.backend.entity.Transaction;
+import com.finledger.backend.event.CurrencyConversionChangedEvent;
+import com.finledger.backend.event.LedgerChangedEvent;
+import com.finledger.backend.event.TransactionChange;
+import com.finledger.backend.event.TransactionSnapshot;
+import com.finledger.backend.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.*;
+
+/**
+ * Realized gains per fiscal year, computed by matching every SELL to open BUY lots (FIFO, LIFO or the
+ * user's specific-lot selection) in a single pass over the ledger in date order. As in
+ * {@link HoldingsEngine}, amounts are long cents in the user's base currency, each row converted at
+ * the rate of its date by the query, and quantities long units of 10^-8; rows without a quantity and
+ * TRANSFER rows do not open or close lots. Only the open lots are held in memory, and report lines
+ * are written to the output as sales are matched, so neither grows with the length of the ledger.
+ *
+ * The open lots at each fiscal year start that a replay passes are kept per user and method, so a
+ * report of a later year (typically the current one) resumes from the latest such checkpoint and
+ * reads only the rows since, instead of replaying closed years. A committed write drops the
+ * checkpoints of the years after the earliest date it touched; a base currency or exchange rate
+ * change drops all of the user's. Checkpoint hits and misses are published as {@code cache.*}
+ * metrics tagged {@code cache=tax_lots}.
+ */
+@Service
+public class TaxLotReportService {
+
+    private static final String LEDGER_COLUMNS = "SELECT id, asset_name, type, "
+        + "CAST(fx_convert(amount, currency, ?, date) * 100 AS bigint), CAST(round(quantity * 100000000) AS bigint), date "
+        + "FROM transactions WHERE user_id = ? AND type IN ('BUY', 'SELL') AND quantity > 0 ";
+
+    // The ledger up to the end of the report, from its first row or from a checkpoint
+    public static final String LEDGER_SQL = LEDGER_COLUMNS + "AND date < ? ORDER BY date, id";
+    public static final String LEDGER_FROM_SQL = LEDGER_COLUMNS + "AND date >= ? AND date < ? ORDER BY date, id";
+
+    private static final List<String> CSV_COLUMNS = List.of("fiscalYear", "assetName", "sellTransactionId",
+        "sellDate", "lotTransactionId", "acquiredDate", "holdingDays", "quantity", "proceeds", "costBasis", "gain",
+        "currency");
+
+    private final Cache<String, UserCheckpoints> cache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private FxRates fxRates;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final MonthDay fiscalYearStart;
+
+    @Value("${finledger.tax-lots.fetch-size:5000}")
+    private int fetchSize;
+
+    public TaxLotReportService(
+            @Value("${finledger.tax-lots.fiscal-year-start:01-01}") String fiscalYearStart,
+            @Value("${finledger.tax-lots.max-users:1000}") long maxUsers,
+            @Value("${finledger.tax-lots.ttl:1h}") Duration ttl,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry) {
+        this.fiscalYearStart = MonthDay.parse("--" + fiscalYearStart);
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maxUsers)
+            .expireAfterAccess(ttl)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "tax_lots");
+
+        // PostgreSQL only streams with a fetch size inside a transaction
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    // Fiscal years are named after the calendar year they start in
+    public LocalDate getFiscalYearStart(int fiscalYear) {
+        return fiscalYearStart.atYear(fiscalYear);
+    }
+
+    public void writeCsv(String userId, int fromYear, int toYear, RealizedGain.LotMethod method, Writer out)
+            throws IOException {
+        out.write(String.join(",", CSV_COLUMNS));
+        out.write("\r\n");
+        report(userId, fromYear, toYear, method, gain -> writeCsvRecord(out, gain));
+        out.flush();
+    }
+
+    public void writeNdjson(String userId, int fromYear, int toYear, RealizedGain.LotMethod method, Writer out)
+            throws IOException {
+        boolean[] empty = {true};
+        try (SequenceWriter json = objectMapper.writer()
+                 .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                 .withRootValueSeparator("\n")
+                 .writeValues(out)) {
+            report(userId, fromYear, toYear, method, gain -> {
+                json.write(gain);
+                empty[0] = false;
+            });
+        }
+        if (!empty[0]) {
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    /*
+     * Replaces the lots a SELL disposes of under the SPECIFIC method. Returns false if the user has no
+     * such transaction; throws InvalidRequestException for a selection the sale cannot have made.
+     */
+    @Transactional
+    public boolean setLotSelections(String userId, long sellId, List<LotSelectionRequest.Lot> lots) {
+        List<Sale> sales = jdbcTemplate.query(
+            "SELECT type, asset_name, quantity, date FROM transactions WHERE id = ? AND user_id = ?",
+            (rs, rowNum) -> new Sale(Transaction.TransactionType.valueOf(rs.getString(1)), rs.getString(2),
+                rs.getBigDecimal(3), rs.getObject(4, LocalDate.class)),
+            sellId, userId);
+        if (sales.isEmpty()) {
+            return false;
+        }
+        Sale sale = sales.get(0);
+        if (sale.type() != Transaction.TransactionType.SELL || sale.quantity() == null || sale.quantity().signum() <= 0) {
+            throw new InvalidRequestException("Transaction " + sellId + " is not a SELL with a quantity");
+        }
+
+        Set<Long> lotIds = new HashSet<>();
+        BigDecimal selected = BigDecimal.ZERO;
+        for (LotSelectionRequest.Lot lot : lots) {
+            if (!lotIds.add(lot.transactionId())) {
+                throw new InvalidRequestException("Lot " + lot.transactionId() + " is selected more than once");
+            }
+            // The lot must be a BUY of the same asset that precedes the sale in ledger order
+            Boolean valid = jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM transactions "
+                + "WHERE id = ? AND user_id = ? AND type = 'BUY' AND asset_name = ? AND quantity > 0 "
+                + "AND (date < ? OR (date = ? AND id < ?)))", Boolean.class,
+                lot.transactionId(), userId, sale.assetName(), sale.date(), sale.date(), sellId);
+            if (!Boolean.TRUE.equals(valid)) {
+                throw new InvalidRequestException("Lot " + lot.transactionId()
+                    + " is not an earlier BUY of the asset sold");
+            }
+            selected = selected.add(lot.quantity());
+        }
+        if (selected.compareTo(sale.quantity()) > 0) {
+            throw new InvalidRequestException("Selected lots add up to more than the "
+                + sale.quantity().stripTrailingZeros().toPlainString() + " units sold");
+        }
+
+        jdbcTemplate.update("DELETE FROM tax_lot_selections WHERE user_id = ? AND sell_transaction_id = ?",
+            userId, sellId);
+        List<Object[]> rows = new ArrayList<>(lots.size());
+        for (LotSelectionRequest.Lot lot : lots) {
+            rows.add(new Object[] {userId, sellId, lot.transactionId(), lot.quantity()});
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO tax_lot_selections (user_id, sell_transaction_id, "
+                + "lot_transaction_id, quantity) VALUES (?, ?, ?, ?)", rows);
+        }
+
+        // After commit, so a concurrent report cannot store checkpoints made with the old selection
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                UserCheckpoints checkpoints = cache.asMap().get(userId);
+                if (checkpoints != null) {
+                    checkpoints.invalidateAfter(sale.date());
+                }
+            }
+        });
+        return true;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onLedgerChanged(LedgerChangedEvent event) {
+        UserCheckpoints checkpoints = cache.asMap().get(event.userId());
+        if (checkpoints == null) {
+            return;
+        }
+        LocalDate earliest = null;
+        for (TransactionChange change : event.changes()) {
+            for (TransactionSnapshot row : Arrays.asList(change.before(), change.after())) {
+                if (row != null && opensOrClosesLots(row) && (earliest == null || row.date().isBefore(earliest))) {
+                    earliest = row.date();
+                }
+            }
+        }
+        if (earliest != null) {
+            checkpoints.invalidateAfter(earliest);
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onConversionChanged(CurrencyConversionChangedEvent event) {
+        cache.invalidate(event.userId());
+    }
+
+    private static boolean opensOrClosesLots(TransactionSnapshot row) {
+        return row.type() != Transaction.TransactionType.TRANSFER && row.quantity() != null && row.quantity().signum() > 0;
+    }
+
+    private int fiscalYearOf(LocalDate date) {
+        return date.isBefore(getFiscalYearStart(date.getYear())) ? date.getYear() - 1 : date.getYear();
+    }
+
+    private void report(String userId, int fromYear, int toYear, RealizedGain.LotMethod method, GainSink sink)
+            throws IOException {
+        LocalDate from = getFiscalYearStart(fromYear);
+        LocalDate to = getFiscalYearStart(toYear + 1);
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                String baseCurrency = userRepository.findBaseCurrencyById(userId).orElseGet(fxRates::getDefaultCurrency);
+                UserCheckpoints checkpoints = cache.get(userId, id -> new UserCheckpoints(baseCurrency));
+                if (!checkpoints.baseCurrency.equals(baseCurrency)) {
+                    checkpoints = new UserCheckpoints(baseCurrency);
+                    cache.put(userId, checkpoints);
+                }
+                long generation = checkpoints.generation();
+                Map.Entry<LocalDate, LotBook> start = checkpoints.latest(method, from);
+
+                Replay replay = new Replay(start == null ? new LotBook() : start.getValue().copy(), method,
+                    method == RealizedGain.LotMethod.SPECIFIC ? loadSelections(userId) : Map.of(),
+                    baseCurrency, from, sink);
+                if (start != null) {
+                    replay.nextBoundary = getFiscalYearStart(fiscalYearOf(start.getKey()) + 1);
+                }
+                jdbcTemplate.query(
+                    connection -> {
+                        PreparedStatement statement = connection.prepareStatement(start == null ? LEDGER_SQL : LEDGER_FROM_SQL);
+                        statement.setFetchSize(fetchSize);
+                        int index = 1;
+                        statement.setString(index++, baseCurrency);
+                        statement.setString(index++, userId);
+                        if (start != null) {
+                            statement.setObject(index++, start.getKey());
+                        }
+                        statement.setObject(index, to);
+                        return statement;
+                    },
+                    rs -> {
+                        long amount = rs.getLong(4);
+                        if (rs.wasNull()) {
+                            throw new IllegalStateException("No exchange rate to convert transaction " + rs.getLong(1)
+                                + " to " + baseCurrency);
+                        }
+                        replay.apply(rs.getLong(1), rs.getString(2), Transaction.TransactionType.valueOf(rs.getString(3)),
+                            amount, rs.getLong(5), rs.getObject(6, LocalDate.class));
+                    });
+                replay.checkpointUpTo(to);
+                checkpoints.store(method, generation, replay.checkpoints);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Units selected per SELL id, as {lot id, units} pairs in lot id order
+    private Map<Long, List<long[]>> loadSelections(String userId) {
+        Map<Long, List<long[]>> selections = new HashMap<>();
+        jdbcTemplate.query("SELECT sell_transaction_id, lot_transaction_id, CAST(round(quantity * 100000000) AS bigint) "
+            + "FROM tax_lot_selections WHERE user_id = ? ORDER BY sell_transaction_id, lot_transaction_id", rs -> {
+                selections.computeIfAbsent(rs.getLong(1), id -> new ArrayList<>())
+                    .add(new long[] {rs.getLong(2), rs.getLong(3)});
+            }, userId);
+        return selections;
+    }
+
+    private static void writeCsvRecord(Writer out, RealizedGain gain) throws IOException {
+        out.write(String.valueOf(gain.fiscalYear()));
+        out.write(',');
+        TransactionCsv.writeField(out, gain.assetName());
+        out.write(',');
+        out.write(String.valueOf(gain.sellTransactionId()));
+        out.write(',');
+        out.write(gain.sellDate().toString());
+        out.write(',');
+        if (gain.lotTransactionId() != null) {
+            out.write(String.valueOf(gain.lotTransactionId()));
+            out.write(',');
+            out.write(gain.acquiredDate().toString());
+            out.write(',');
+            out.write(String.valueOf(gain.holdingDays()));
+        } else {
+            out.write(",,");
+        }
+        out.write(',');
+        out.write(gain.quantity().toPlainString());
+        out.write(',');
+        out.write(gain.proceeds().toPlainString());
+        out.write(',');
+        out.write(gain.costBasis().toPlainString());
+        out.write(',');
+        out.write(gain.gain().toPlainString());
+        out.write(',');
+        out.write(gain.currency());
+        out.write("\r\n");
+    }
+
+    private record Sale(Transaction.TransactionType type, String assetName, BigDecimal quantity, LocalDate date) {}
+
+    @FunctionalInterface
+    private interface GainSink {
+        void accept(RealizedGain gain) throws IOException;
+    }
+
+    // One pass over the ledger: lot matching, report lines for sales from the report's start, and checkpoints
+    private final class Replay {
+        private final LotBook book;
+        private final RealizedGain.LotMethod method;
+        private final Map<Long, List<long[]>> selections;
+        private final String baseCurrency;
+        private final LocalDate from;
+        private final GainSink sink;
+        private final Map<LocalDate, LotBook> checkpoints = new HashMap<>();
+        // Next fiscal year start to checkpoint; null until the first row when replaying from the beginning
+        private LocalDate nextBoundary;
+
+        Replay(LotBook book, RealizedGain.LotMethod method, Map<Long, List<long[]>> selections,
+               String baseCurrency, LocalDate from, GainSink sink) {
+            this.book = book;
+            this.method = method;
+            this.selections = selections;
+            this.baseCurrency = baseCurrency;
+            this.from = from;
+            this.sink = sink;
+        }
+
+        void apply(long id, String assetName, Transaction.TransactionType type, long amountCents, long units,
+                   LocalDate date) {
+            if (nextBoundary == null) {
+                nextBoundary = getFiscalYearStart(fiscalYearOf(date) + 1);
+            }
+            checkpointUpTo(date);
+            if (type == Transaction.TransactionType.BUY) {
+                book.buy(assetName, new Lot(id, date.toEpochDay(), units, amountCents));
+                return;
+            }
+            List<Match> matches = book.sell(assetName, units, method, selections.get(id));
+            if (date.isBefore(from)) {
+                return;
+            }
+            int fiscalYear = fiscalYearOf(date);
+            long allocated = 0;
+            for (int i = 0; i < matches.size(); i++) {
+                Match match = matches.get(i);
+                // Proceeds are split by units, with the rounding remainder on the last line
+                long proceeds = i == matches.size() - 1
+                    ? amountCents - allocated
+                    : HoldingsEngine.prorate(amountCents, match.units(), units);
+                allocated += proceeds;
+                emit(new RealizedGain(fiscalYear, assetName, id, date, match.lotId(),
+                    match.lotId() == null ? null : LocalDate.ofEpochDay(match.acquiredEpochDay()),
+                    match.lotId() == null ? null : date.toEpochDay() - match.acquiredEpochDay(),
+                    BigDecimal.valueOf(match.units(), 8), BigDecimal.valueOf(proceeds, 2),
+                    BigDecimal.valueOf(match.cost(), 2), BigDecimal.valueOf(proceeds - match.cost(), 2),
+                    baseCurrency));
+            }
+        }
+
+        // Records the open lots at every fiscal year start up to date; all rows before date have been applied
+        void checkpointUpTo(LocalDate date) {
+            LotBook snapshot = null;
+            while (nextBoundary != null && !date.isBefore(nextBoundary) && !nextBoundary.isAfter(LocalDate.now())) {
+                if (snapshot == null) {
+                    snapshot = book.copy();
+                }
+                // Years without rows share one snapshot; checkpoints are never modified
+                checkpoints.put(nextBoundary, snapshot);
+                nextBoundary = getFiscalYearStart(fiscalYearOf(nextBoundary) + 1);
+            }
+        }
+
+        private void emit(RealizedGain gain) {
+            try {
+                sink.accept(gain);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    record Match(Long lotId, long acquiredEpochDay, long units, long cost) {}
+
+    static final class Lot {
+        private final long id;
+        private final long epochDay;
+        private long units;
+        private long cost;
+
+        Lot(long id, long epochDay, long units, long cost) {
+            this.id = id;
+            this.epochDay = epochDay;
+            this.units = units;
+            this.cost = cost;
+        }
+
+        // Removes units from the lot and returns the match, with the lot's cost prorated
+        Match take(long taken) {
+            long released = taken == units ? cost : HoldingsEngine.prorate(cost, taken, units);
+            units -= taken;
+            cost -= released;
+            return new Match(id, epochDay, taken, released);
+        }
+    }
+
+    // Open lots per asset in ledger order, oldest at the head
+    static final class LotBook {
+        private final Map<String, ArrayDeque<Lot>> lots = new HashMap<>();
+
+        LotBook copy() {
+            LotBook copy = new LotBook();
+            lots.forEach((assetName, open) -> {
+                ArrayDeque<Lot> copied = new ArrayDeque<>(open.size());
+                for (Lot lot : open) {
+                    copied.addLast(new Lot(lot.id, lot.epochDay, lot.units, lot.cost));
+                }
+                copy.lots.put(assetName, copied);
+            });
+            return copy;
+        }
+
+        void buy(String assetName, Lot lot) {
+            lots.computeIfAbsent(assetName, name -> new ArrayDeque<>()).addLast(lot);
+        }
+
+        /*
+         * Consumes the units of a sale: first the selected lots that are still open, then the oldest
+         * (newest for LIFO) lots. Units beyond the open lots are returned as one match without a lot
+         * and with zero cost.
+         */
+        List<Match> sell(String assetName, long units, RealizedGain.LotMethod method, List<long[]> selected) {
+            List<Match> matches = new ArrayList<>();
+            long remaining = units;
+            ArrayDeque<Lot> open = lots.get(assetName);
+            if (open != null) {
+                if (selected != null) {
+                    for (long[] selection : selected) {
+                        for (Iterator<Lot> it = open.iterator(); remaining > 0 && it.hasNext(); ) {
+                            Lot lot = it.next();
+                            if (lot.id == selection[0]) {
+                                Match match = lot.take(Math.min(Math.min(selection[1], lot.units), remaining));
+                                matches.add(match);
+                                remaining -= match.units();
+                                if (lot.units == 0) {
+                                    it.remove();
+                                }
+                                break;
+                            }
+                        }
+                    }
+                }
+                Iterator<Lot> it = method == RealizedGain.LotMethod.LIFO ? open.descendingIterator() : open.iterator();
+                while (remaining > 0 && it.hasNext()) {
+                    Lot lot = it.next();
+                    Match match = lot.take(Math.min(lot.units, remaining));
+                    matches.add(match);
+                    remaining -= match.units();
+                    if (lot.units == 0) {
+                        it.remove();
+                    }
+                }
+                if (open.isEmpty()) {
+                    lots.remove(assetName);
+                }
+            }
+            if (remaining > 0) {
+                matches.add(new Match(null, 0, remaining, 0));
+            }
+            return matches;
+        }
+    }
+
+    // Fiscal year start checkpoints of one user, per method, in one base currency
+    static final class UserCheckpoints {
+        private final String baseCurrency;
+        private final Map<RealizedGain.LotMethod, TreeMap<LocalDate, LotBook>> byMethod =
+            new EnumMap<>(RealizedGain.LotMethod.class);
+        // Bumped by every invalidation, so a replay that read older data does not store its checkpoints
+        private long generation;
+
+        UserCheckpoints(String baseCurrency) {
+            this.baseCurrency = baseCurrency;
+        }
+
+        synchronized long generation() {
+            return generation;
+        }
+
+        synchronized Map.Entry<LocalDate, LotBook> latest(RealizedGain.LotMethod method, LocalDate onOrBefore) {
+            TreeMap<LocalDate, LotBook> books = byMethod.get(method);
+            return books == null ? null : books.floorEntry(onOrBefore);
+        }
+
+        synchronized void store(RealizedGain.LotMethod method, long expectedGeneration, Map<LocalDate, LotBook> books) {
+            if (generation == expectedGeneration && !books.isEmpty()) {
+                byMethod.computeIfAbsent(method, m -> new TreeMap<>()).putAll(books);
+            }
+        }
+
+        // A change on a date is part of the lots at every later fiscal year start
+        synchronized void invalidateAfter(LocalDate date) {
+            generation++;
+            for (TreeMap<LocalDate, LotBook> books : byMethod.values()) {
+                books.tailMap(date, false).clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.finledger.backend.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.finledger.backend.dto.TransactionCsv;
+import com.finledger.backend.dto.TransactionView;
+import com.finledger.backend.repository.TransactionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes a user's full ledger to a response stream, oldest first. Rows come from a forward-only
+ * JDBC cursor as read-only projections that never enter the persistence context, so memory use
+ * stays flat no matter how long the ledger is.
+ */
+@Service
+public class TransactionExportService {
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Transactional(readOnly = true)
+    public void exportCsv(String userId, Writer out) throws IOException {
+        TransactionCsv.writeHeader(out);
+        try (Stream<TransactionView> rows = transactionRepository.streamByUserId(userId)) {
+            Iterator<TransactionView> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                TransactionCsv.writeRecord(out, iterator.next());
+            }
+        }
+        out.flush();
+    }
+
+    @Transactional(readOnly = true)
+    public void exportNdjson(String userId, Writer out) throws IOException {
+        boolean empty = true;
+        try (Stream<TransactionView> rows = transactionRepository.streamByUserId(userId);
+             SequenceWriter json = objectMapper.writer()
+                 .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                 .withRootValueSeparator("\n")
+                 .writeValues(out)) {
+            Iterator<TransactionView> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                json.write(iterator.next());
+                empty = false;
+            }
+        }
+        if (!empty) {
+            out.write('\n');
+        }
+        out.flush();
+    }
+}
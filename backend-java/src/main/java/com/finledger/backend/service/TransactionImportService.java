@@ -0,0 +1,274 @@
+package com.finledger.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.finledger.backend.dto.InvalidRequestException;
+import com.finledger.backend.dto.TransactionCsv;
+import com.finledger.backend.dto.TransactionDto;
+import com.finledger.backend.entity.Transaction;
+import com.finledger.backend.event.LedgerChangedEvent;
+import com.finledger.backend.event.TransactionChange;
+import com.finledger.backend.event.TransactionSnapshot;
+import com.finledger.backend.repository.UserRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Streams CSV or NDJSON ledger files into the transactions table. Rows are parsed and validated
+ * one at a time against the {@link TransactionDto.CreateRequest} constraints and written with
+ * JDBC batch inserts, one database transaction per batch. Invalid rows are reported by line
+ * number and skipped; they never abort the rest of the load.
+ */
+@Service
+public class TransactionImportService {
+
+    private static final String INSERT_SQL =
+        "INSERT INTO transactions (user_id, platform, category, type, asset_name, amount, currency, quantity, date, " +
+        "notes, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private FxRates fxRates;
+
+    @Value("${finledger.import.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${finledger.import.max-reported-errors:1000}")
+    private int maxReportedErrors;
+
+    public TransactionDto.ImportResult importCsv(String userId, InputStream in) throws IOException {
+        ImportRun run = new ImportRun(userId);
+        TransactionCsv.RecordReader reader =
+            new TransactionCsv.RecordReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+
+        Map<String, Integer> columns;
+        try {
+            List<String> header = reader.next();
+            if (header == null) {
+                return run.finish();
+            }
+            columns = TransactionCsv.parseHeader(header);
+        } catch (IllegalArgumentException e) {
+            run.reject(reader.getRecordLine(), e.getMessage());
+            return run.finish();
+        }
+
+        while (true) {
+            List<String> record;
+            try {
+                record = reader.next();
+            } catch (IllegalArgumentException e) {
+                // An unterminated quote runs to the end of the input, so nothing is left to read
+                run.reject(reader.getRecordLine(), e.getMessage());
+                break;
+            }
+            if (record == null) {
+                break;
+            }
+            try {
+                run.accept(reader.getRecordLine(), TransactionCsv.toCreateRequest(columns, record));
+            } catch (IllegalArgumentException e) {
+                run.reject(reader.getRecordLine(), e.getMessage());
+            }
+        }
+        return run.finish();
+    }
+
+    public TransactionDto.ImportResult importNdjson(String userId, InputStream in) throws IOException {
+        ImportRun run = new ImportRun(userId);
+        ObjectReader reader = objectMapper.readerFor(TransactionDto.CreateRequest.class);
+        BufferedReader lines = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+
+        String line;
+        int lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                run.accept(lineNumber, reader.readValue(line));
+            } catch (JsonProcessingException e) {
+                run.reject(lineNumber, "Malformed JSON: " + e.getOriginalMessage());
+            }
+        }
+        return run.finish();
+    }
+
+    // defaultCurrency: the row named no currency and gets the user's base currency when inserted
+    private record PendingRow(int line, Transaction transaction, boolean defaultCurrency) {}
+
+    private class ImportRun {
+        private final String userId;
+        // Base currency when the import started, to reject unconvertible rows early; inserts read it again
+        private final String baseCurrency;
+        private final TransactionDto.ImportResult result = new TransactionDto.ImportResult();
+        private final List<PendingRow> batch = new ArrayList<>();
+
+        ImportRun(String userId) {
+            this.userId = userId;
+            this.baseCurrency = userRepository.findBaseCurrencyById(userId).orElseGet(fxRates::getDefaultCurrency);
+        }
+
+        void accept(int line, TransactionDto.CreateRequest request) {
+            var violations = validator.validate(request);
+            if (!violations.isEmpty()) {
+                reject(line, violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+                return;
+            }
+            Transaction transaction = new Transaction(userId, request.getPlatform(), request.getCategory(),
+                request.getType(), request.getAssetName(), request.getAmount(), request.getQuantity(),
+                request.getDate(), request.getNotes());
+            transaction.setCurrency(request.getCurrency());
+            if (request.getCurrency() != null && !fxRates.canConvert(request.getCurrency(), baseCurrency)) {
+                reject(line, "No exchange rates loaded to convert " + request.getCurrency() + " to " + baseCurrency);
+                return;
+            }
+            batch.add(new PendingRow(line, transaction, request.getCurrency() == null));
+            if (batch.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        void reject(int line, String message) {
+            result.setFailed(result.getFailed() + 1);
+            if (result.getErrors().size() < maxReportedErrors) {
+                result.getErrors().add(new TransactionDto.ImportError(line, message));
+            } else {
+                result.setErrorsTruncated(true);
+            }
+        }
+
+        TransactionDto.ImportResult finish() {
+            flush();
+            return result;
+        }
+
+        private void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                insert(batch);
+                result.setImported(result.getImported() + batch.size());
+            } catch (DataAccessException | InvalidRequestException e) {
+                // Retry row by row so one bad row only rejects itself
+                for (PendingRow row : batch) {
+                    try {
+                        insert(List.of(row));
+                        result.setImported(result.getImported() + 1);
+                    } catch (DataAccessException rowError) {
+                        reject(row.line(), rowError.getMostSpecificCause().getMessage());
+                    } catch (InvalidRequestException rowError) {
+                        reject(row.line(), rowError.getMessage());
+                    }
+                }
+            }
+            batch.clear();
+        }
+
+        private void insert(List<PendingRow> rows) {
+            transactionTemplate.executeWithoutResult(status -> {
+                // Read in the write transaction, so a base currency change during the import is honoured
+                String currentBase = userRepository.findBaseCurrencyById(userId).orElseGet(fxRates::getDefaultCurrency);
+                for (PendingRow row : rows) {
+                    if (row.defaultCurrency()) {
+                        row.transaction().setCurrency(currentBase);
+                    } else {
+                        fxRates.requireConvertible(row.transaction().getCurrency(), currentBase);
+                    }
+                }
+                insertBatch(rows);
+                List<TransactionChange> changes = new ArrayList<>(rows.size());
+                for (PendingRow row : rows) {
+                    changes.add(TransactionChange.created(TransactionSnapshot.of(row.transaction())));
+                }
+                eventPublisher.publishEvent(new LedgerChangedEvent(userId, changes));
+            });
+        }
+    }
+
+    private void insertBatch(List<PendingRow> rows) {
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL, new String[] {"id"})) {
+                for (PendingRow row : rows) {
+                    Transaction t = row.transaction();
+                    t.setCreatedAt(now);
+                    t.setUpdatedAt(now);
+                    statement.setString(1, t.getUserId());
+                    statement.setString(2, t.getPlatform());
+                    statement.setString(3, t.getCategory());
+                    statement.setString(4, t.getType().name());
+                    statement.setString(5, t.getAssetName());
+                    statement.setBigDecimal(6, t.getAmount());
+                    statement.setString(7, t.getCurrency());
+                    if (t.getQuantity() != null) {
+                        statement.setBigDecimal(8, t.getQuantity());
+                    } else {
+                        statement.setNull(8, Types.NUMERIC);
+                    }
+                    statement.setDate(9, Date.valueOf(t.getDate()));
+                    statement.setString(10, t.getNotes());
+                    statement.setTimestamp(11, Timestamp.valueOf(now));
+                    statement.setTimestamp(12, Timestamp.valueOf(now));
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    for (PendingRow row : rows) {
+                        if (keys.next()) {
+                            row.transaction().setId(keys.getLong(1));
+                        }
+                    }
+                }
+            }
+            return null;
+        });
+    }
+}
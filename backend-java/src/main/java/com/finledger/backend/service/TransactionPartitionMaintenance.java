@@ -0,0 +1,41 @@
+package com.finledger.backend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+
+/**
+ * Keeps the yearly partitions of the transactions table (db/migration/V1__baseline_schema.sql) ahead
+ * of the calendar, so new rows never pile up in the default partition. Rows that do land there
+ * (back-dated imports, far-future dates) are moved into a partition of their own on the next run.
+ */
+@Service
+public class TransactionPartitionMaintenance {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionPartitionMaintenance.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${finledger.partitions.years-ahead:2}")
+    private int yearsAhead;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${finledger.partitions.cron:0 0 4 * * *}")
+    public void ensurePartitions() {
+        int year = LocalDate.now().getYear();
+        Integer created = jdbcTemplate.queryForObject("SELECT ensure_transaction_partitions(?, ?)",
+            Integer.class, year, year + yearsAhead);
+        if (created != null && created > 0) {
+            log.info("Created {} transactions partitions (through {})", created, year + yearsAhead);
+        }
+    }
+}
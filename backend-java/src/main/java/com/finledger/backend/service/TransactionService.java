@@ -1,15 +1,41 @@
 package com.finledger.backend.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.finledger.backend.dto.CategoryAnalytics;
+import com.finledger.backend.dto.InvalidRequestException;
+import com.finledger.backend.dto.MonthlyTrend;
+import com.finledger.backend.dto.PortfolioMetrics;
+import com.finledger.backend.dto.TransactionCursor;
 import com.finledger.backend.dto.TransactionDto;
+import com.finledger.backend.dto.TransactionEvent;
+import com.finledger.backend.dto.TransactionFilter;
+import com.finledger.backend.dto.TransactionView;
+import com.finledger.backend.entity.PortfolioSummary;
 import com.finledger.backend.entity.Transaction;
+import com.finledger.backend.event.LedgerChangedEvent;
+import com.finledger.backend.event.TransactionChange;
+import com.finledger.backend.event.TransactionSnapshot;
 import com.finledger.backend.repository.TransactionRepository;
+import com.finledger.backend.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.OffsetDateTime;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
@@ -17,126 +43,232 @@ import java.util.*;
 @Service
 public class TransactionService {
     
+    private static final DateTimeFormatter MONTH_FORMATTER = DateTimeFormatter.ofPattern("MMM yyyy");
+    
+    // Conditional writes without a client version that keep losing to concurrent edits give up after this
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+    
     @Autowired
     private TransactionRepository transactionRepository;
     
-    public Page<Transaction> getTransactions(String userId, Pageable pageable) {
-        return transactionRepository.findByUserIdOrderByDateDesc(userId, pageable);
+    @Autowired
+    private PortfolioSummaryService portfolioSummaryService;
+    
+    @Autowired
+    private AnalyticsCache analyticsCache;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Autowired
+    private LedgerJournal ledgerJournal;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private FxRates fxRates;
+    
+    @Value("${finledger.idempotency.ttl:24h}")
+    private Duration idempotencyKeyTtl;
+    
+    // Reads return TransactionView projections, so no entities are loaded into the persistence context
+    @Transactional(readOnly = true)
+    public Page<TransactionView> getTransactions(String userId, TransactionFilter filter, Pageable pageable) {
+        return transactionRepository.findByFilter(userId, filter, pageable);
     }
     
-    public Page<Transaction> getTransactionsByCategory(String userId, String category, Pageable pageable) {
-        return transactionRepository.findByUserIdAndCategoryContainingIgnoreCaseOrderByDateDesc(userId, category, pageable);
+    @Transactional(readOnly = true)
+    public Slice<TransactionView> getTransactionsAfter(String userId, TransactionFilter filter, TransactionCursor cursor,
+                                                       boolean ascending, int limit) {
+        return transactionRepository.findByFilterAfter(userId, filter, cursor, ascending, limit);
     }
     
-    public Page<Transaction> getTransactionsByPlatform(String userId, String platform, Pageable pageable) {
-        return transactionRepository.findByUserIdAndPlatformContainingIgnoreCaseOrderByDateDesc(userId, platform, pageable);
+    // Best matches first across asset name, category, platform and notes, narrowed by the filter
+    @Transactional(readOnly = true)
+    public Slice<TransactionView> searchTransactionsRanked(String userId, String query, TransactionFilter filter,
+                                                           Pageable pageable) {
+        return transactionRepository.searchRanked(userId, query, filter, pageable);
     }
     
-    public Page<Transaction> searchTransactions(String userId, String search, Pageable pageable) {
-        return transactionRepository.findByUserIdAndAssetNameContainingIgnoreCaseOrderByDateDesc(userId, search, pageable);
+    @Transactional(readOnly = true)
+    public Optional<TransactionView> getTransaction(Long id, String userId) {
+        return transactionRepository.findViewByIdAndUserId(id, userId);
     }
     
-    public Optional<Transaction> getTransaction(Long id, String userId) {
-        return transactionRepository.findByIdAndUserId(id, userId);
+    // Every journaled write to the transaction, including a deletion; empty for unknown ids
+    public List<TransactionEvent> getTransactionHistory(Long id, String userId) {
+        return ledgerJournal.findHistory(userId, id);
     }
     
-    public Transaction createTransaction(String userId, TransactionDto.CreateRequest request) {
-        Transaction transaction = new Transaction(
-            userId,
-            request.getPlatform(),
-            request.getCategory(),
-            request.getType(),
-            request.getAssetName(),
-            request.getAmount(),
-            request.getQuantity(),
-            request.getDate(),
-            request.getNotes()
-        );
-        return transactionRepository.save(transaction);
+    @Transactional
+    public TransactionView createTransaction(String userId, TransactionDto.CreateRequest request) {
+        resolveCurrency(userId, request);
+        TransactionView created = transactionRepository.insert(userId, request);
+        eventPublisher.publishEvent(LedgerChangedEvent.of(userId,
+            TransactionChange.created(TransactionSnapshot.of(userId, created))));
+        return created;
     }
     
-    public Optional<Transaction> updateTransaction(Long id, String userId, TransactionDto.CreateRequest request) {
-        Optional<Transaction> existingTransaction = transactionRepository.findByIdAndUserId(id, userId);
-        
-        if (existingTransaction.isPresent()) {
-            Transaction transaction = existingTransaction.get();
-            transaction.setPlatform(request.getPlatform());
-            transaction.setCategory(request.getCategory());
-            transaction.setType(request.getType());
-            transaction.setAssetName(request.getAssetName());
-            transaction.setAmount(request.getAmount());
-            transaction.setQuantity(request.getQuantity());
-            transaction.setDate(request.getDate());
-            transaction.setNotes(request.getNotes());
-            return Optional.of(transactionRepository.save(transaction));
+    /*
+     * Create with a client Idempotency-Key: the first request with the key inserts, and retries get that
+     * same transaction back without writing. Reusing a key for a different request is rejected. Empty if
+     * the transaction the key created has since been deleted.
+     */
+    @Transactional
+    public Optional<TransactionView> createTransaction(String userId, TransactionDto.CreateRequest request,
+                                                      String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return Optional.of(createTransaction(userId, request));
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > 255) {
+            throw new InvalidRequestException("Idempotency-Key must be 1 to 255 characters");
+        }
+        // Hashed as sent, so a retry still matches if the base currency filled in has changed since
+        String requestHash = requestHash(request);
+        resolveCurrency(userId, request);
+        Optional<TransactionView> created = transactionRepository.insertWithIdempotencyKey(
+            userId, idempotencyKey, requestHash, request);
+        if (created.isPresent()) {
+            eventPublisher.publishEvent(LedgerChangedEvent.of(userId,
+                TransactionChange.created(TransactionSnapshot.of(userId, created.get()))));
+            return created;
         }
         
-        return Optional.empty();
+        TransactionRepository.IdempotencyRecord previous = transactionRepository.findIdempotencyKey(userId, idempotencyKey)
+            .orElseThrow(() -> new IllegalStateException("Idempotency-Key " + idempotencyKey + " vanished"));
+        if (!previous.requestHash().equals(requestHash)) {
+            throw new InvalidRequestException("Idempotency-Key was already used for a different request");
+        }
+        return Optional.ofNullable(previous.transaction());
     }
     
-    public boolean deleteTransaction(Long id, String userId) {
-        Optional<Transaction> transaction = transactionRepository.findByIdAndUserId(id, userId);
-        if (transaction.isPresent()) {
-            transactionRepository.delete(transaction.get());
-            return true;
+    /*
+     * Single-statement update. With an expected version (the client's If-Match) a concurrent edit makes it
+     * fail with OptimisticLockingFailureException instead of being overwritten; without one the update
+     * is retried against the latest row, and fails with ConcurrencyFailureException once the attempts run out.
+     */
+    @Transactional
+    public Optional<TransactionView> updateTransaction(Long id, String userId, TransactionDto.CreateRequest request,
+                                                      Long expectedVersion) {
+        if (request.getCurrency() != null) {
+            fxRates.requireConvertible(request.getCurrency(), baseCurrency(userId));
+        }
+        for (int attempt = 1; ; attempt++) {
+            Optional<TransactionRepository.ConditionalWrite> write =
+                transactionRepository.updateIfVersion(id, userId, request, expectedVersion);
+            if (write.isEmpty()) {
+                return Optional.empty();
+            }
+            if (write.get().applied()) {
+                TransactionView updated = write.get().after();
+                eventPublisher.publishEvent(LedgerChangedEvent.of(userId, TransactionChange.updated(
+                    TransactionSnapshot.of(userId, write.get().before()), TransactionSnapshot.of(userId, updated))));
+                return Optional.of(updated);
+            }
+            checkRetry(write.get(), expectedVersion, attempt);
         }
-        return false;
     }
     
-    public Map<String, Object> getPortfolioMetrics(String userId) {
-        long transactionCount = transactionRepository.countByUserId(userId);
-        
-        BigDecimal totalInvestments = transactionRepository.sumInvestmentsByUserId(userId);
-        if (totalInvestments == null) totalInvestments = BigDecimal.ZERO;
-        
-        LocalDate monthStart = LocalDate.now().withDayOfMonth(1);
-        BigDecimal monthlySpending = transactionRepository.sumMonthlySpendingByUserId(userId, monthStart);
-        if (monthlySpending == null) monthlySpending = BigDecimal.ZERO;
-        
-        Map<String, Object> metrics = new HashMap<>();
-        metrics.put("totalPortfolio", totalInvestments);
-        metrics.put("monthlySpending", monthlySpending);
-        metrics.put("totalInvestments", totalInvestments);
-        metrics.put("transactionCount", transactionCount);
-        
-        return metrics;
+    @Transactional
+    public boolean deleteTransaction(Long id, String userId, Long expectedVersion) {
+        for (int attempt = 1; ; attempt++) {
+            Optional<TransactionRepository.ConditionalWrite> write =
+                transactionRepository.deleteIfVersion(id, userId, expectedVersion);
+            if (write.isEmpty()) {
+                return false;
+            }
+            if (write.get().applied()) {
+                eventPublisher.publishEvent(LedgerChangedEvent.of(userId,
+                    TransactionChange.deleted(TransactionSnapshot.of(userId, write.get().before()))));
+                return true;
+            }
+            checkRetry(write.get(), expectedVersion, attempt);
+        }
     }
     
-    public List<Map<String, Object>> getCategoryAnalytics(String userId) {
-        List<Object[]> results = transactionRepository.findCategoryAnalyticsByUserId(userId);
-        List<Map<String, Object>> analytics = new ArrayList<>();
-        
-        for (Object[] result : results) {
-            Map<String, Object> categoryData = new HashMap<>();
-            categoryData.put("category", result[0]);
-            categoryData.put("total", result[1]);
-            categoryData.put("count", result[2]);
-            analytics.add(categoryData);
+    @Scheduled(cron = "${finledger.idempotency.purge-cron:0 15 * * * *}")
+    public void purgeIdempotencyKeys() {
+        transactionRepository.deleteIdempotencyKeysBefore(OffsetDateTime.now().minus(idempotencyKeyTtl));
+    }
+    
+    /*
+     * A write that did not apply either did not match the client's version (OptimisticLockingFailureException)
+     * or lost to concurrent edits; without a client version it is retried, and gives up with a plain
+     * ConcurrencyFailureException, since the client set no precondition that could have failed.
+     */
+    private static void checkRetry(TransactionRepository.ConditionalWrite write, Long expectedVersion, int attempt) {
+        TransactionView current = write.before();
+        if (expectedVersion != null && !expectedVersion.equals(current.version())) {
+            throw new OptimisticLockingFailureException("Transaction " + current.id() + " is at version "
+                + current.version() + ", not " + expectedVersion);
         }
-        
-        return analytics;
+        if (attempt >= MAX_WRITE_ATTEMPTS) {
+            throw new ConcurrencyFailureException("Transaction " + current.id() + " is being modified concurrently");
+        }
+    }
+    
+    // A create without a currency is in the user's base currency; any other must be convertible to it
+    private void resolveCurrency(String userId, TransactionDto.CreateRequest request) {
+        String baseCurrency = baseCurrency(userId);
+        if (request.getCurrency() == null) {
+            request.setCurrency(baseCurrency);
+        } else {
+            fxRates.requireConvertible(request.getCurrency(), baseCurrency);
+        }
+    }
+    
+    // Read from the row in the write transaction, not the profile cache, so a change committed by any instance is seen
+    private String baseCurrency(String userId) {
+        return userRepository.findBaseCurrencyById(userId).orElseGet(fxRates::getDefaultCurrency);
     }
     
-    public List<Map<String, Object>> getMonthlyTrends(String userId, int months) {
-        LocalDate startDate = LocalDate.now().minusMonths(months);
-        List<Object[]> results = transactionRepository.findMonthlyTrendsByUserId(userId, startDate);
-        List<Map<String, Object>> trends = new ArrayList<>();
+    private String requestHash(TransactionDto.CreateRequest request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    // Analytics views are served from AnalyticsCache and recomputed after the user's next write
+    public PortfolioMetrics getPortfolioMetrics(String userId) {
+        return analyticsCache.get(userId, "metrics", () -> computePortfolioMetrics(userId));
+    }
+    
+    public List<CategoryAnalytics> getCategoryAnalytics(String userId) {
+        return analyticsCache.get(userId, "categories", () -> List.copyOf(portfolioSummaryService.getCategoryTotals(userId)));
+    }
+    
+    public List<MonthlyTrend> getMonthlyTrends(String userId, int months) {
+        return analyticsCache.get(userId, "trends:" + months, () -> computeMonthlyTrends(userId, months));
+    }
+    
+    private PortfolioMetrics computePortfolioMetrics(String userId) {
+        PortfolioSummary summary = portfolioSummaryService.getSummary(userId);
+        BigDecimal totalInvestments = summary.getTotalInvestments();
         
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MMM yyyy");
+        BigDecimal monthlySpending = portfolioSummaryService.sumAmountSince(userId, YearMonth.now());
+        
+        return new PortfolioMetrics(totalInvestments, monthlySpending, totalInvestments, summary.getTransactionCount());
+    }
+    
+    private List<MonthlyTrend> computeMonthlyTrends(String userId, int months) {
+        // The current month and the whole months before it; the rollups cannot start mid-month
+        List<Object[]> results = portfolioSummaryService.getMonthlyTotals(userId, YearMonth.now().minusMonths(months));
+        List<MonthlyTrend> trends = new ArrayList<>(results.size());
         
         for (Object[] result : results) {
-            Map<String, Object> trend = new HashMap<>();
-            
-            Integer month = ((Number) result[0]).intValue();
-            Integer year = ((Number) result[1]).intValue();
-            YearMonth yearMonth = YearMonth.of(year, month);
-            
-            trend.put("month", yearMonth.format(formatter));
-            trend.put("spending", result[2] != null ? result[2] : BigDecimal.ZERO);
-            trend.put("investments", result[3] != null ? result[3] : BigDecimal.ZERO);
-            trends.add(trend);
+            trends.add(new MonthlyTrend(
+                MONTH_FORMATTER.format((LocalDate) result[0]),
+                result[1] != null ? (BigDecimal) result[1] : BigDecimal.ZERO,
+                result[2] != null ? (BigDecimal) result[2] : BigDecimal.ZERO));
         }
         
-        return trends;
+        return Collections.unmodifiableList(trends);
     }
-}
\ No newline at end of file
+}
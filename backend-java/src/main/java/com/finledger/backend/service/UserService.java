@@ -1,43 +1,130 @@
 package com.finledger.backend.service;
 
+import com.finledger.backend.dto.UserProfile;
 import com.finledger.backend.entity.User;
+import com.finledger.backend.event.CurrencyConversionChangedEvent;
+import com.finledger.backend.repository.TransactionRepository;
 import com.finledger.backend.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Duration;
+import java.util.Objects;
 import java.util.Optional;
 
+/**
+ * User profiles, kept in a bounded per-user cache (published as {@code cache.*} metrics tagged
+ * {@code cache=users}). Logins and {@code /api/auth/user} polls are served from the cache; a
+ * login only writes when its claims differ from the stored profile.
+ */
 @Service
 public class UserService {
     
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private TransactionRepository transactionRepository;
+    
+    @Autowired
+    private FxRates fxRates;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    private final Cache<String, UserProfile> profiles;
+    
+    public UserService(
+            @Value("${finledger.cache.users.max-users:10000}") long maxUsers,
+            @Value("${finledger.cache.users.ttl:10m}") Duration ttl,
+            MeterRegistry meterRegistry) {
+        this.profiles = Caffeine.newBuilder()
+            .maximumSize(maxUsers)
+            .expireAfterWrite(ttl)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, profiles, "users");
+    }
+    
     public Optional<User> findById(String id) {
         return userRepository.findById(id);
     }
     
+    // Unknown users are not cached, so they are visible as soon as their first login commits
+    public Optional<UserProfile> getProfile(String id) {
+        return Optional.ofNullable(profiles.get(id, key -> userRepository.findProfileById(key).orElse(null)));
+    }
+    
+    // Users without a row (bearer tokens that carry no profile claims) report in the default currency
+    public String getBaseCurrency(String id) {
+        return getProfile(id).map(UserProfile::baseCurrency).orElseGet(fxRates::getDefaultCurrency);
+    }
+    
+    /*
+     * Switches the currency a user's analytics are reported in. Every currency in the user's ledger must
+     * be convertible to it. Listeners of CurrencyConversionChangedEvent recompute the derived summaries
+     * in this transaction. Empty if the user has no profile row.
+     */
+    @Transactional
+    public Optional<UserProfile> setBaseCurrency(String id, String baseCurrency) {
+        if (!userRepository.existsById(id)) {
+            return Optional.empty();
+        }
+        for (String currency : transactionRepository.findDistinctCurrenciesByUserId(id)) {
+            fxRates.requireConvertible(currency, baseCurrency);
+        }
+        if (userRepository.updateBaseCurrency(id, baseCurrency) > 0) {
+            invalidateAfterCommit(id);
+            eventPublisher.publishEvent(new CurrencyConversionChangedEvent(id));
+        }
+        return userRepository.findProfileById(id);
+    }
+    
     public Optional<User> findByEmail(String email) {
         return userRepository.findByEmail(email);
     }
     
     public User save(User user) {
-        return userRepository.save(user);
-    }
-    
-    public User upsertUser(String id, String email, String firstName, String lastName, String profileImageUrl) {
-        Optional<User> existingUser = userRepository.findById(id);
-        
-        if (existingUser.isPresent()) {
-            User user = existingUser.get();
-            user.setEmail(email);
-            user.setFirstName(firstName);
-            user.setLastName(lastName);
-            user.setProfileImageUrl(profileImageUrl);
-            return userRepository.save(user);
-        } else {
-            User newUser = new User(id, email, firstName, lastName, profileImageUrl);
-            return userRepository.save(newUser);
+        User saved = userRepository.save(user);
+        profiles.invalidate(user.getId());
+        return saved;
+    }
+    
+    /*
+     * Records the claims of a login. Claims matching the cached profile skip the database; otherwise
+     * a single conditional upsert writes only if the stored row differs. Returns whether a row was written.
+     */
+    @Transactional
+    public boolean upsertUser(String id, String email, String firstName, String lastName, String profileImageUrl) {
+        UserProfile cached = profiles.getIfPresent(id);
+        if (cached != null && Objects.equals(cached.email(), email) && Objects.equals(cached.firstName(), firstName)
+                && Objects.equals(cached.lastName(), lastName)
+                && Objects.equals(cached.profileImageUrl(), profileImageUrl)) {
+            return false;
+        }
+        boolean written = userRepository.upsertIfChanged(id, email, firstName, lastName, profileImageUrl) > 0;
+        if (written) {
+            invalidateAfterCommit(id);
         }
+        return written;
+    }
+    
+    // After commit, so a concurrent read cannot cache the row as it was before this write
+    private void invalidateAfterCommit(String id) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                profiles.invalidate(id);
+            }
+        });
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,160 @@
+-- Baseline schema. Idempotent, so it also applies cleanly to databases created by the earlier
+-- Hibernate schema update (which Flyway baselines at version 0): existing tables and indexes are
+-- kept, and a plain transactions table is converted to the partitioned layout.
+
+CREATE TABLE IF NOT EXISTS users (
+    id varchar(255) NOT NULL PRIMARY KEY,
+    email varchar(255) UNIQUE,
+    first_name varchar(255),
+    last_name varchar(255),
+    profile_image_url varchar(255),
+    created_at timestamp(6) NOT NULL,
+    updated_at timestamp(6)
+);
+
+-- transactions is range-partitioned by date: one partition per calendar year (transactions_y2025, ...)
+-- plus transactions_default for dates no yearly partition covers yet. Every unique constraint on a
+-- partitioned table must include the partition key, hence the (id, date) primary key.
+CREATE TABLE IF NOT EXISTS transactions (
+    id bigint GENERATED BY DEFAULT AS IDENTITY,
+    user_id varchar(255) NOT NULL,
+    platform varchar(255) NOT NULL,
+    category varchar(255) NOT NULL,
+    type varchar(255) NOT NULL CHECK (type IN ('BUY', 'SELL', 'TRANSFER')),
+    asset_name varchar(255) NOT NULL,
+    amount numeric(15, 2) NOT NULL,
+    quantity numeric(15, 8),
+    date date NOT NULL,
+    notes varchar(255),
+    created_at timestamp(6) NOT NULL,
+    updated_at timestamp(6),
+    PRIMARY KEY (id, date)
+) PARTITION BY RANGE (date);
+
+-- Creates the yearly partitions for [from_year, to_year] and for every year that already has rows in
+-- the default partition, moving those rows into their new partition (a partition cannot be attached
+-- while the default partition holds rows in its range). Returns the number of partitions created.
+-- Called by TransactionPartitionMaintenance on startup and nightly.
+CREATE OR REPLACE FUNCTION ensure_transaction_partitions(from_year int, to_year int) RETURNS int
+LANGUAGE plpgsql AS $$
+DECLARE
+    partition_year int;
+    partition_name text;
+    created int := 0;
+BEGIN
+    -- Two-key form, so it cannot collide with the per-user summary locks
+    PERFORM pg_advisory_xact_lock(hashtext('transactions_partitions'), 0);
+    FOR partition_year IN
+        SELECT generate_series(from_year, to_year)
+        UNION
+        SELECT DISTINCT CAST(extract(year FROM date) AS int) FROM transactions_default
+        ORDER BY 1
+    LOOP
+        partition_name := 'transactions_y' || partition_year;
+        CONTINUE WHEN to_regclass(partition_name) IS NOT NULL;
+        EXECUTE format('CREATE TABLE %I (LIKE transactions INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', partition_name);
+        EXECUTE format('WITH moved AS (DELETE FROM transactions_default WHERE date >= %L AND date < %L RETURNING *) '
+            || 'INSERT INTO %I SELECT * FROM moved',
+            make_date(partition_year, 1, 1), make_date(partition_year + 1, 1, 1), partition_name);
+        EXECUTE format('ALTER TABLE transactions ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+            partition_name, make_date(partition_year, 1, 1), make_date(partition_year + 1, 1, 1));
+        created := created + 1;
+    END LOOP;
+    RETURN created;
+END
+$$;
+
+-- Converts a plain transactions table left by the Hibernate schema update. Columns, constraints and
+-- the identity come from the existing table; rows are copied in this transaction, so the upgrade
+-- takes time proportional to the ledger.
+DO $$
+DECLARE
+    index_definitions text[];
+    index_definition text;
+    index_name text;
+    primary_key text;
+    first_year int;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('transactions_partitions'), 0);
+    IF to_regclass('transactions') IS NULL
+            OR (SELECT relkind FROM pg_class WHERE oid = to_regclass('transactions')) = 'p' THEN
+        RETURN;
+    END IF;
+
+    -- Secondary indexes are rebuilt on the partitioned table under their current names
+    SELECT array_agg(pg_get_indexdef(indexrelid)) INTO index_definitions
+    FROM pg_index WHERE indrelid = to_regclass('transactions') AND NOT indisprimary;
+    FOR index_name IN SELECT indexrelid::regclass::text FROM pg_index
+                      WHERE indrelid = to_regclass('transactions') AND NOT indisprimary LOOP
+        EXECUTE format('DROP INDEX %s', index_name);
+    END LOOP;
+    SELECT conname INTO primary_key FROM pg_constraint
+    WHERE conrelid = to_regclass('transactions') AND contype = 'p';
+    IF primary_key IS NOT NULL THEN
+        EXECUTE format('ALTER TABLE transactions DROP CONSTRAINT %I', primary_key);
+    END IF;
+    ALTER TABLE transactions RENAME TO transactions_unpartitioned;
+    EXECUTE format('ALTER SEQUENCE %s RENAME TO transactions_unpartitioned_id_seq',
+        pg_get_serial_sequence('transactions_unpartitioned', 'id'));
+
+    CREATE TABLE transactions (LIKE transactions_unpartitioned INCLUDING DEFAULTS INCLUDING CONSTRAINTS INCLUDING IDENTITY)
+        PARTITION BY RANGE (date);
+    ALTER TABLE transactions ADD PRIMARY KEY (id, date);
+    CREATE TABLE transactions_default PARTITION OF transactions DEFAULT;
+
+    SELECT CAST(extract(year FROM min(date)) AS int) INTO first_year FROM transactions_unpartitioned;
+    PERFORM ensure_transaction_partitions(
+        least(coalesce(first_year, CAST(extract(year FROM current_date) AS int)), CAST(extract(year FROM current_date) AS int)),
+        CAST(extract(year FROM current_date) AS int) + 1);
+
+    INSERT INTO transactions SELECT * FROM transactions_unpartitioned;
+    PERFORM setval(pg_get_serial_sequence('transactions', 'id'), coalesce(max(id), 0) + 1, false) FROM transactions;
+    DROP TABLE transactions_unpartitioned;
+
+    IF index_definitions IS NOT NULL THEN
+        FOREACH index_definition IN ARRAY index_definitions LOOP
+            EXECUTE index_definition;
+        END LOOP;
+    END IF;
+    ANALYZE transactions;
+END
+$$;
+
+CREATE TABLE IF NOT EXISTS transactions_default PARTITION OF transactions DEFAULT;
+
+SELECT ensure_transaction_partitions(CAST(extract(year FROM current_date) AS int),
+                                     CAST(extract(year FROM current_date) AS int) + 2);
+
+-- Newest-first listing, keyset paging and date-windowed queries
+CREATE INDEX IF NOT EXISTS idx_transactions_user_date_id ON transactions (user_id, date DESC, id DESC);
+-- Covering indexes so the type/amount aggregates can run as index-only scans
+CREATE INDEX IF NOT EXISTS idx_transactions_user_type_amount ON transactions (user_id, type, amount);
+CREATE INDEX IF NOT EXISTS idx_transactions_user_date_type_amount ON transactions (user_id, date, type, amount);
+CREATE INDEX IF NOT EXISTS idx_transactions_user_category_amount ON transactions (user_id, category, amount);
+
+-- Derived per-user aggregates, maintained by PortfolioSummaryService
+CREATE TABLE IF NOT EXISTS user_portfolio_summaries (
+    user_id varchar(255) NOT NULL PRIMARY KEY,
+    transaction_count bigint NOT NULL,
+    total_investments numeric(19, 2) NOT NULL,
+    updated_at timestamp(6)
+);
+
+CREATE TABLE IF NOT EXISTS user_monthly_summaries (
+    user_id varchar(255) NOT NULL,
+    period_month date NOT NULL,
+    transaction_count bigint NOT NULL,
+    total_amount numeric(19, 2) NOT NULL,
+    PRIMARY KEY (user_id, period_month)
+);
+
+CREATE TABLE IF NOT EXISTS user_analytics_rollups (
+    user_id varchar(255) NOT NULL,
+    period_month date NOT NULL,
+    category varchar(255) NOT NULL,
+    platform varchar(255) NOT NULL,
+    type varchar(255) NOT NULL CHECK (type IN ('BUY', 'SELL', 'TRANSFER')),
+    transaction_count bigint NOT NULL,
+    total_amount numeric(19, 2) NOT NULL,
+    PRIMARY KEY (user_id, period_month, category, platform, type)
+);
@@ -0,0 +1,52 @@
+-- Append-only journal of ledger writes, maintained by LedgerJournal. Events are appended while the
+-- writer holds the user's advisory lock, so within a user seq order is commit order.
+CREATE TABLE IF NOT EXISTS transaction_events (
+    seq bigint GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    user_id varchar(255) NOT NULL,
+    transaction_id bigint NOT NULL,
+    event_type varchar(16) NOT NULL CHECK (event_type IN ('CREATED', 'UPDATED', 'DELETED')),
+    occurred_at timestamptz NOT NULL DEFAULT now(),
+    before_row jsonb,
+    after_row jsonb,
+    CHECK (before_row IS NOT NULL OR after_row IS NOT NULL)
+);
+
+-- Journal tails past a snapshot, and the history of one transaction
+CREATE INDEX IF NOT EXISTS idx_transaction_events_user_seq ON transaction_events (user_id, seq);
+CREATE INDEX IF NOT EXISTS idx_transaction_events_user_transaction ON transaction_events (user_id, transaction_id, seq);
+
+CREATE OR REPLACE FUNCTION reject_transaction_event_change() RETURNS trigger
+LANGUAGE plpgsql AS $$
+BEGIN
+    RAISE EXCEPTION 'transaction_events is append-only';
+END
+$$;
+
+DROP TRIGGER IF EXISTS transaction_events_append_only ON transaction_events;
+CREATE TRIGGER transaction_events_append_only
+    BEFORE UPDATE OR DELETE ON transaction_events
+    FOR EACH ROW EXECUTE FUNCTION reject_transaction_event_change();
+
+DROP TRIGGER IF EXISTS transaction_events_no_truncate ON transaction_events;
+CREATE TRIGGER transaction_events_no_truncate
+    BEFORE TRUNCATE ON transaction_events
+    FOR EACH STATEMENT EXECUTE FUNCTION reject_transaction_event_change();
+
+-- Latest per-user snapshot of the analytics rollups and the last journal event it includes.
+-- Summaries and monthly totals are sums over the rollups, so they are not stored separately.
+CREATE TABLE IF NOT EXISTS user_ledger_snapshots (
+    user_id varchar(255) NOT NULL PRIMARY KEY,
+    last_seq bigint NOT NULL,
+    taken_at timestamptz NOT NULL DEFAULT now()
+);
+
+CREATE TABLE IF NOT EXISTS user_ledger_snapshot_rollups (
+    user_id varchar(255) NOT NULL,
+    period_month date NOT NULL,
+    category varchar(255) NOT NULL,
+    platform varchar(255) NOT NULL,
+    type varchar(255) NOT NULL CHECK (type IN ('BUY', 'SELL', 'TRANSFER')),
+    transaction_count bigint NOT NULL,
+    total_amount numeric(19, 2) NOT NULL,
+    PRIMARY KEY (user_id, period_month, category, platform, type)
+);
@@ -0,0 +1,16 @@
+-- Optimistic concurrency: every update bumps the version, and conditional updates and deletes only
+-- apply to the version the client last read. A constant default adds the column without a rewrite.
+ALTER TABLE transactions ADD COLUMN IF NOT EXISTS version bigint NOT NULL DEFAULT 0;
+
+-- Idempotency-Key values of transaction creates, so a retried POST returns the transaction the first
+-- attempt created instead of inserting another. Keys are purged after finledger.idempotency.ttl.
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    user_id varchar(255) NOT NULL,
+    idempotency_key varchar(255) NOT NULL,
+    request_hash varchar(64) NOT NULL,
+    transaction_id bigint NOT NULL,
+    created_at timestamptz NOT NULL DEFAULT now(),
+    PRIMARY KEY (user_id, idempotency_key)
+);
+
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_created_at ON idempotency_keys (created_at);
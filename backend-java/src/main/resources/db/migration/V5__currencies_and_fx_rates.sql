@@ -0,0 +1,40 @@
+-- Amounts are in the currency the platform settled in, and every aggregate is reported in the user's
+-- base currency. Existing rows and users take ${defaultCurrency} (spring.flyway.placeholders), the
+-- currency the ledger was kept in so far; constant defaults add the columns without a rewrite.
+ALTER TABLE transactions ADD COLUMN IF NOT EXISTS currency char(3) NOT NULL DEFAULT '${defaultCurrency}';
+ALTER TABLE users ADD COLUMN IF NOT EXISTS base_currency char(3) NOT NULL DEFAULT '${defaultCurrency}';
+
+-- Daily reference rates loaded from files by FxRateLoader: units of currency per one unit of the
+-- reference currency (finledger.fx.reference-currency), which is stored with rate 1
+CREATE TABLE IF NOT EXISTS fx_rates (
+    currency char(3) NOT NULL,
+    rate_date date NOT NULL,
+    rate numeric(20, 10) NOT NULL CHECK (rate > 0),
+    PRIMARY KEY (currency, rate_date)
+);
+
+-- Rate of a currency on a date: the latest on or before it, or for dates before the first loaded
+-- rate the earliest one. Both branches are a single primary key probe.
+CREATE OR REPLACE FUNCTION fx_rate(currency text, on_date date) RETURNS numeric
+LANGUAGE sql STABLE PARALLEL SAFE AS $$
+    SELECT COALESCE(
+        (SELECT r.rate FROM fx_rates r WHERE r.currency = fx_rate.currency AND r.rate_date <= on_date
+         ORDER BY r.rate_date DESC LIMIT 1),
+        (SELECT r.rate FROM fx_rates r WHERE r.currency = fx_rate.currency AND r.rate_date > on_date
+         ORDER BY r.rate_date LIMIT 1))
+$$;
+
+-- Converts one amount at the rate of its date. The cross rate is rounded to 10 places and the result
+-- to cents, per row, exactly as FxRates.convert does for the deltas applied in Java, so rollups built
+-- either way agree to the cent. NULL if either currency has no rates.
+CREATE OR REPLACE FUNCTION fx_convert(amount numeric, from_currency text, to_currency text, on_date date)
+RETURNS numeric
+LANGUAGE sql STABLE PARALLEL SAFE AS $$
+    SELECT CASE WHEN from_currency = to_currency THEN amount
+        ELSE round(amount * round(fx_rate(to_currency, on_date) / fx_rate(from_currency, on_date), 10), 2) END
+$$;
+
+-- Journal snapshots were taken before amounts had a currency; the next rebuild of each user scans
+-- the ledger once and snapshots it again, so replayed tails only ever contain currency-tagged rows
+DELETE FROM user_ledger_snapshot_rollups;
+DELETE FROM user_ledger_snapshots;
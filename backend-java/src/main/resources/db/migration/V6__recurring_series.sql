@@ -0,0 +1,43 @@
+-- Recurring series (salaries, SIPs, subscriptions) detected in each user's ledger by
+-- RecurringSeriesDetector. A series is a run of weekly or monthly entries of one asset, platform,
+-- type and currency whose amounts stay within one band; a group is replaced as a whole whenever
+-- any of its rows change, so the table is derived data and can be rebuilt by deleting the watermarks.
+CREATE TABLE IF NOT EXISTS recurring_series (
+    id bigint GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    user_id varchar(255) NOT NULL,
+    asset_name varchar(255) NOT NULL,
+    platform varchar(255) NOT NULL,
+    type varchar(255) NOT NULL,
+    currency char(3) NOT NULL,
+    cadence varchar(16) NOT NULL CHECK (cadence IN ('WEEKLY', 'MONTHLY')),
+    typical_amount numeric(15, 2) NOT NULL,
+    min_amount numeric(15, 2) NOT NULL,
+    max_amount numeric(15, 2) NOT NULL,
+    occurrences integer NOT NULL,
+    first_date date NOT NULL,
+    last_date date NOT NULL,
+    next_expected_date date NOT NULL,
+    detected_at timestamptz NOT NULL DEFAULT now()
+);
+
+-- A user's series, and the series of one group when its rows change
+CREATE INDEX IF NOT EXISTS idx_recurring_series_user_group
+    ON recurring_series (user_id, asset_name, platform, type, currency);
+
+-- Last journal event (transaction_events.seq) of each user that the detector has taken into account.
+-- Users without a row have never been scanned and get a full recompute.
+CREATE TABLE IF NOT EXISTS recurring_watermarks (
+    user_id varchar(255) NOT NULL PRIMARY KEY,
+    last_seq bigint NOT NULL,
+    scanned_at timestamptz NOT NULL DEFAULT now()
+);
+
+-- Journal position of the last two completed detector runs, a single row. Each run looks for users
+-- with events after the run before last, so an event whose write committed after a later-numbered
+-- one (seq is assigned at insert, not at commit) is still found by the following run.
+CREATE TABLE IF NOT EXISTS recurring_scan_state (
+    id boolean NOT NULL PRIMARY KEY DEFAULT true CHECK (id),
+    previous_seq bigint NOT NULL,
+    last_seq bigint NOT NULL,
+    scanned_at timestamptz NOT NULL DEFAULT now()
+);
@@ -0,0 +1,11 @@
+-- Specific-lot identification for the realized gains report: the BUY lots (and units of each) a SELL
+-- disposes of, chosen by the user. The report consumes these lots first and the rest of the sale
+-- FIFO. Rows are not removed with their transactions (transactions has no single-column key to
+-- reference); selections of deleted rows, or of a lot already sold, are ignored by the report.
+CREATE TABLE IF NOT EXISTS tax_lot_selections (
+    user_id varchar(255) NOT NULL,
+    sell_transaction_id bigint NOT NULL,
+    lot_transaction_id bigint NOT NULL,
+    quantity numeric(15, 8) NOT NULL CHECK (quantity > 0),
+    PRIMARY KEY (user_id, sell_transaction_id, lot_transaction_id)
+);
@@ -0,0 +1,68 @@
+package com.finledger.backend;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Base of tests that need PostgreSQL. The application is booted once for all of them against a
+ * throwaway container (Docker required), or against a local database given with
+ * {@code -Dtest.jdbcUrl=jdbc:postgresql://...} and {@code test.username} / {@code test.password}.
+ * Without either the tests are skipped. Tests share the database, so each works on its own users.
+ *
+ * The application runs in jwt mode with OAuth2 client configuration left out, as the Replit
+ * issuer discovery needs the network.
+ */
+@SpringBootTest(properties = {
+    "spring.autoconfigure.exclude="
+        + "org.springframework.boot.autoconfigure.security.oauth2.client.servlet.OAuth2ClientAutoConfiguration",
+    "spring.devtools.restart.enabled=false",
+    "finledger.auth.mode=jwt",
+    "finledger.auth.jwt.jwk-set-uri=http://localhost:1/jwks",
+    "finledger.auth.jwt.issuer=https://issuer.test",
+    "finledger.recurring.initial-delay=PT1H"
+})
+public abstract class DatabaseTest {
+
+    private static final String JDBC_URL = System.getProperty("test.jdbcUrl");
+
+    private static PostgreSQLContainer<?> container;
+
+    @BeforeAll
+    static void requireDatabase() {
+        assumeTrue(JDBC_URL != null || DockerClientFactory.instance().isDockerAvailable(),
+            "Needs Docker or -Dtest.jdbcUrl");
+    }
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        if (JDBC_URL != null) {
+            registry.add("spring.datasource.url", () -> JDBC_URL);
+            registry.add("spring.datasource.username", () -> System.getProperty("test.username", "postgres"));
+            registry.add("spring.datasource.password", () -> System.getProperty("test.password", "postgres"));
+            return;
+        }
+        synchronized (DatabaseTest.class) {
+            if (container == null) {
+                // Stopped with the JVM by Testcontainers' resource reaper
+                container = new PostgreSQLContainer<>("postgres:16-alpine");
+                container.start();
+            }
+        }
+        registry.add("spring.datasource.url", container::getJdbcUrl);
+        registry.add("spring.datasource.username", container::getUsername);
+        registry.add("spring.datasource.password", container::getPassword);
+    }
+
+    // A user no other test touches
+    protected static String newUserId() {
+        return "test-" + UUID.randomUUID();
+    }
+}
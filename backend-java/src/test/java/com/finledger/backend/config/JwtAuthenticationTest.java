@@ -0,0 +1,265 @@
+package com.finledger.backend.config;
+
+import com.finledger.backend.service.UserService;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.PlainJWT;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.security.oauth2.client.servlet.OAuth2ClientAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.mapping.JpaMetamodelMappingContext;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Bearer-token authentication end to end: tokens are signed with locally generated keys and
+ * verified against a stub JWKS endpoint served from this JVM.
+ */
+@WebMvcTest(
+    controllers = JwtAuthenticationTest.WhoAmI.class,
+    excludeAutoConfiguration = OAuth2ClientAutoConfiguration.class,
+    properties = {
+        "finledger.auth.mode=jwt",
+        "finledger.auth.jwt.issuer=" + JwtAuthenticationTest.ISSUER,
+        "finledger.auth.jwt.audience=" + JwtAuthenticationTest.AUDIENCE,
+        "finledger.auth.jwt.min-refetch-interval=1s",
+        "finledger.auth.jwt.jwks-refresh=PT1H"
+    })
+@Import({SecurityConfig.class, JwtAuthConfig.class, JwtAuthenticationTest.WhoAmI.class})
+class JwtAuthenticationTest {
+
+    static final String ISSUER = "https://issuer.test";
+    static final String AUDIENCE = "finledger-test";
+
+    private static final RSAKey RSA_KEY = generateRsaKey("rsa-1");
+    private static final ECKey EC_KEY = generateEcKey("ec-1");
+    private static final AtomicInteger jwksFetches = new AtomicInteger();
+    private static volatile String jwks = publicJwks(RSA_KEY, EC_KEY);
+    private static final HttpServer jwksServer = startJwksServer();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private UserService userService;
+
+    // @EnableJpaAuditing on the application class needs a mapping context
+    @MockBean
+    private JpaMetamodelMappingContext jpaMappingContext;
+
+    @DynamicPropertySource
+    static void jwksProperties(DynamicPropertyRegistry registry) {
+        registry.add("finledger.auth.jwt.jwk-set-uri",
+            () -> "http://localhost:" + jwksServer.getAddress().getPort() + "/jwks");
+    }
+
+    @AfterAll
+    static void stopJwksServer() {
+        jwksServer.stop(0);
+    }
+
+    @Test
+    void validRs256AndEs256TokensAuthenticateTheSubject() throws Exception {
+        whoAmI(rs256(RSA_KEY, claims("user-rsa").build()))
+            .andExpect(status().isOk())
+            .andExpect(content().string("UserAuthentication:user-rsa"));
+        whoAmI(es256(EC_KEY, claims("user-ec").build()))
+            .andExpect(status().isOk())
+            .andExpect(content().string("UserAuthentication:user-ec"));
+    }
+
+    @Test
+    void profileClaimsAreRecordedForTheSubject() throws Exception {
+        whoAmI(rs256(RSA_KEY, claims("user-1").claim("email", "ada@example.com").claim("first_name", "Ada").build()))
+            .andExpect(status().isOk());
+
+        verify(userService).upsertUser("user-1", "ada@example.com", "Ada", null, null);
+    }
+
+    @Test
+    void wrongIssuerOrAudienceIsRejected() throws Exception {
+        whoAmI(rs256(RSA_KEY, claims("user-1").issuer("https://other.test").build()))
+            .andExpect(status().isUnauthorized());
+        whoAmI(rs256(RSA_KEY, claims("user-1").audience("someone-else").build()))
+            .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void expiredAndUnsignedTokensAreRejected() throws Exception {
+        Instant past = Instant.now().minusSeconds(600);
+        whoAmI(rs256(RSA_KEY, claims("user-1").issueTime(Date.from(past))
+                .expirationTime(Date.from(past.plusSeconds(300))).build()))
+            .andExpect(status().isUnauthorized());
+        whoAmI(new PlainJWT(claims("user-1").build()).serialize())
+            .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void tokenSignedWithAnotherKeyIsRejected() throws Exception {
+        // Same key id as a published key, different key material
+        whoAmI(rs256(generateRsaKey("rsa-1"), claims("user-1").build()))
+            .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void unknownKeyIdRefetchesAtMostOncePerIntervalAndPicksUpRotatedKeys() throws Exception {
+        whoAmI(rs256(RSA_KEY, claims("user-1").build())).andExpect(status().isOk());
+        Thread.sleep(1100);
+
+        RSAKey rotated = generateRsaKey("rsa-rotated-" + System.nanoTime());
+        String token = rs256(rotated, claims("user-1").build());
+        int fetches = jwksFetches.get();
+        for (int i = 0; i < 3; i++) {
+            whoAmI(token).andExpect(status().isUnauthorized());
+        }
+        assertThat(jwksFetches.get()).isEqualTo(fetches + 1);
+
+        // Published now, but the last refetch was too recent to try again
+        jwks = publicJwks(RSA_KEY, EC_KEY, rotated);
+        whoAmI(token).andExpect(status().isUnauthorized());
+        assertThat(jwksFetches.get()).isEqualTo(fetches + 1);
+
+        Thread.sleep(1100);
+        whoAmI(token)
+            .andExpect(status().isOk())
+            .andExpect(content().string("UserAuthentication:user-1"));
+        assertThat(jwksFetches.get()).isEqualTo(fetches + 2);
+    }
+
+    private ResultActions whoAmI(String token) throws Exception {
+        return mockMvc.perform(get("/api/whoami").header("Authorization", "Bearer " + token));
+    }
+
+    private static JWTClaimsSet.Builder claims(String subject) {
+        Instant now = Instant.now();
+        return new JWTClaimsSet.Builder()
+            .subject(subject)
+            .issuer(ISSUER)
+            .audience(AUDIENCE)
+            .issueTime(Date.from(now))
+            .expirationTime(Date.from(now.plusSeconds(300)));
+    }
+
+    private static String rs256(RSAKey key, JWTClaimsSet claims) throws JOSEException {
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(), claims);
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+
+    private static String es256(ECKey key, JWTClaimsSet claims) throws JOSEException {
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.ES256).keyID(key.getKeyID()).build(), claims);
+        jwt.sign(new ECDSASigner(key));
+        return jwt.serialize();
+    }
+
+    private static RSAKey generateRsaKey(String keyId) {
+        try {
+            return new RSAKeyGenerator(2048).keyID(keyId).generate();
+        } catch (JOSEException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ECKey generateEcKey(String keyId) {
+        try {
+            return new ECKeyGenerator(Curve.P_256).keyID(keyId).generate();
+        } catch (JOSEException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String publicJwks(JWK... keys) {
+        List<JWK> published = new ArrayList<>();
+        for (JWK key : keys) {
+            published.add(key.toPublicJWK());
+        }
+        return new JWKSet(published).toString();
+    }
+
+    private static HttpServer startJwksServer() {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.createContext("/jwks", exchange -> {
+                jwksFetches.incrementAndGet();
+                byte[] body = jwks.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @RestController
+    static class WhoAmI {
+        @GetMapping("/api/whoami")
+        String whoAmI(Authentication authentication) {
+            return authentication.getClass().getSimpleName() + ":" + authentication.getName();
+        }
+    }
+
+    @TestConfiguration
+    static class Metrics {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    // JwtAuthConfig fetches the JWK set with a RestTemplate, which the MVC slice does not configure
+    @TestConfiguration
+    static class Http {
+        @Bean
+        RestTemplateBuilder restTemplateBuilder() {
+            return new RestTemplateBuilder();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.finledger.backend.config;
+
+import com.finledger.backend.DatabaseTest;
+import com.finledger.backend.repository.TransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.jpa.repository.Query;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RepositoryIndexCheckTest extends DatabaseTest {
+
+    @Autowired
+    private RepositoryIndexCheck indexCheck;
+
+    @Test
+    void everyProbedQueryIsServedByAnIndex() {
+        assertThat(indexCheck.findUnindexedQueries()).isEmpty();
+    }
+
+    @Test
+    void everyRepositoryQueryIsProbed() {
+        assertThat(Arrays.stream(TransactionRepository.class.getDeclaredMethods())
+                .filter(method -> method.isAnnotationPresent(Query.class))
+                .map(Method::getName))
+            .isNotEmpty()
+            .allMatch(RepositoryIndexCheck.probedQueries()::contains);
+    }
+}
@@ -0,0 +1,65 @@
+package com.finledger.backend.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RequestConcurrencyLimiterTest {
+
+    private final RequestConcurrencyLimiter limiter =
+        new RequestConcurrencyLimiter(1, Duration.ofMillis(50), new SimpleMeterRegistry());
+
+    @Test
+    void connectionPoolTimeoutsAreAnsweredWith503() throws Exception {
+        SQLTransientConnectionException timeout =
+            new SQLTransientConnectionException("HikariPool-1 - Connection is not available, request timed out after 5000ms.");
+
+        MockHttpServletResponse jdbc = new MockHttpServletResponse();
+        limiter.doFilter(apiRequest(), jdbc, throwing(new ServletException("Request processing failed",
+            new CannotGetJdbcConnectionException("Failed to obtain JDBC Connection", timeout))));
+        assertThat(jdbc.getStatus()).isEqualTo(503);
+        assertThat(jdbc.getHeader("Retry-After")).isEqualTo("1");
+
+        MockHttpServletResponse jpa = new MockHttpServletResponse();
+        limiter.doFilter(apiRequest(), jpa, throwing(new CannotCreateTransactionException(
+            "Could not open JPA EntityManager for transaction", new RuntimeException(timeout))));
+        assertThat(jpa.getStatus()).isEqualTo(503);
+
+        // The permit was released both times
+        MockHttpServletResponse next = new MockHttpServletResponse();
+        limiter.doFilter(apiRequest(), next, (request, response) -> { });
+        assertThat(next.getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void otherErrorsPropagate() {
+        IllegalStateException failure = new IllegalStateException("bug");
+
+        assertThatThrownBy(() -> limiter.doFilter(apiRequest(), new MockHttpServletResponse(), throwing(failure)))
+            .isSameAs(failure);
+    }
+
+    private static MockHttpServletRequest apiRequest() {
+        return new MockHttpServletRequest("GET", "/api/transactions");
+    }
+
+    private static FilterChain throwing(Exception e) {
+        return (request, response) -> {
+            if (e instanceof ServletException servletException) {
+                throw servletException;
+            }
+            throw (RuntimeException) e;
+        };
+    }
+}
@@ -0,0 +1,204 @@
+package com.finledger.backend.controller;
+
+import com.finledger.backend.config.UserAuthentication;
+import com.finledger.backend.dto.InvalidRequestException;
+import com.finledger.backend.service.TaxLotReportService;
+import com.finledger.backend.service.TransactionExportService;
+import com.finledger.backend.service.TransactionImportService;
+import com.finledger.backend.service.TransactionService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.security.oauth2.client.servlet.OAuth2ClientAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.mapping.JpaMetamodelMappingContext;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.authentication;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(controllers = TransactionController.class, excludeAutoConfiguration = OAuth2ClientAutoConfiguration.class)
+class TransactionControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private TransactionService transactionService;
+
+    @MockBean
+    private TransactionImportService transactionImportService;
+
+    @MockBean
+    private TransactionExportService transactionExportService;
+
+    @MockBean
+    private TaxLotReportService taxLotReportService;
+
+    // @EnableJpaAuditing on the application class needs a mapping context
+    @MockBean
+    private JpaMetamodelMappingContext jpaMappingContext;
+
+    @Test
+    void malformedCursorsAreRejectedWithoutReachingTheService() throws Exception {
+        for (String cursor : List.of("not base64!", "Zm9v", "MjAyNC0xMy0wMTox", "MjAyNC0wMS0wMTp4")) {
+            mockMvc.perform(as("u1", get("/api/transactions").param("cursor", cursor)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Invalid cursor"));
+        }
+        verifyNoInteractions(transactionService);
+    }
+
+    @Test
+    void blankSearchTextAndBadIfMatchAreRejected() throws Exception {
+        mockMvc.perform(as("u1", get("/api/transactions/search").param("q", " ")))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("Search text is required"));
+        mockMvc.perform(as("u1", delete("/api/transactions/7").with(csrf()).header("If-Match", "\"seven\"")))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("Invalid If-Match header: \"seven\""));
+        verifyNoInteractions(transactionService);
+    }
+
+    @Test
+    void pageSizesOutsideOneToAHundredAreRejected() throws Exception {
+        for (String limit : List.of("0", "-1", "101", "1000000")) {
+            mockMvc.perform(as("u1", get("/api/transactions").param("limit", limit)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("limit must be between 1 and 100"));
+            mockMvc.perform(as("u1", get("/api/transactions").param("cursor", "").param("limit", limit)))
+                .andExpect(status().isBadRequest());
+            mockMvc.perform(as("u1", get("/api/transactions/search").param("q", "infy").param("limit", limit)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("limit must be between 1 and 100"));
+        }
+        mockMvc.perform(as("u1", get("/api/transactions").param("page", "-1")))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("page must not be negative"));
+        verifyNoInteractions(transactionService);
+    }
+
+    @Test
+    void pageSizesAtTheBoundsAreAccepted() throws Exception {
+        when(transactionService.getTransactions(eq("u1"), any(), any()))
+            .thenAnswer(invocation -> new PageImpl<>(List.of(), invocation.getArgument(2), 0));
+        when(transactionService.getTransactionsAfter(eq("u1"), any(), any(), anyBoolean(), anyInt()))
+            .thenReturn(new SliceImpl<>(List.of()));
+        when(transactionService.searchTransactionsRanked(eq("u1"), eq("infy"), any(), any()))
+            .thenAnswer(invocation -> new SliceImpl<>(List.of(), invocation.getArgument(3), false));
+
+        for (String limit : List.of("1", "100")) {
+            mockMvc.perform(as("u1", get("/api/transactions").param("limit", limit)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.pagination.limit").value(Integer.parseInt(limit)));
+            mockMvc.perform(as("u1", get("/api/transactions").param("cursor", "").param("limit", limit)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.pagination.limit").value(Integer.parseInt(limit)));
+            mockMvc.perform(as("u1", get("/api/transactions/search").param("q", "infy").param("limit", limit)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.pagination.limit").value(Integer.parseInt(limit)));
+        }
+    }
+
+    @Test
+    void cursorPagesCannotBeSortedByAnythingButDate() throws Exception {
+        mockMvc.perform(as("u1", get("/api/transactions").param("cursor", "").param("sortBy", "amount")))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("Cursor paging is ordered by date only, not by amount"));
+        verifyNoInteractions(transactionService);
+    }
+
+    @Test
+    void serviceValidationErrorsAreReturnedAsBadRequest() throws Exception {
+        when(taxLotReportService.setLotSelections(eq("u1"), eq(7L), any()))
+            .thenThrow(new InvalidRequestException("Lot 3 is selected more than once"));
+
+        mockMvc.perform(as("u1", put("/api/transactions/7/lots").with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"lots\":[{\"transactionId\":3,\"quantity\":1},{\"transactionId\":3,\"quantity\":2}]}")))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("Lot 3 is selected more than once"));
+    }
+
+    @Test
+    void idempotencyKeyConflictsAreReportedToTheClient() throws Exception {
+        String body = "{\"platform\":\"Kite\",\"category\":\"Stocks\",\"type\":\"BUY\",\"assetName\":\"INFY\","
+            + "\"amount\":100.00,\"date\":\"2024-01-01\"}";
+        when(transactionService.createTransaction(eq("u1"), any(), eq("reused")))
+            .thenThrow(new InvalidRequestException("Idempotency-Key was already used for a different request"));
+        when(transactionService.createTransaction(eq("u1"), any(), eq("deleted")))
+            .thenReturn(Optional.empty());
+
+        mockMvc.perform(as("u1", post("/api/transactions").with(csrf()).header("Idempotency-Key", "reused")
+                .contentType(MediaType.APPLICATION_JSON).content(body)))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("Idempotency-Key was already used for a different request"));
+        mockMvc.perform(as("u1", post("/api/transactions").with(csrf()).header("Idempotency-Key", "deleted")
+                .contentType(MediaType.APPLICATION_JSON).content(body)))
+            .andExpect(status().isConflict());
+    }
+
+    @Test
+    void staleIfMatchIsAFailedPreconditionAndExhaustedRetriesAConflict() throws Exception {
+        when(transactionService.deleteTransaction(7L, "u1", 4L))
+            .thenThrow(new OptimisticLockingFailureException("Transaction 7 is at version 5, not 4"));
+        when(transactionService.deleteTransaction(7L, "u1", null))
+            .thenThrow(new ConcurrencyFailureException("Transaction 7 is being modified concurrently"));
+
+        mockMvc.perform(as("u1", delete("/api/transactions/7").with(csrf()).header("If-Match", "\"4\"")))
+            .andExpect(status().isPreconditionFailed())
+            .andExpect(jsonPath("$.message").value("Transaction 7 is at version 5, not 4"));
+        mockMvc.perform(as("u1", delete("/api/transactions/7").with(csrf())))
+            .andExpect(status().isConflict())
+            .andExpect(jsonPath("$.message").value("Transaction 7 is being modified concurrently"));
+    }
+
+    @Test
+    void otherIllegalArgumentExceptionsAreNotTurnedIntoBadRequests() {
+        when(transactionService.getTransaction(anyLong(), eq("u1")))
+            .thenThrow(new IllegalArgumentException("internal detail"));
+
+        // Left to the container's error handling (500), so the message is never written to the client
+        assertThatThrownBy(() -> mockMvc.perform(as("u1", get("/api/transactions/5"))))
+            .hasRootCauseInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static MockHttpServletRequestBuilder as(String userId, MockHttpServletRequestBuilder request) {
+        return request.with(authentication(new UserAuthentication(userId)));
+    }
+
+    @TestConfiguration
+    static class Metrics {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.finledger.backend.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TransactionCsvTest {
+
+    @Test
+    void quotedFieldsKeepEmbeddedCommas() throws IOException {
+        assertThat(readAll("a,\"Groww, Kite\",c\n"))
+            .containsExactly(List.of("a", "Groww, Kite", "c"));
+    }
+
+    @Test
+    void quotedFieldsKeepLineBreaksAndCountLines() throws IOException {
+        TransactionCsv.RecordReader reader = new TransactionCsv.RecordReader(
+            new StringReader("h1,h2\r\n\"first\r\nsecond\",x\r\ny,z\r\n"));
+
+        assertThat(reader.next()).containsExactly("h1", "h2");
+        assertThat(reader.next()).containsExactly("first\r\nsecond", "x");
+        assertThat(reader.getRecordLine()).isEqualTo(2);
+        assertThat(reader.next()).containsExactly("y", "z");
+        assertThat(reader.getRecordLine()).isEqualTo(4);
+        assertThat(reader.next()).isNull();
+    }
+
+    @Test
+    void doubledQuotesAreOneQuote() throws IOException {
+        assertThat(readAll("\"say \"\"hi\"\"\",\"\"\"\"\n"))
+            .containsExactly(List.of("say \"hi\"", "\""));
+    }
+
+    @Test
+    void trailingNewlineIsOptional() throws IOException {
+        assertThat(readAll("a,b\nc,d\n")).containsExactly(List.of("a", "b"), List.of("c", "d"));
+        assertThat(readAll("a,b\nc,d")).containsExactly(List.of("a", "b"), List.of("c", "d"));
+        assertThat(readAll("a,b\r\nc,\r\n")).containsExactly(List.of("a", "b"), List.of("c", ""));
+    }
+
+    @Test
+    void blankLinesAreSkipped() throws IOException {
+        TransactionCsv.RecordReader reader = new TransactionCsv.RecordReader(new StringReader("\n\na,b\n\n"));
+
+        assertThat(reader.next()).containsExactly("a", "b");
+        assertThat(reader.getRecordLine()).isEqualTo(3);
+        assertThat(reader.next()).isNull();
+    }
+
+    @Test
+    void unterminatedQuoteIsAnError() {
+        TransactionCsv.RecordReader reader = new TransactionCsv.RecordReader(new StringReader("a,b\nc,\"open\nd,e\n"));
+
+        assertThatThrownBy(() -> {
+            reader.next();
+            reader.next();
+        }).isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Unterminated quoted field starting on line 2");
+    }
+
+    @Test
+    void exportedFieldsReadBackUnchanged() throws IOException {
+        StringBuilder out = new StringBuilder();
+        for (String value : List.of("plain", "with, comma", "with \"quotes\"", "two\nlines")) {
+            StringWriter field = new StringWriter();
+            TransactionCsv.writeField(field, value);
+            out.append(out.isEmpty() ? "" : ",").append(field);
+        }
+
+        assertThat(readAll(out + "\r\n"))
+            .containsExactly(List.of("plain", "with, comma", "with \"quotes\"", "two\nlines"));
+    }
+
+    private static List<List<String>> readAll(String csv) throws IOException {
+        TransactionCsv.RecordReader reader = new TransactionCsv.RecordReader(new StringReader(csv));
+        List<List<String>> records = new ArrayList<>();
+        List<String> record;
+        while ((record = reader.next()) != null) {
+            records.add(record);
+        }
+        return records;
+    }
+}
@@ -0,0 +1,113 @@
+package com.finledger.backend.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AnalyticsCacheTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AnalyticsCache cache = new AnalyticsCache(100, Duration.ofMinutes(10), meterRegistry);
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void slowViewDoesNotBlockOtherViewsOfTheUser() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> slow = executor.submit(() -> cache.get("u1", "metrics", () -> {
+            await(release);
+            return "metrics";
+        }));
+
+        // Would wait for the slow loader if it ran inside the map's bin lock
+        Future<String> other = executor.submit(() -> cache.get("u1", "categories", () -> "categories"));
+        assertThat(other.get(5, TimeUnit.SECONDS)).isEqualTo("categories");
+
+        release.countDown();
+        assertThat(slow.get(5, TimeUnit.SECONDS)).isEqualTo("metrics");
+    }
+
+    @Test
+    void concurrentReadersOfAViewShareOneComputation() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Integer> first = executor.submit(() -> cache.get("u1", "trends:6", () -> {
+            started.countDown();
+            await(release);
+            return loads.incrementAndGet();
+        }));
+        started.await(5, TimeUnit.SECONDS);
+        Future<Integer> second = executor.submit(() -> cache.get("u1", "trends:6", loads::incrementAndGet));
+
+        release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+        assertThat(cache.<Integer>get("u1", "trends:6", loads::incrementAndGet)).isEqualTo(1);
+    }
+
+    @Test
+    void failedComputationIsRetriedByTheNextRead() {
+        assertThatThrownBy(() -> cache.get("u1", "metrics", () -> {
+            throw new IllegalStateException("database down");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(cache.get("u1", "metrics", () -> "metrics")).isEqualTo("metrics");
+    }
+
+    @Test
+    void invalidationDropsEveryViewOfTheUserOnly() {
+        cache.get("u1", "metrics", () -> "old");
+        cache.get("u2", "metrics", () -> "other");
+
+        cache.invalidate("u1");
+
+        assertThat(cache.get("u1", "metrics", () -> "new")).isEqualTo("new");
+        assertThat(cache.get("u2", "metrics", () -> "unused")).isEqualTo("other");
+    }
+
+    @Test
+    void eachViewIsAMissUntilItWasComputed() {
+        cache.get("u1", "metrics", () -> "metrics");
+        assertThat(gets("miss")).isEqualTo(1);
+
+        // The user's entry exists now, but this view still runs its loader
+        cache.get("u1", "categories", () -> "categories");
+        assertThat(gets("miss")).isEqualTo(2);
+        assertThat(gets("hit")).isZero();
+
+        cache.get("u1", "categories", () -> "unused");
+        assertThat(gets("miss")).isEqualTo(2);
+        assertThat(gets("hit")).isEqualTo(1);
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("cache.gets").tags("cache", "analytics", "result", result).functionCounter().count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
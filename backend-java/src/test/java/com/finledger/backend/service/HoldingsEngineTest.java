@@ -0,0 +1,154 @@
+package com.finledger.backend.service;
+
+import com.finledger.backend.dto.HoldingDto;
+import com.finledger.backend.entity.Transaction.TransactionType;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HoldingsEngineTest {
+
+    private static final long UNIT = 100_000_000L;
+
+    private final HoldingsEngine.UserHoldings holdings = new HoldingsEngine.UserHoldings("USD");
+
+    private long nextId;
+
+    @Test
+    void sellConsumesOldestLotsAndProratesThePartialOne() {
+        apply(TransactionType.BUY, 1_000_00, 10 * UNIT);
+        apply(TransactionType.BUY, 2_000_00, 10 * UNIT);
+
+        apply(TransactionType.SELL, 3_000_00, 15 * UNIT);
+
+        HoldingDto position = position();
+        // First lot in full (1000.00) plus half of the second (1000.00)
+        assertThat(position.getRealizedPnl()).isEqualByComparingTo("1000.00");
+        assertThat(position.getQuantity()).isEqualByComparingTo("5");
+        assertThat(position.getCostBasis()).isEqualByComparingTo("1000.00");
+        assertThat(position.getAverageCost()).isEqualByComparingTo("200.00");
+        assertThat(position.getOpenLots()).isEqualTo(1);
+        assertThat(position.getTotalInvested()).isEqualByComparingTo("3000.00");
+        assertThat(position.getTotalProceeds()).isEqualByComparingTo("3000.00");
+    }
+
+    @Test
+    void roundingRemaindersStayWithTheLotUntilItIsSoldOut() {
+        apply(TransactionType.BUY, 1_00, 3 * UNIT);
+
+        apply(TransactionType.SELL, 0, UNIT);
+        assertThat(position().getRealizedPnl()).isEqualByComparingTo("-0.33");
+        apply(TransactionType.SELL, 0, UNIT);
+        assertThat(position().getRealizedPnl()).isEqualByComparingTo("-0.66");
+        apply(TransactionType.SELL, 0, UNIT);
+
+        // The last unit carries the remainder, so exactly the lot's cost is released
+        HoldingDto position = position();
+        assertThat(position.getRealizedPnl()).isEqualByComparingTo("-1.00");
+        assertThat(position.getCostBasis()).isEqualByComparingTo("0");
+        assertThat(position.getOpenLots()).isZero();
+    }
+
+    @Test
+    void sellingMoreThanIsHeldRealizesTheExcessAtZeroCost() {
+        apply(TransactionType.BUY, 100_00, 2 * UNIT);
+
+        apply(TransactionType.SELL, 500_00, 5 * UNIT);
+
+        HoldingDto position = position();
+        assertThat(position.getRealizedPnl()).isEqualByComparingTo("400.00");
+        assertThat(position.getQuantity()).isEqualByComparingTo("0");
+        assertThat(position.getCostBasis()).isEqualByComparingTo("0");
+        assertThat(position.getAverageCost()).isNull();
+
+        // The short is not carried: a later buy opens a fresh lot
+        apply(TransactionType.BUY, 60_00, 3 * UNIT);
+        assertThat(position().getQuantity()).isEqualByComparingTo("3");
+        assertThat(position().getCostBasis()).isEqualByComparingTo("60.00");
+    }
+
+    @Test
+    void lotsKeepFifoOrderWhenTheRingBufferWrapsAndGrows() {
+        // Each lot is one unit costing its number in cents: 1, 2, 3, ...
+        for (int lot = 1; lot <= 3; lot++) {
+            apply(TransactionType.BUY, lot, UNIT);
+        }
+        apply(TransactionType.SELL, 0, 2 * UNIT);
+        assertThat(position().getRealizedPnl()).isEqualByComparingTo("-0.03");
+
+        // Head is now at index 2; these wrap around the end of the capacity-4 arrays, then force a resize
+        for (int lot = 4; lot <= 10; lot++) {
+            apply(TransactionType.BUY, lot, UNIT);
+        }
+        assertThat(position().getOpenLots()).isEqualTo(8);
+
+        apply(TransactionType.SELL, 0, 3 * UNIT);
+        assertThat(position().getRealizedPnl()).isEqualByComparingTo("-0.15");
+        HoldingDto position = position();
+        assertThat(position.getQuantity()).isEqualByComparingTo("5");
+        assertThat(position.getCostBasis()).isEqualByComparingTo("0.40");
+    }
+
+    @Test
+    void rowsWithoutQuantityAndTransfersDoNotMoveLots() {
+        apply(TransactionType.BUY, 100_00, 2 * UNIT);
+        apply(TransactionType.BUY, 50_00, -1);
+        apply(TransactionType.TRANSFER, 100_00, 2 * UNIT);
+        apply(TransactionType.SELL, 30_00, -1);
+
+        HoldingDto position = position();
+        assertThat(position.getQuantity()).isEqualByComparingTo("2");
+        assertThat(position.getCostBasis()).isEqualByComparingTo("100.00");
+        assertThat(position.getRealizedPnl()).isEqualByComparingTo("0");
+        assertThat(position.getTotalInvested()).isEqualByComparingTo("150.00");
+        assertThat(position.getTotalProceeds()).isEqualByComparingTo("30.00");
+    }
+
+    @Test
+    void largeQuantitiesAndCostsAreProratedExactly() {
+        // 10 million units at 10 billion in cost: cost * units overflows a long
+        long units = 10_000_000L * UNIT;
+        long cost = 10_000_000_000_00L;
+        apply(TransactionType.BUY, cost, units);
+
+        apply(TransactionType.SELL, cost, units / 3);
+
+        HoldingDto position = position();
+        BigDecimal released = BigDecimal.valueOf(cost / 3, 2);
+        assertThat(position.getRealizedPnl()).isEqualByComparingTo(BigDecimal.valueOf(cost, 2).subtract(released));
+        assertThat(position.getCostBasis()).isEqualByComparingTo(BigDecimal.valueOf(cost - cost / 3, 2));
+    }
+
+    @Test
+    void prorateTruncatesWithinLongRange() {
+        assertThat(HoldingsEngine.prorate(100, 1, 3)).isEqualTo(33);
+        assertThat(HoldingsEngine.prorate(-100, 1, 3)).isEqualTo(-33);
+        assertThat(HoldingsEngine.prorate(0, Long.MAX_VALUE, 7)).isZero();
+    }
+
+    @Test
+    void prorateFallsBackToBigIntegerWhenTheProductOverflows() {
+        assertThat(HoldingsEngine.prorate(Long.MAX_VALUE, 3, 4)).isEqualTo(6917529027641081855L);
+        assertThat(HoldingsEngine.prorate(Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE)).isEqualTo(Long.MAX_VALUE);
+        // Product between 2^63 and 2^64: the low word looks negative although the high word is 0
+        assertThat(HoldingsEngine.prorate(1L << 62, 3, 4)).isEqualTo(3L << 60);
+        assertThat(HoldingsEngine.prorate(Long.MIN_VALUE, 2, 4)).isEqualTo(Long.MIN_VALUE / 2);
+    }
+
+    @Test
+    void prorateRejectsResultsOutsideLongRange() {
+        assertThatThrownBy(() -> HoldingsEngine.prorate(Long.MAX_VALUE, 2, 1)).isInstanceOf(ArithmeticException.class);
+    }
+
+    private void apply(TransactionType type, long amountCents, long quantityUnits) {
+        nextId++;
+        holdings.apply(nextId, "BTC", type, amountCents, quantityUnits, 19_000 + nextId);
+    }
+
+    private HoldingDto position() {
+        return holdings.toDtos().get(0);
+    }
+}
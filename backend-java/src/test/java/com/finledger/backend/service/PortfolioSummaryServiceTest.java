@@ -0,0 +1,91 @@
+package com.finledger.backend.service;
+
+import com.finledger.backend.DatabaseTest;
+import com.finledger.backend.dto.MonthlyTrend;
+import com.finledger.backend.dto.TransactionDto;
+import com.finledger.backend.entity.Transaction;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PortfolioSummaryServiceTest extends DatabaseTest {
+
+    @Autowired
+    private PortfolioSummaryService summaryService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void verificationCatchesLedgerChangesTheJournalNeverSaw() {
+        String userId = newUserId();
+        transactionService.createTransaction(userId, buy("100.00", LocalDate.of(2024, 1, 10)));
+        transactionService.createTransaction(userId, buy("50.00", LocalDate.of(2024, 2, 10)));
+        assertThat(summaryService.getSummary(userId).getTotalInvestments()).isEqualByComparingTo("150.00");
+
+        // A manual fix straight in the table: no journal event and no delta
+        jdbcTemplate.update("UPDATE transactions SET amount = 75.00 WHERE user_id = ? AND amount = 50.00", userId);
+
+        // Snapshot plus journal tail still agree with the stored summary
+        assertThat(summaryService.rebuild(userId)).isFalse();
+        assertThat(summaryService.verify(userId)).isTrue();
+        assertThat(summaryService.getSummary(userId).getTotalInvestments()).isEqualByComparingTo("175.00");
+
+        // The snapshot was retaken from the scan, so a later replay starts from the corrected state
+        assertThat(summaryService.rebuild(userId)).isFalse();
+        assertThat(summaryService.getSummary(userId).getTotalInvestments()).isEqualByComparingTo("175.00");
+        assertThat(summaryService.verify(userId)).isFalse();
+    }
+
+    @Test
+    void verificationAgreesWithDeltasOfApplicationWrites() {
+        String userId = newUserId();
+        var created = transactionService.createTransaction(userId, buy("10.00", LocalDate.of(2024, 3, 1)));
+        transactionService.createTransaction(userId, buy("20.00", LocalDate.of(2024, 4, 1)));
+        transactionService.updateTransaction(created.id(), userId, buy("15.00", LocalDate.of(2024, 5, 1)), null);
+
+        assertThat(summaryService.verify(userId)).isFalse();
+        assertThat(summaryService.getSummary(userId).getTransactionCount()).isEqualTo(2);
+        assertThat(summaryService.getSummary(userId).getTotalInvestments()).isEqualByComparingTo("35.00");
+    }
+
+    @Test
+    void trendsCoverWholeMonthsOfTheWindow() {
+        String userId = newUserId();
+        YearMonth first = YearMonth.now().minusMonths(2);
+        transactionService.createTransaction(userId, buy("10.00", first.minusMonths(1).atEndOfMonth()));
+        transactionService.createTransaction(userId, buy("20.00", first.atDay(1)));
+        transactionService.createTransaction(userId, buy("40.00", first.atEndOfMonth()));
+        transactionService.createTransaction(userId, buy("80.00", YearMonth.now().atDay(1)));
+
+        List<MonthlyTrend> trends = transactionService.getMonthlyTrends(userId, 2);
+
+        // Newest first; the day before the window's first month is outside it, its first day inside
+        assertThat(trends).extracting(MonthlyTrend::investments)
+            .usingElementComparator(BigDecimal::compareTo)
+            .containsExactly(new BigDecimal("80.00"), new BigDecimal("60.00"));
+        assertThat(transactionService.getPortfolioMetrics(userId).monthlySpending()).isEqualByComparingTo("80.00");
+    }
+
+    private static TransactionDto.CreateRequest buy(String amount, LocalDate date) {
+        TransactionDto.CreateRequest request = new TransactionDto.CreateRequest();
+        request.setPlatform("Kite");
+        request.setCategory("Stocks");
+        request.setType(Transaction.TransactionType.BUY);
+        request.setAssetName("INFY");
+        request.setAmount(new BigDecimal(amount));
+        request.setQuantity(BigDecimal.ONE);
+        request.setDate(date);
+        return request;
+    }
+}
@@ -0,0 +1,121 @@
+package com.finledger.backend.service;
+
+import com.finledger.backend.dto.RecurringSeries;
+import com.finledger.backend.entity.Transaction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecurringSeriesDetectorTest {
+
+    private static final RecurringSeriesDetector.GroupKey SALARY =
+        new RecurringSeriesDetector.GroupKey("ACME Payroll", "HDFC", "TRANSFER", "INR");
+
+    private RecurringSeriesDetector detector;
+
+    @BeforeEach
+    void setUp() {
+        detector = new RecurringSeriesDetector(1, 1, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(detector, "minOccurrences", 3);
+        ReflectionTestUtils.setField(detector, "amountTolerance", new BigDecimal("0.10"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        detector.shutdown();
+    }
+
+    @Test
+    void monthlyEntriesOfSimilarAmountsAreOneSeries() {
+        List<RecurringSeriesDetector.Occurrence> entries = List.of(
+            entry("2024-01-31", "50000"), entry("2024-03-01", "50000"), entry("2024-03-29", "52000"),
+            entry("2024-04-30", "52000"), entry("2024-05-31", "54000"));
+
+        List<RecurringSeries> found = detector.detect(SALARY, entries);
+
+        assertThat(found).hasSize(1);
+        RecurringSeries series = found.get(0);
+        assertThat(series.cadence()).isEqualTo(RecurringSeries.Cadence.MONTHLY);
+        assertThat(series.type()).isEqualTo(Transaction.TransactionType.TRANSFER);
+        assertThat(series.occurrences()).isEqualTo(5);
+        assertThat(series.typicalAmount()).isEqualByComparingTo("52000");
+        assertThat(series.minAmount()).isEqualByComparingTo("50000");
+        assertThat(series.maxAmount()).isEqualByComparingTo("54000");
+        assertThat(series.firstDate()).isEqualTo(LocalDate.parse("2024-01-31"));
+        assertThat(series.lastDate()).isEqualTo(LocalDate.parse("2024-05-31"));
+        assertThat(series.nextExpectedDate()).isEqualTo(LocalDate.parse("2024-06-30"));
+    }
+
+    @Test
+    void weeklyEntriesAreAWeeklySeries() {
+        List<RecurringSeriesDetector.Occurrence> entries = List.of(
+            entry("2024-01-01", "499"), entry("2024-01-08", "499"), entry("2024-01-15", "499"));
+
+        List<RecurringSeries> found = detector.detect(SALARY, entries);
+
+        assertThat(found).extracting(RecurringSeries::cadence).containsExactly(RecurringSeries.Cadence.WEEKLY);
+        assertThat(found.get(0).nextExpectedDate()).isEqualTo(LocalDate.parse("2024-01-22"));
+    }
+
+    @Test
+    void amountsBeyondTheToleranceAreSeparateBands() {
+        List<RecurringSeriesDetector.Occurrence> entries = new ArrayList<>();
+        for (int month = 1; month <= 4; month++) {
+            entries.add(entry("2024-0" + month + "-01", "50000"));
+        }
+        // A yearly bonus from the same employer is too large for the salary band and too rare to recur
+        entries.add(entry("2024-03-15", "200000"));
+
+        List<RecurringSeries> found = detector.detect(SALARY, entries);
+
+        assertThat(found).hasSize(1);
+        assertThat(found.get(0).maxAmount()).isEqualByComparingTo("50000");
+        assertThat(found.get(0).occurrences()).isEqualTo(4);
+    }
+
+    @Test
+    void oneMissedMonthDoesNotEndASeries() {
+        List<RecurringSeriesDetector.Occurrence> entries = List.of(
+            entry("2024-01-05", "1000"), entry("2024-02-05", "1000"), entry("2024-03-05", "1000"),
+            entry("2024-05-05", "1000"), entry("2024-06-05", "1000"));
+
+        assertThat(detector.detect(SALARY, entries)).hasSize(1);
+    }
+
+    @Test
+    void irregularOrTooFewEntriesAreNoSeries() {
+        assertThat(detector.detect(SALARY, List.of(entry("2024-01-01", "100"), entry("2024-02-01", "100"))))
+            .isEmpty();
+        assertThat(detector.detect(SALARY, List.of(
+            entry("2024-01-01", "100"), entry("2024-01-20", "100"), entry("2024-03-30", "100"),
+            entry("2024-04-02", "100")))).isEmpty();
+    }
+
+    @Test
+    void entriesOnTheSameDayCountOnceTowardsTheCadence() {
+        List<RecurringSeriesDetector.Occurrence> band = List.of(
+            entry("2024-01-01", "100"), entry("2024-01-01", "100"), entry("2024-02-01", "100"));
+
+        assertThat(detector.series(SALARY, band)).isNull();
+
+        List<RecurringSeriesDetector.Occurrence> longer = new ArrayList<>(band);
+        longer.add(entry("2024-03-01", "100"));
+        RecurringSeries series = detector.series(SALARY, longer);
+        assertThat(series).isNotNull();
+        assertThat(series.occurrences()).isEqualTo(4);
+        assertThat(series.firstDate()).isEqualTo(LocalDate.parse("2024-01-01"));
+    }
+
+    private static RecurringSeriesDetector.Occurrence entry(String date, String amount) {
+        return new RecurringSeriesDetector.Occurrence(LocalDate.parse(date), new BigDecimal(amount));
+    }
+}
@@ -0,0 +1,143 @@
+package com.finledger.backend.service;
+
+import com.finledger.backend.dto.RealizedGain.LotMethod;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TaxLotBookTest {
+
+    private static final long UNIT = 100_000_000L;
+
+    private static final long JAN_1 = LocalDate.of(2024, 1, 1).toEpochDay();
+    private static final long FEB_1 = LocalDate.of(2024, 2, 1).toEpochDay();
+    private static final long MAR_1 = LocalDate.of(2024, 3, 1).toEpochDay();
+
+    @Test
+    void fifoSellsTheOldestLotsFirst() {
+        TaxLotReportService.LotBook book = threeLots();
+
+        List<TaxLotReportService.Match> matches = book.sell("INFY", 15 * UNIT, LotMethod.FIFO, null);
+
+        assertThat(matches).containsExactly(
+            new TaxLotReportService.Match(1L, JAN_1, 10 * UNIT, 1_000_00),
+            new TaxLotReportService.Match(2L, FEB_1, 5 * UNIT, 1_000_00));
+        // What is left of the second lot keeps the rest of its cost
+        assertThat(book.sell("INFY", 5 * UNIT, LotMethod.FIFO, null))
+            .containsExactly(new TaxLotReportService.Match(2L, FEB_1, 5 * UNIT, 1_000_00));
+    }
+
+    @Test
+    void lifoSellsTheNewestLotsFirst() {
+        TaxLotReportService.LotBook book = threeLots();
+
+        List<TaxLotReportService.Match> matches = book.sell("INFY", 15 * UNIT, LotMethod.LIFO, null);
+
+        assertThat(matches).containsExactly(
+            new TaxLotReportService.Match(3L, MAR_1, 10 * UNIT, 3_000_00),
+            new TaxLotReportService.Match(2L, FEB_1, 5 * UNIT, 1_000_00));
+    }
+
+    @Test
+    void specificSellsTheSelectedLotsThenTheOldest() {
+        TaxLotReportService.LotBook book = threeLots();
+
+        List<TaxLotReportService.Match> matches = book.sell("INFY", 12 * UNIT, LotMethod.SPECIFIC,
+            List.of(new long[] {2, 4 * UNIT}, new long[] {3, 6 * UNIT}));
+
+        assertThat(matches).containsExactly(
+            new TaxLotReportService.Match(2L, FEB_1, 4 * UNIT, 800_00),
+            new TaxLotReportService.Match(3L, MAR_1, 6 * UNIT, 1_800_00),
+            new TaxLotReportService.Match(1L, JAN_1, 2 * UNIT, 200_00));
+    }
+
+    @Test
+    void specificSelectionOfAPartlyConsumedLotTakesOnlyWhatIsLeft() {
+        TaxLotReportService.LotBook book = threeLots();
+        book.sell("INFY", 7 * UNIT, LotMethod.SPECIFIC, null);
+
+        // Lot 1 has 3 units left; the other 5 selected units come from the oldest open lot
+        List<TaxLotReportService.Match> matches = book.sell("INFY", 8 * UNIT, LotMethod.SPECIFIC,
+            List.<long[]>of(new long[] {1, 8 * UNIT}));
+
+        assertThat(matches).containsExactly(
+            new TaxLotReportService.Match(1L, JAN_1, 3 * UNIT, 300_00),
+            new TaxLotReportService.Match(2L, FEB_1, 5 * UNIT, 1_000_00));
+    }
+
+    @Test
+    void selectionsOfClosedOrUnknownLotsFallBackToTheOldest() {
+        TaxLotReportService.LotBook book = threeLots();
+        book.sell("INFY", 10 * UNIT, LotMethod.FIFO, null);
+
+        List<TaxLotReportService.Match> matches = book.sell("INFY", 2 * UNIT, LotMethod.SPECIFIC,
+            List.of(new long[] {1, 2 * UNIT}, new long[] {99, 2 * UNIT}));
+
+        assertThat(matches).containsExactly(new TaxLotReportService.Match(2L, FEB_1, 2 * UNIT, 400_00));
+    }
+
+    @Test
+    void unitsBeyondTheOpenLotsHaveNoLotAndNoCost() {
+        TaxLotReportService.LotBook book = threeLots();
+
+        List<TaxLotReportService.Match> matches = book.sell("INFY", 32 * UNIT, LotMethod.FIFO, null);
+
+        assertThat(matches).hasSize(4);
+        assertThat(matches.get(3)).isEqualTo(new TaxLotReportService.Match(null, 0, 2 * UNIT, 0));
+        assertThat(book.sell("INFY", UNIT, LotMethod.FIFO, null))
+            .containsExactly(new TaxLotReportService.Match(null, 0, UNIT, 0));
+        assertThat(book.sell("TCS", UNIT, LotMethod.FIFO, null))
+            .containsExactly(new TaxLotReportService.Match(null, 0, UNIT, 0));
+    }
+
+    @Test
+    void copiesAreIndependentOfTheOriginal() {
+        TaxLotReportService.LotBook book = threeLots();
+        TaxLotReportService.LotBook copy = book.copy();
+
+        book.sell("INFY", 30 * UNIT, LotMethod.FIFO, null);
+
+        assertThat(copy.sell("INFY", 10 * UNIT, LotMethod.FIFO, null))
+            .containsExactly(new TaxLotReportService.Match(1L, JAN_1, 10 * UNIT, 1_000_00));
+    }
+
+    @Test
+    void invalidationDropsOnlyCheckpointsAfterTheChange() {
+        TaxLotReportService.UserCheckpoints checkpoints = new TaxLotReportService.UserCheckpoints("USD");
+        TaxLotReportService.LotBook book = threeLots();
+        LocalDate year2022 = LocalDate.of(2022, 1, 1);
+        LocalDate year2023 = LocalDate.of(2023, 1, 1);
+        LocalDate year2024 = LocalDate.of(2024, 1, 1);
+        checkpoints.store(LotMethod.FIFO, checkpoints.generation(),
+            Map.of(year2022, book, year2023, book, year2024, book));
+        checkpoints.store(LotMethod.LIFO, checkpoints.generation(), Map.of(year2022, book, year2024, book));
+        long generation = checkpoints.generation();
+
+        // A write dated inside the closed 2022 fiscal year
+        checkpoints.invalidateAfter(LocalDate.of(2022, 6, 30));
+
+        assertThat(checkpoints.latest(LotMethod.FIFO, year2024).getKey()).isEqualTo(year2022);
+        assertThat(checkpoints.latest(LotMethod.LIFO, year2024).getKey()).isEqualTo(year2022);
+
+        // A replay that started before the invalidation must not put the dropped checkpoints back
+        checkpoints.store(LotMethod.FIFO, generation, Map.of(year2024, book));
+        assertThat(checkpoints.latest(LotMethod.FIFO, year2024).getKey()).isEqualTo(year2022);
+
+        // A row dated on a fiscal year start is applied after that start's checkpoint, so it stays
+        checkpoints.invalidateAfter(year2022);
+        assertThat(checkpoints.latest(LotMethod.FIFO, year2024).getKey()).isEqualTo(year2022);
+    }
+
+    // Three BUY lots of 10 units at 100, 200 and 300 a unit
+    private static TaxLotReportService.LotBook threeLots() {
+        TaxLotReportService.LotBook book = new TaxLotReportService.LotBook();
+        book.buy("INFY", new TaxLotReportService.Lot(1, JAN_1, 10 * UNIT, 1_000_00));
+        book.buy("INFY", new TaxLotReportService.Lot(2, FEB_1, 10 * UNIT, 2_000_00));
+        book.buy("INFY", new TaxLotReportService.Lot(3, MAR_1, 10 * UNIT, 3_000_00));
+        return book;
+    }
+}
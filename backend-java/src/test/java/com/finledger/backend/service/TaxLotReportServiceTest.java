@@ -0,0 +1,147 @@
+package com.finledger.backend.service;
+
+import com.finledger.backend.DatabaseTest;
+import com.finledger.backend.dto.LotSelectionRequest;
+import com.finledger.backend.dto.RealizedGain.LotMethod;
+import com.finledger.backend.dto.TransactionDto;
+import com.finledger.backend.dto.TransactionView;
+import com.finledger.backend.entity.Transaction;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TaxLotReportServiceTest extends DatabaseTest {
+
+    @Autowired
+    private TaxLotReportService taxLotReportService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Test
+    void salesAreMatchedToLotsByEachMethod() throws IOException {
+        Ledger ledger = new Ledger(newUserId());
+        taxLotReportService.setLotSelections(ledger.userId, ledger.sale2023.id(),
+            List.of(new LotSelectionRequest.Lot(ledger.lot2022.id(), new BigDecimal("4"))));
+
+        // 2023 sale of 10 for 4000.00: lot 2021 at 100 a unit has 5 left after the 2022 sale under FIFO
+        assertThat(gainsOf(ledger.userId, 2023, LotMethod.FIFO)).containsExactly(
+            line(2023, ledger.sale2023, ledger.lot2021, "5.00000000", "2000.00", "500.00"),
+            line(2023, ledger.sale2023, ledger.lot2022, "5.00000000", "2000.00", "1500.00"));
+        // Under LIFO the 2022 sale took from lot 2022, leaving 5 of it at 300 a unit
+        assertThat(gainsOf(ledger.userId, 2023, LotMethod.LIFO)).containsExactly(
+            line(2023, ledger.sale2023, ledger.lot2022, "5.00000000", "2000.00", "1500.00"),
+            line(2023, ledger.sale2023, ledger.lot2021, "5.00000000", "2000.00", "500.00"));
+        // The selected 4 units of lot 2022, then the oldest open lot
+        assertThat(gainsOf(ledger.userId, 2023, LotMethod.SPECIFIC)).containsExactly(
+            line(2023, ledger.sale2023, ledger.lot2022, "4.00000000", "1600.00", "1200.00"),
+            line(2023, ledger.sale2023, ledger.lot2021, "5.00000000", "2000.00", "500.00"),
+            line(2023, ledger.sale2023, ledger.lot2022, "1.00000000", "400.00", "300.00"));
+    }
+
+    @Test
+    void reportResumedFromACheckpointMatchesAFullReplay() throws IOException {
+        Ledger ledger = new Ledger(newUserId());
+        taxLotReportService.setLotSelections(ledger.userId, ledger.sale2024.id(),
+            List.of(new LotSelectionRequest.Lot(ledger.lot2024.id(), new BigDecimal("5"))));
+
+        for (LotMethod method : LotMethod.values()) {
+            // From the ledger's first year there is no checkpoint to start from; this run stores them
+            List<String> fullReplay = csv(ledger.userId, 2021, 2024, method).stream()
+                .filter(record -> Integer.parseInt(record.split(",")[0]) >= 2023)
+                .toList();
+            List<String> resumed = csv(ledger.userId, 2023, 2024, method);
+
+            assertThat(fullReplay).isNotEmpty();
+            assertThat(resumed).as(method.name()).isEqualTo(fullReplay);
+        }
+    }
+
+    @Test
+    void writeInAClosedYearIsInLaterReports() throws IOException {
+        Ledger ledger = new Ledger(newUserId());
+        List<String> before = csv(ledger.userId, 2021, 2024, LotMethod.FIFO);
+        assertThat(csv(ledger.userId, 2023, 2024, LotMethod.FIFO)).isNotEmpty();
+
+        // Raises the cost of lot 2022 by 600.00, half of which the 2023 sale disposes of
+        transactionService.updateTransaction(ledger.lot2022.id(), ledger.userId,
+            request(Transaction.TransactionType.BUY, "3600.00", "10", LocalDate.of(2022, 5, 1)), null);
+
+        List<String> resumed = csv(ledger.userId, 2023, 2024, LotMethod.FIFO);
+        assertThat(resumed).contains(
+            line(2023, ledger.sale2023, ledger.lot2022, "5.00000000", "2000.00", "1800.00"));
+        List<String> fullReplay = csv(ledger.userId, 2021, 2024, LotMethod.FIFO);
+        assertThat(fullReplay).isNotEqualTo(before);
+        assertThat(resumed).isEqualTo(fullReplay.stream()
+            .filter(record -> Integer.parseInt(record.split(",")[0]) >= 2023)
+            .toList());
+    }
+
+    private List<String> gainsOf(String userId, int fiscalYear, LotMethod method) throws IOException {
+        return csv(userId, fiscalYear, fiscalYear, method);
+    }
+
+    // Report records without the header
+    private List<String> csv(String userId, int fromYear, int toYear, LotMethod method) throws IOException {
+        StringWriter out = new StringWriter();
+        taxLotReportService.writeCsv(userId, fromYear, toYear, method, out);
+        List<String> records = Arrays.asList(out.toString().split("\r\n"));
+        return records.subList(1, records.size());
+    }
+
+    private static String line(int fiscalYear, TransactionView sale, TransactionView lot, String quantity,
+                               String proceeds, String cost) {
+        BigDecimal gain = new BigDecimal(proceeds).subtract(new BigDecimal(cost));
+        return String.join(",", String.valueOf(fiscalYear), "INFY", String.valueOf(sale.id()), sale.date().toString(),
+            String.valueOf(lot.id()), lot.date().toString(),
+            String.valueOf(sale.date().toEpochDay() - lot.date().toEpochDay()), quantity, proceeds, cost,
+            gain.toPlainString(), "USD");
+    }
+
+    private static TransactionDto.CreateRequest request(Transaction.TransactionType type, String amount,
+                                                        String quantity, LocalDate date) {
+        TransactionDto.CreateRequest request = new TransactionDto.CreateRequest();
+        request.setPlatform("Kite");
+        request.setCategory("Stocks");
+        request.setType(type);
+        request.setAssetName("INFY");
+        request.setAmount(new BigDecimal(amount));
+        request.setCurrency("USD");
+        request.setQuantity(new BigDecimal(quantity));
+        request.setDate(date);
+        return request;
+    }
+
+    // Lots bought at 100, 300 and 500 a unit, sold down across four fiscal years
+    private class Ledger {
+        final String userId;
+        final TransactionView lot2021;
+        final TransactionView lot2022;
+        final TransactionView sale2023;
+        final TransactionView lot2024;
+        final TransactionView sale2024;
+
+        Ledger(String userId) {
+            this.userId = userId;
+            lot2021 = create(Transaction.TransactionType.BUY, "1000.00", "10", LocalDate.of(2021, 3, 1));
+            lot2022 = create(Transaction.TransactionType.BUY, "3000.00", "10", LocalDate.of(2022, 5, 1));
+            create(Transaction.TransactionType.SELL, "1000.00", "5", LocalDate.of(2022, 9, 1));
+            sale2023 = create(Transaction.TransactionType.SELL, "4000.00", "10", LocalDate.of(2023, 4, 1));
+            lot2024 = create(Transaction.TransactionType.BUY, "2500.00", "5", LocalDate.of(2024, 2, 1));
+            sale2024 = create(Transaction.TransactionType.SELL, "5600.00", "8", LocalDate.of(2024, 6, 1));
+        }
+
+        private TransactionView create(Transaction.TransactionType type, String amount, String quantity,
+                                       LocalDate date) {
+            return transactionService.createTransaction(userId, request(type, amount, quantity, date));
+        }
+    }
+}
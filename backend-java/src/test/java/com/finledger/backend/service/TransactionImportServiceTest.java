@@ -0,0 +1,86 @@
+package com.finledger.backend.service;
+
+import com.finledger.backend.DatabaseTest;
+import com.finledger.backend.dto.TransactionDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransactionImportServiceTest extends DatabaseTest {
+
+    private static final String HEADER = "date,type,platform,category,assetName,amount,quantity,notes\n";
+
+    @Autowired
+    private TransactionImportService importService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void rowTheDatabaseRejectsFailsAloneWhenItsBatchIsRetried() throws IOException {
+        String userId = newUserId();
+        // Valid for the request constraints, but too large for numeric(15, 2), so the whole batch fails
+        String csv = HEADER
+            + "2024-01-05,BUY,Kite,Stocks,INFY,1500.00,10,\n"
+            + "2024-01-06,BUY,Kite,Stocks,TCS,100000000000000,1,too large\n"
+            + "2024-01-07,SELL,Kite,Stocks,INFY,800.00,5,\"partial, first lot\"\n";
+
+        TransactionDto.ImportResult result = importService.importCsv(userId, stream(csv));
+
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(result.getFailed()).isEqualTo(1);
+        assertThat(result.getErrors()).singleElement()
+            .satisfies(error -> assertThat(error.getLine()).isEqualTo(3));
+        assertThat(jdbcTemplate.queryForList(
+            "SELECT notes FROM transactions WHERE user_id = ? ORDER BY date", String.class, userId))
+            .containsExactly(null, "partial, first lot");
+    }
+
+    @Test
+    void invalidRowsAreReportedByLineAndSkipped() throws IOException {
+        String userId = newUserId();
+        String csv = HEADER
+            + "2024-02-01,BUY,Kite,Stocks,INFY,100.00,1,\n"
+            + "not-a-date,BUY,Kite,Stocks,INFY,100.00,1,\n"
+            + "2024-02-03,BUY,Kite,Stocks,INFY,-5,1,\n"
+            + "2024-02-04,BUY,Kite,Stocks,INFY,100.00,1,\"never closed\n";
+
+        TransactionDto.ImportResult result = importService.importCsv(userId, stream(csv));
+
+        assertThat(result.getImported()).isEqualTo(1);
+        assertThat(result.getErrors()).extracting(TransactionDto.ImportError::getLine).containsExactly(3, 4, 5);
+        assertThat(result.getErrors().get(2).getMessage()).startsWith("Unterminated quoted field");
+        assertThat(jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM transactions WHERE user_id = ?", Long.class, userId)).isEqualTo(1);
+    }
+
+    @Test
+    void rowsWithoutACurrencyGetTheBaseCurrencyStoredAtImportTime() throws IOException {
+        String userId = newUserId();
+        userService.upsertUser(userId, userId + "@example.com", null, null, null);
+        assertThat(userService.getBaseCurrency(userId)).isEqualTo("USD");
+        // Changed by another instance: this instance's profile cache still has USD
+        jdbcTemplate.update("UPDATE users SET base_currency = 'EUR' WHERE id = ?", userId);
+
+        TransactionDto.ImportResult result = importService.importCsv(userId, stream(HEADER
+            + "2024-03-01,BUY,Kite,Stocks,INFY,100.00,1,\n"));
+
+        assertThat(result.getImported()).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForList(
+            "SELECT CAST(currency AS varchar) FROM transactions WHERE user_id = ?", String.class, userId))
+            .containsExactly("EUR");
+    }
+
+    private static ByteArrayInputStream stream(String csv) {
+        return new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,65 @@
+package com.finledger.backend.service;
+
+import com.finledger.backend.dto.TransactionView;
+import com.finledger.backend.entity.Transaction;
+import com.finledger.backend.repository.TransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+// Conditional writes that never apply, as if another writer changed the row before every attempt
+@ExtendWith(MockitoExtension.class)
+class TransactionServiceRetryTest {
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private TransactionService transactionService;
+
+    @Test
+    void writeWithoutIfMatchGivesUpAsAConflictAfterThreeAttempts() {
+        when(transactionRepository.deleteIfVersion(7L, "u1", null)).thenReturn(lostTo(5L));
+
+        assertThatThrownBy(() -> transactionService.deleteTransaction(7L, "u1", null))
+            .isExactlyInstanceOf(ConcurrencyFailureException.class)
+            .hasMessage("Transaction 7 is being modified concurrently");
+        verify(transactionRepository, times(3)).deleteIfVersion(7L, "u1", null);
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void writeWithAStaleIfMatchFailsItsPreconditionAtOnce() {
+        when(transactionRepository.deleteIfVersion(7L, "u1", 4L)).thenReturn(lostTo(5L));
+
+        assertThatThrownBy(() -> transactionService.deleteTransaction(7L, "u1", 4L))
+            .isInstanceOf(OptimisticLockingFailureException.class)
+            .hasMessage("Transaction 7 is at version 5, not 4");
+        verify(transactionRepository).deleteIfVersion(any(), any(), any());
+    }
+
+    private static Optional<TransactionRepository.ConditionalWrite> lostTo(long currentVersion) {
+        TransactionView current = new TransactionView(7L, "Kite", "Stocks", Transaction.TransactionType.BUY, "INFY",
+            new BigDecimal("100.00"), "USD", BigDecimal.ONE, LocalDate.of(2024, 1, 1), null, null, null, currentVersion);
+        return Optional.of(new TransactionRepository.ConditionalWrite(current, null, false));
+    }
+}
@@ -0,0 +1,169 @@
+package com.finledger.backend.service;
+
+import com.finledger.backend.DatabaseTest;
+import com.finledger.backend.dto.InvalidRequestException;
+import com.finledger.backend.dto.TransactionDto;
+import com.finledger.backend.dto.TransactionView;
+import com.finledger.backend.entity.Transaction;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TransactionServiceTest extends DatabaseTest {
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void updateWritesTheRowAndBumpsTheVersion() {
+        String userId = newUserId();
+        TransactionView created = transactionService.createTransaction(userId, buy("100.00", LocalDate.of(2023, 6, 1)));
+        assertThat(created.version()).isZero();
+
+        // Moves the row to another year's partition; no currency keeps the row's
+        TransactionView updated = transactionService.updateTransaction(created.id(), userId,
+            buy("120.00", LocalDate.of(2024, 6, 1)), 0L).orElseThrow();
+
+        assertThat(updated.id()).isEqualTo(created.id());
+        assertThat(updated.amount()).isEqualByComparingTo("120.00");
+        assertThat(updated.date()).isEqualTo(LocalDate.of(2024, 6, 1));
+        assertThat(updated.currency()).isEqualTo(created.currency());
+        assertThat(updated.version()).isEqualTo(1L);
+        assertThat(transactionService.getTransaction(created.id(), userId)).contains(updated);
+    }
+
+    @Test
+    void writesWithAStaleVersionAreRefused() {
+        String userId = newUserId();
+        TransactionView created = transactionService.createTransaction(userId, buy("100.00", LocalDate.of(2024, 1, 1)));
+        transactionService.updateTransaction(created.id(), userId, buy("110.00", LocalDate.of(2024, 1, 1)), 0L);
+
+        assertThatThrownBy(() -> transactionService.updateTransaction(created.id(), userId,
+                buy("999.00", LocalDate.of(2024, 1, 1)), 0L))
+            .isInstanceOf(OptimisticLockingFailureException.class)
+            .hasMessage("Transaction " + created.id() + " is at version 1, not 0");
+        assertThatThrownBy(() -> transactionService.deleteTransaction(created.id(), userId, 0L))
+            .isInstanceOf(OptimisticLockingFailureException.class);
+
+        assertThat(transactionService.getTransaction(created.id(), userId).orElseThrow().amount())
+            .isEqualByComparingTo("110.00");
+    }
+
+    @Test
+    void writesWithoutAVersionApplyToTheLatestRow() {
+        String userId = newUserId();
+        TransactionView created = transactionService.createTransaction(userId, buy("100.00", LocalDate.of(2024, 1, 1)));
+        // Changed behind the application's back, as a concurrent writer would
+        jdbcTemplate.update("UPDATE transactions SET version = version + 5 WHERE id = ?", created.id());
+
+        TransactionView updated = transactionService.updateTransaction(created.id(), userId,
+            buy("130.00", LocalDate.of(2024, 1, 1)), null).orElseThrow();
+        assertThat(updated.version()).isEqualTo(6L);
+        assertThat(transactionService.deleteTransaction(created.id(), userId, null)).isTrue();
+        assertThat(transactionService.getTransaction(created.id(), userId)).isEmpty();
+    }
+
+    @Test
+    void writesToAnotherUsersOrAMissingRowFindNothing() {
+        String userId = newUserId();
+        TransactionView created = transactionService.createTransaction(userId, buy("100.00", LocalDate.of(2024, 1, 1)));
+
+        String otherUser = newUserId();
+        assertThat(transactionService.updateTransaction(created.id(), otherUser,
+            buy("1.00", LocalDate.of(2024, 1, 1)), null)).isEmpty();
+        assertThat(transactionService.deleteTransaction(created.id(), otherUser, 0L)).isFalse();
+
+        assertThat(transactionService.deleteTransaction(created.id(), userId, 0L)).isTrue();
+        assertThat(transactionService.deleteTransaction(created.id(), userId, 0L)).isFalse();
+        assertThat(transactionService.updateTransaction(created.id(), userId,
+            buy("1.00", LocalDate.of(2024, 1, 1)), null)).isEmpty();
+    }
+
+    @Test
+    void retryWithTheSameIdempotencyKeyReturnsTheSameRow() {
+        String userId = newUserId();
+        TransactionView first = transactionService.createTransaction(userId,
+            buy("100.00", LocalDate.of(2024, 1, 1)), "key-1").orElseThrow();
+        TransactionView retry = transactionService.createTransaction(userId,
+            buy("100.00", LocalDate.of(2024, 1, 1)), "key-1").orElseThrow();
+
+        assertThat(retry).isEqualTo(first);
+        assertThat(countTransactions(userId)).isEqualTo(1);
+
+        // Keys are per user
+        TransactionView otherUsers = transactionService.createTransaction(newUserId(),
+            buy("100.00", LocalDate.of(2024, 1, 1)), "key-1").orElseThrow();
+        assertThat(otherUsers.id()).isNotEqualTo(first.id());
+    }
+
+    @Test
+    void reusingAnIdempotencyKeyForADifferentRequestIsRejected() {
+        String userId = newUserId();
+        transactionService.createTransaction(userId, buy("100.00", LocalDate.of(2024, 1, 1)), "key-1");
+
+        assertThatThrownBy(() -> transactionService.createTransaction(userId,
+                buy("200.00", LocalDate.of(2024, 1, 1)), "key-1"))
+            .isInstanceOf(InvalidRequestException.class)
+            .hasMessage("Idempotency-Key was already used for a different request");
+        assertThat(countTransactions(userId)).isEqualTo(1);
+    }
+
+    @Test
+    void retryAfterTheCreatedRowWasDeletedFindsNothing() {
+        String userId = newUserId();
+        TransactionView created = transactionService.createTransaction(userId,
+            buy("100.00", LocalDate.of(2024, 1, 1)), "key-1").orElseThrow();
+        transactionService.deleteTransaction(created.id(), userId, null);
+
+        Optional<TransactionView> retry = transactionService.createTransaction(userId,
+            buy("100.00", LocalDate.of(2024, 1, 1)), "key-1");
+        assertThat(retry).isEmpty();
+        assertThat(countTransactions(userId)).isZero();
+    }
+
+    @Test
+    void createsUseTheBaseCurrencyStoredAtWriteTime() {
+        String userId = newUserId();
+        userService.upsertUser(userId, userId + "@example.com", null, null, null);
+        assertThat(userService.getBaseCurrency(userId)).isEqualTo("USD");
+        // Changed by another instance: this instance's profile cache still has USD
+        jdbcTemplate.update("UPDATE users SET base_currency = 'EUR' WHERE id = ?", userId);
+
+        TransactionView created = transactionService.createTransaction(userId, buy("100.00", LocalDate.of(2024, 1, 1)));
+        TransactionView keyed = transactionService.createTransaction(userId,
+            buy("200.00", LocalDate.of(2024, 1, 2)), "key-1").orElseThrow();
+
+        assertThat(created.currency()).isEqualTo("EUR");
+        assertThat(keyed.currency()).isEqualTo("EUR");
+    }
+
+    private int countTransactions(String userId) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM transactions WHERE user_id = ?", Integer.class, userId);
+    }
+
+    private static TransactionDto.CreateRequest buy(String amount, LocalDate date) {
+        TransactionDto.CreateRequest request = new TransactionDto.CreateRequest();
+        request.setPlatform("Kite");
+        request.setCategory("Stocks");
+        request.setType(Transaction.TransactionType.BUY);
+        request.setAssetName("INFY");
+        request.setAmount(new BigDecimal(amount));
+        request.setQuantity(BigDecimal.ONE);
+        request.setDate(date);
+        return request;
+    }
+}